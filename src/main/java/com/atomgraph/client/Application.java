@@ -28,24 +28,43 @@ import org.apache.jena.riot.RDFWriterRegistry;
 import com.atomgraph.client.locator.PrefixMapper;
 import com.atomgraph.client.mapper.ClientErrorExceptionMapper;
 import com.atomgraph.client.mapper.NotFoundExceptionMapper;
+import com.atomgraph.client.mapper.OverloadedExceptionMapper;
 import com.atomgraph.client.mapper.RiotExceptionMapper;
 import com.atomgraph.client.model.impl.ProxyResourceBase;
+import com.atomgraph.client.riot.lang.StreamingJSONLDWriter;
+import com.atomgraph.client.writer.DataTableWriter;
 import com.atomgraph.client.writer.DatasetXSLTWriter;
 import com.atomgraph.core.provider.QueryParamProvider;
 import com.atomgraph.core.io.ResultSetProvider;
 import com.atomgraph.core.io.UpdateRequestProvider;
+import com.atomgraph.client.util.AdmissionController;
+import com.atomgraph.client.util.CacheWarmer;
 import com.atomgraph.client.util.DataManager;
 import com.atomgraph.client.util.DataManagerImpl;
+import com.atomgraph.client.util.GraphLayout;
+import com.atomgraph.client.util.IndexedDocumentCache;
+import com.atomgraph.client.util.ModelDiskCache;
+import com.atomgraph.client.util.NegativeCache;
+import com.atomgraph.client.util.OffHeapModelCache;
+import com.atomgraph.client.util.StartupPhases;
+import com.atomgraph.client.util.UpstreamGuard;
 import com.atomgraph.client.vocabulary.AC;
 import com.atomgraph.client.writer.ModelXSLTWriter;
 import com.atomgraph.client.writer.function.ConstructDocument;
+import com.atomgraph.client.writer.function.SVGGraph;
+import com.atomgraph.client.writer.function.Fingerprint;
+import com.atomgraph.client.writer.function.NextResults;
 import com.atomgraph.client.writer.function.UUID;
-import com.atomgraph.core.io.ModelProvider;
+import com.atomgraph.client.io.CompressionMetrics;
+import com.atomgraph.client.io.ModelProvider;
+import com.atomgraph.client.io.SVGGraphEncoder;
 import com.atomgraph.core.vocabulary.A;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import javax.servlet.ServletContext;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
@@ -55,15 +74,20 @@ import com.atomgraph.core.io.DatasetProvider;
 import com.atomgraph.core.io.QueryProvider;
 import com.atomgraph.core.riot.RDFLanguages;
 import com.atomgraph.core.riot.lang.RDFPostReaderFactory;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import net.sf.saxon.s9api.Processor;
-import net.sf.saxon.s9api.SaxonApiException;
-import net.sf.saxon.s9api.XsltCompiler;
 import net.sf.saxon.s9api.XsltExecutable;
 import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.reasoner.Reasoner;
@@ -71,9 +95,13 @@ import org.apache.jena.reasoner.rulesys.RDFSRuleReasonerFactory;
 import org.apache.jena.riot.RDFParserRegistry;
 import org.apache.jena.vocabulary.ReasonerVocabulary;
 import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.filter.EncodingFeature;
 import static org.glassfish.jersey.client.ClientProperties.FOLLOW_REDIRECTS;
 import org.glassfish.jersey.internal.inject.AbstractBinder;
+import org.glassfish.jersey.message.DeflateEncoder;
+import org.glassfish.jersey.message.GZipEncoder;
 import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.filter.EncodingFilter;
 import org.glassfish.jersey.server.filter.HttpMethodOverrideFilter;
 
 /**
@@ -94,9 +122,14 @@ public class Application extends ResourceConfig
     private final DataManager dataManager;
     private final Source stylesheet;
     private final Boolean cacheStylesheet;
+    private final Integer statementLimit;
+    private final AdmissionController admissionController;
     private final OntModelSpec ontModelSpec;
     private final Processor xsltProc = new Processor(false);
     private final XsltExecutable xsltExec;
+    private final IndexedDocumentCache documentCache = new IndexedDocumentCache(xsltProc); // shared by the XSLT writers
+    private final Map<String, Long> startupTimes;
+    private ServletContext servletContext; // set after construction, or null if the application is not constructed from a servlet config
 
 
     /**
@@ -107,63 +140,212 @@ public class Application extends ResourceConfig
      */
     public Application(@Context ServletConfig servletConfig) throws URISyntaxException, IOException
     {
-        this(new MediaTypes(), getClient(new ClientConfig()),
-            servletConfig.getServletContext().getInitParameter(A.maxGetRequestSize.getURI()) != null ? Integer.parseInt(servletConfig.getServletContext().getInitParameter(A.maxGetRequestSize.getURI())) : null,
-            servletConfig.getServletContext().getInitParameter(A.preemptiveAuth.getURI()) != null ? Boolean.parseBoolean(servletConfig.getServletContext().getInitParameter(A.preemptiveAuth.getURI())) : false,
-            getDataManager(new PrefixMapper(servletConfig.getServletContext().getInitParameter(AC.prefixMapping.getURI()) != null ? servletConfig.getServletContext().getInitParameter(AC.prefixMapping.getURI()) : null),
-                com.atomgraph.client.Application.getClient(new ClientConfig()),
+        this(servletConfig.getServletContext(), new StartupPhases());
+    }
+    
+    /**
+     * Starts the phases that the constructor arguments depend on: the prefix mapping and the HTTP client are built concurrently.
+     * 
+     * @param servletContext servlet context
+     * @param startup startup phases
+     */
+    private Application(final ServletContext servletContext, final StartupPhases startup) throws URISyntaxException, IOException
+    {
+        this(servletContext, startup,
+            startup.submit("Prefix mapping", () -> new PrefixMapper(servletContext.getInitParameter(AC.prefixMapping.getURI()) != null ? servletContext.getInitParameter(AC.prefixMapping.getURI()) : null)),
+            startup.submit("HTTP client", () -> getClient(new ClientConfig())));
+    }
+    
+    private Application(final ServletContext servletContext, final StartupPhases startup, final Future<LocationMapper> mapper, final Future<Client> client) throws URISyntaxException, IOException
+    {
+        this(new MediaTypes(), await(startup, client),
+            servletContext.getInitParameter(A.maxGetRequestSize.getURI()) != null ? Integer.parseInt(servletContext.getInitParameter(A.maxGetRequestSize.getURI())) : null,
+            servletContext.getInitParameter(A.preemptiveAuth.getURI()) != null ? Boolean.parseBoolean(servletContext.getInitParameter(A.preemptiveAuth.getURI())) : false,
+            getDataManager(await(startup, mapper),
+                await(startup, client),
                 new MediaTypes(),
-                servletConfig.getServletContext().getInitParameter(A.cacheModelLoads.getURI()) != null ? Boolean.parseBoolean(servletConfig.getServletContext().getInitParameter(A.cacheModelLoads.getURI())) : false,
-                servletConfig.getServletContext().getInitParameter(A.preemptiveAuth.getURI()) != null ? Boolean.parseBoolean(servletConfig.getServletContext().getInitParameter(A.preemptiveAuth.getURI())) : false,
-                servletConfig.getServletContext().getInitParameter(AC.resolvingUncached.getURI()) != null ? Boolean.parseBoolean(servletConfig.getServletContext().getInitParameter(AC.resolvingUncached.getURI())) : false),
-            getSource(servletConfig.getServletContext(), servletConfig.getServletContext().getInitParameter(AC.stylesheet.getURI()) != null ? servletConfig.getServletContext().getInitParameter(AC.stylesheet.getURI()) : null),
-            servletConfig.getServletContext().getInitParameter(AC.cacheStylesheet.getURI()) != null ? Boolean.parseBoolean(servletConfig.getServletContext().getInitParameter(AC.cacheStylesheet.getURI())) : false,
-            servletConfig.getServletContext().getInitParameter(AC.resolvingUncached.getURI()) != null ? Boolean.parseBoolean(servletConfig.getServletContext().getInitParameter(AC.resolvingUncached.getURI())) : null
-        );
+                servletContext.getInitParameter(A.cacheModelLoads.getURI()) != null ? Boolean.parseBoolean(servletContext.getInitParameter(A.cacheModelLoads.getURI())) : false,
+                servletContext.getInitParameter(A.preemptiveAuth.getURI()) != null ? Boolean.parseBoolean(servletContext.getInitParameter(A.preemptiveAuth.getURI())) : false,
+                servletContext.getInitParameter(AC.resolvingUncached.getURI()) != null ? Boolean.parseBoolean(servletContext.getInitParameter(AC.resolvingUncached.getURI())) : false,
+                getModelCache(servletContext.getInitParameter(AC.offHeapModelCache.getURI()) != null ? Boolean.parseBoolean(servletContext.getInitParameter(AC.offHeapModelCache.getURI())) : false,
+                    servletContext.getInitParameter(AC.decodedModelCacheSize.getURI()) != null ? Long.parseLong(servletContext.getInitParameter(AC.decodedModelCacheSize.getURI())) : null),
+                getModelDiskCache(servletContext.getInitParameter(AC.modelCacheDirectory.getURI()) != null ? Paths.get(servletContext.getInitParameter(AC.modelCacheDirectory.getURI())) : null,
+                    servletContext.getInitParameter(AC.modelCacheMaxSize.getURI()) != null ? Long.parseLong(servletContext.getInitParameter(AC.modelCacheMaxSize.getURI())) : null),
+                getUpstreamGuard(servletContext.getInitParameter(AC.maxHostConcurrency.getURI()) != null ? Integer.parseInt(servletContext.getInitParameter(AC.maxHostConcurrency.getURI())) : null,
+                    servletContext.getInitParameter(AC.hostFailureThreshold.getURI()) != null ? Integer.parseInt(servletContext.getInitParameter(AC.hostFailureThreshold.getURI())) : null,
+                    servletContext.getInitParameter(AC.hostOpenDuration.getURI()) != null ? Long.parseLong(servletContext.getInitParameter(AC.hostOpenDuration.getURI())) : null),
+                servletContext.getInitParameter(AC.resolutionBudget.getURI()) != null ? Long.parseLong(servletContext.getInitParameter(AC.resolutionBudget.getURI())) : null,
+                getNegativeCache(servletContext.getInitParameter(AC.clientErrorTTL.getURI()) != null ? Long.parseLong(servletContext.getInitParameter(AC.clientErrorTTL.getURI())) : null,
+                    servletContext.getInitParameter(AC.serverErrorTTL.getURI()) != null ? Long.parseLong(servletContext.getInitParameter(AC.serverErrorTTL.getURI())) : null,
+                    servletContext.getInitParameter(AC.timeoutTTL.getURI()) != null ? Long.parseLong(servletContext.getInitParameter(AC.timeoutTTL.getURI())) : null,
+                    servletContext.getInitParameter(AC.connectionErrorTTL.getURI()) != null ? Long.parseLong(servletContext.getInitParameter(AC.connectionErrorTTL.getURI())) : null,
+                    servletContext.getInitParameter(AC.tlsErrorTTL.getURI()) != null ? Long.parseLong(servletContext.getInitParameter(AC.tlsErrorTTL.getURI())) : null,
+                    servletContext.getInitParameter(AC.readErrorTTL.getURI()) != null ? Long.parseLong(servletContext.getInitParameter(AC.readErrorTTL.getURI())) : null,
+                    servletContext.getInitParameter(AC.unsupportedMediaTypeTTL.getURI()) != null ? Long.parseLong(servletContext.getInitParameter(AC.unsupportedMediaTypeTTL.getURI())) : null)),
+            getSource(servletContext, servletContext.getInitParameter(AC.stylesheet.getURI()) != null ? servletContext.getInitParameter(AC.stylesheet.getURI()) : null),
+            servletContext.getInitParameter(AC.cacheStylesheet.getURI()) != null ? Boolean.parseBoolean(servletContext.getInitParameter(AC.cacheStylesheet.getURI())) : false,
+            servletContext.getInitParameter(AC.resolvingUncached.getURI()) != null ? Boolean.parseBoolean(servletContext.getInitParameter(AC.resolvingUncached.getURI())) : null,
+            servletContext.getInitParameter(AC.statementLimit.getURI()) != null ? Integer.parseInt(servletContext.getInitParameter(AC.statementLimit.getURI())) : null,
+            getAdmissionController(servletContext.getInitParameter(AC.maxTransformConcurrency.getURI()) != null ? Integer.parseInt(servletContext.getInitParameter(AC.maxTransformConcurrency.getURI())) : null,
+                servletContext.getInitParameter(AC.maxTransformQueue.getURI()) != null ? Integer.parseInt(servletContext.getInitParameter(AC.maxTransformQueue.getURI())) : null,
+                servletContext.getInitParameter(AC.transformQueueTimeout.getURI()) != null ? Long.parseLong(servletContext.getInitParameter(AC.transformQueueTimeout.getURI())) : null),
+            servletContext.getInitParameter(AC.warmUpConcurrency.getURI()) != null ? Integer.parseInt(servletContext.getInitParameter(AC.warmUpConcurrency.getURI())) : null,
+            startup);
+        
+        this.servletContext = servletContext;
     }
     
     public Application(final MediaTypes mediaTypes, final Client client, final Integer maxGetRequestSize, final boolean preemptiveAuth,
             final DataManager dataManager, final Source stylesheet, final boolean cacheStylesheet, final boolean resolvingUncached)
+    {
+        this(mediaTypes, client, maxGetRequestSize, preemptiveAuth, dataManager, stylesheet, cacheStylesheet, resolvingUncached,
+            null, null);
+    }
+    
+    public Application(final MediaTypes mediaTypes, final Client client, final Integer maxGetRequestSize, final boolean preemptiveAuth,
+            final DataManager dataManager, final Source stylesheet, final boolean cacheStylesheet, final boolean resolvingUncached,
+            final Integer statementLimit, final AdmissionController admissionController)
+    {
+        this(mediaTypes, client, maxGetRequestSize, preemptiveAuth, dataManager, stylesheet, cacheStylesheet, resolvingUncached,
+            statementLimit, admissionController, null);
+    }
+    
+    /**
+     * Constructs application. Stylesheet compilation, ontology warm-up and reasoner setup are independent startup phases
+     * that run concurrently; their times are logged and returned by {@link #getStartupTimes()}.
+     * 
+     * @param mediaTypes supported media types
+     * @param client HTTP client
+     * @param maxGetRequestSize max size of GET request URI
+     * @param preemptiveAuth if true, HTTP Basic credentials are sent preemptively
+     * @param dataManager data manager
+     * @param stylesheet XSLT stylesheet source
+     * @param cacheStylesheet if true, compiled stylesheet is cached
+     * @param resolvingUncached if true, uncached documents are resolved
+     * @param statementLimit max number of statements written as XHTML, or null
+     * @param admissionController transformation admission controller, or null
+     * @param warmUpConcurrency number of mapped documents loaded in parallel during warm-up, or null to skip warm-up
+     */
+    public Application(final MediaTypes mediaTypes, final Client client, final Integer maxGetRequestSize, final boolean preemptiveAuth,
+            final DataManager dataManager, final Source stylesheet, final boolean cacheStylesheet, final boolean resolvingUncached,
+            final Integer statementLimit, final AdmissionController admissionController, final Integer warmUpConcurrency)
+    {
+        this(mediaTypes, client, maxGetRequestSize, preemptiveAuth, dataManager, stylesheet, cacheStylesheet, resolvingUncached,
+            statementLimit, admissionController, warmUpConcurrency, new StartupPhases());
+    }
+    
+    /**
+     * Constructs application, continuing the startup phases that were started while building the arguments.
+     * 
+     * @param startup startup phases
+     */
+    protected Application(final MediaTypes mediaTypes, final Client client, final Integer maxGetRequestSize, final boolean preemptiveAuth,
+            final DataManager dataManager, final Source stylesheet, final boolean cacheStylesheet, final boolean resolvingUncached,
+            final Integer statementLimit, final AdmissionController admissionController, final Integer warmUpConcurrency,
+            final StartupPhases startup)
     {
         this.mediaTypes = mediaTypes;
         this.client = client;
         this.stylesheet = stylesheet;
         this.cacheStylesheet = cacheStylesheet;
+        this.statementLimit = statementLimit;
+        this.admissionController = admissionController;
         this.dataManager = dataManager;
 
         OntDocumentManager.getInstance().setFileManager((FileManager)dataManager);
         if (log.isDebugEnabled()) log.debug("OntDocumentManager.getInstance().getFileManager(): {}", OntDocumentManager.getInstance().getFileManager());
         
-        OntModelSpec rdfsReasonerSpec = new OntModelSpec(OntModelSpec.OWL_MEM);
-        Resource reasonerConfig = ModelFactory.createDefaultModel().
-            createResource().
-            addProperty(ReasonerVocabulary.PROPsetRDFSLevel, "simple");
-        Reasoner reasoner = RDFSRuleReasonerFactory.theInstance().
-                create(reasonerConfig);
-        //reasoner.setDerivationLogging(true);
-        //reasoner.setParameter(ReasonerVocabulary.PROPtraceOn, Boolean.TRUE);
-        rdfsReasonerSpec.setReasoner(reasoner);
-        this.ontModelSpec = rdfsReasonerSpec;
-        
         // add RDF/POST serialization
         RDFLanguages.register(RDFLanguages.RDFPOST);
         RDFParserRegistry.registerLangTriples(RDFLanguages.RDFPOST, new RDFPostReaderFactory());
         // register plain RDF/XML writer as default
         RDFWriterRegistry.register(Lang.RDFXML, RDFFormat.RDFXML_PLAIN);
+        // register streaming JSON-LD writer as default
+        RDFWriterRegistry.register(StreamingJSONLDWriter.FORMAT, StreamingJSONLDWriter.FACTORY);
+        RDFWriterRegistry.register(Lang.JSONLD, StreamingJSONLDWriter.FORMAT);
         
         xsltProc.registerExtensionFunction(new UUID());
         xsltProc.registerExtensionFunction(new ConstructDocument(xsltProc));
+        xsltProc.registerExtensionFunction(new SVGGraph(xsltProc, new SVGGraphEncoder(new GraphLayout())));
+        xsltProc.registerExtensionFunction(new NextResults(xsltProc));
+        xsltProc.registerExtensionFunction(new Fingerprint(this::getServletContext)); // assets are read at transformation time
 
+        Future<XsltExecutable> xsltExecFuture = startup.submit("Stylesheet compilation", () -> xsltProc.newXsltCompiler().compile(stylesheet));
+        // load mapped ontologies into the caches before serving requests
+        if (warmUpConcurrency != null && dataManager instanceof DataManagerImpl)
+            startup.submit("Ontology warm-up", () -> new CacheWarmer((DataManagerImpl)dataManager, warmUpConcurrency).warm());
+        
         try
         {
-            XsltCompiler xsltComp = xsltProc.newXsltCompiler();
-            xsltExec = xsltComp.compile(stylesheet);
+            this.ontModelSpec = startup.run("Reasoner setup", Application::getRDFSReasonerSpec);
+            xsltExec = xsltExecFuture.get();
+        }
+        catch (ExecutionException ex)
+        {
+            throw new WebApplicationException(ex.getCause()); // the failed phase is logged by StartupPhases
         }
-        catch (SaxonApiException ex)
+        catch (InterruptedException ex)
         {
-            if (log.isErrorEnabled()) log.error("System XSLT stylesheet error: {}", ex);
+            Thread.currentThread().interrupt();
             throw new WebApplicationException(ex);
         }
+        catch (Exception ex)
+        {
+            throw new WebApplicationException(ex); // the failed phase is logged by StartupPhases
+        }
+        finally
+        {
+            startup.await();
+        }
+        
+        this.startupTimes = startup.getTimes();
+    }
+
+    /**
+     * Waits for the result of a startup phase that a constructor argument depends on.
+     * If the phase failed, the other phases are awaited before the startup is aborted.
+     * 
+     * @param <T> result type
+     * @param startup startup phases
+     * @param phase phase result
+     * @return result
+     */
+    private static <T> T await(final StartupPhases startup, final Future<T> phase)
+    {
+        try
+        {
+            return phase.get();
+        }
+        catch (ExecutionException ex)
+        {
+            startup.await();
+            throw new WebApplicationException(ex.getCause()); // the failed phase is logged by StartupPhases
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            startup.await();
+            throw new WebApplicationException(ex);
+        }
+    }
+
+    /**
+     * Returns ontology spec with a simple RDFS reasoner.
+     * 
+     * @return ontology spec
+     */
+    public static OntModelSpec getRDFSReasonerSpec()
+    {
+        OntModelSpec rdfsReasonerSpec = new OntModelSpec(OntModelSpec.OWL_MEM);
+        Resource reasonerConfig = ModelFactory.createDefaultModel().
+            createResource().
+            addProperty(ReasonerVocabulary.PROPsetRDFSLevel, "simple");
+        Reasoner reasoner = RDFSRuleReasonerFactory.theInstance().
+                create(reasonerConfig);
+        //reasoner.setDerivationLogging(true);
+        //reasoner.setParameter(ReasonerVocabulary.PROPtraceOn, Boolean.TRUE);
+        rdfsReasonerSpec.setReasoner(reasoner);
+        return rdfsReasonerSpec;
     }
 
     /**
@@ -179,16 +361,20 @@ public class Application extends ResourceConfig
     {
         register(ProxyResourceBase.class);
         register(new HttpMethodOverrideFilter());
+        EncodingFilter.enableFor(this, GZipEncoder.class, DeflateEncoder.class); // compresses (X)HTML and RDF responses
         
-        register(new ModelProvider());
+        ModelProvider modelProvider = getModelProvider(); // the client's provider, so that the metrics cover both upstream and request bodies
+        register(modelProvider != null ? modelProvider : new ModelProvider());
         register(new ResultSetProvider());
         register(new QueryParamProvider());
         register(new UpdateRequestProvider());
         register(NotFoundExceptionMapper.class);
         register(RiotExceptionMapper.class);
         register(ClientErrorExceptionMapper.class);
-        register(new ModelXSLTWriter(getXsltExecutable(), getOntModelSpec())); // writes (X)HTML responses
-        register(new DatasetXSLTWriter(getXsltExecutable(), getOntModelSpec())); // writes (X)HTML responses
+        register(OverloadedExceptionMapper.class);
+        register(new ModelXSLTWriter(getXsltExecutable(), getOntModelSpec(), getStatementLimit(), getAdmissionController())); // writes (X)HTML responses
+        register(new DatasetXSLTWriter(getXsltExecutable(), getOntModelSpec(), getStatementLimit(), getAdmissionController())); // writes (X)HTML responses
+        register(new DataTableWriter()); // writes DataTable JSON responses
         
         register(new AbstractBinder()
         {
@@ -196,6 +382,7 @@ public class Application extends ResourceConfig
             protected void configure()
             {
                 bind(getDataManager()).to(DataManager.class);
+                bind(getDocumentCache()).to(IndexedDocumentCache.class);
             }
         });
         register(new AbstractBinder()
@@ -241,9 +428,24 @@ public class Application extends ResourceConfig
     }
 
     public static Client getClient(ClientConfig clientConfig)
+    {
+        return getClient(clientConfig, new CompressionMetrics());
+    }
+    
+    /**
+     * Returns HTTP client that accepts compressed responses. They are decoded while the entity is streamed to the readers.
+     * 
+     * @param clientConfig client configuration
+     * @param compressionMetrics measures compressed responses, or null
+     * @return HTTP client
+     */
+    public static Client getClient(ClientConfig clientConfig, CompressionMetrics compressionMetrics)
     {
 //        clientConfig.connectorProvider(new ApacheConnectorProvider());
         clientConfig.property(FOLLOW_REDIRECTS, Boolean.TRUE);
+        
+        clientConfig.register(new EncodingFeature(GZipEncoder.class, DeflateEncoder.class)); // sends Accept-Encoding with the registered encodings
+        if (compressionMetrics != null) compressionMetrics.register(clientConfig);
 
         clientConfig.register(new ModelProvider());
         clientConfig.register(new DatasetProvider());
@@ -259,9 +461,119 @@ public class Application extends ResourceConfig
 
     public static DataManager getDataManager(final LocationMapper mapper, final Client client, final MediaTypes mediaTypes, final boolean cacheModelLoads, final boolean preemptiveAuth, final boolean resolvingUncached)
     {
-        return new DataManagerImpl(mapper, new HashMap<>(), client, mediaTypes, cacheModelLoads, preemptiveAuth, resolvingUncached);
+        return getDataManager(mapper, client, mediaTypes, cacheModelLoads, preemptiveAuth, resolvingUncached, new HashMap<>(), null, null, null, null);
+    }
+    
+    /**
+     * Returns data manager with optional resolution features.
+     * 
+     * @param mapper location mapper
+     * @param client HTTP client
+     * @param mediaTypes supported media types
+     * @param cacheModelLoads if true, loaded models are cached in memory
+     * @param preemptiveAuth if true, HTTP Basic credentials are sent preemptively
+     * @param resolvingUncached if true, uncached URIs are dereferenced during XSLT transformation
+     * @param modelCache in-memory model cache
+     * @param diskCache disk cache of dereferenced documents, or null
+     * @param upstreamGuard per-host bulkheads and circuit breakers of resolved URIs, or null
+     * @param resolutionBudget time in milliseconds that a transformation may spend dereferencing URIs, or null if unlimited
+     * @param negativeCache cache of URIs that failed to resolve, or null
+     * @return data manager
+     * @see DataManagerImpl
+     */
+    public static DataManager getDataManager(final LocationMapper mapper, final Client client, final MediaTypes mediaTypes, final boolean cacheModelLoads, final boolean preemptiveAuth, final boolean resolvingUncached,
+            final Map<String, Model> modelCache, final ModelDiskCache diskCache, final UpstreamGuard upstreamGuard, final Long resolutionBudget, final NegativeCache negativeCache)
+    {
+        return new DataManagerImpl(mapper, modelCache, client, mediaTypes, cacheModelLoads, preemptiveAuth, resolvingUncached, diskCache, upstreamGuard, resolutionBudget, negativeCache);
+    }
+    
+    /**
+     * Returns cache of URIs that failed to resolve.
+     * 
+     * @param clientErrorTTL milliseconds to remember 4xx responses, or null
+     * @param serverErrorTTL milliseconds to remember 5xx responses, or null
+     * @param timeoutTTL milliseconds to remember timeouts, or null
+     * @param connectionErrorTTL milliseconds to remember unknown hosts and refused connections, defaults to <code>timeoutTTL</code>
+     * @param tlsErrorTTL milliseconds to remember TLS errors, or null
+     * @param readErrorTTL milliseconds to remember other I/O errors, e.g. while reading the response, or null
+     * @param unsupportedMediaTypeTTL milliseconds to remember responses with non-accepted media types, or null
+     * @return negative cache, or null if no TTL is set
+     */
+    public static NegativeCache getNegativeCache(final Long clientErrorTTL, final Long serverErrorTTL, final Long timeoutTTL, final Long connectionErrorTTL,
+            final Long tlsErrorTTL, final Long readErrorTTL, final Long unsupportedMediaTypeTTL)
+    {
+        Map<NegativeCache.FailureClass, Long> ttls = new EnumMap<>(NegativeCache.FailureClass.class);
+        if (clientErrorTTL != null) ttls.put(NegativeCache.FailureClass.CLIENT_ERROR, clientErrorTTL);
+        if (serverErrorTTL != null) ttls.put(NegativeCache.FailureClass.SERVER_ERROR, serverErrorTTL);
+        if (timeoutTTL != null) ttls.put(NegativeCache.FailureClass.TIMEOUT, timeoutTTL);
+        if (connectionErrorTTL != null || timeoutTTL != null) ttls.put(NegativeCache.FailureClass.CONNECTION_ERROR, connectionErrorTTL != null ? connectionErrorTTL : timeoutTTL);
+        if (tlsErrorTTL != null) ttls.put(NegativeCache.FailureClass.TLS_ERROR, tlsErrorTTL);
+        if (readErrorTTL != null) ttls.put(NegativeCache.FailureClass.READ_ERROR, readErrorTTL);
+        if (unsupportedMediaTypeTTL != null) ttls.put(NegativeCache.FailureClass.UNSUPPORTED_MEDIA_TYPE, unsupportedMediaTypeTTL);
+        if (ttls.isEmpty()) return null;
+        
+        return new NegativeCache(ttls);
+    }
+    
+    /**
+     * Returns in-memory cache of loaded models.
+     * 
+     * @param offHeap if true, models are kept off the heap
+     * @param maxDecodedBytes maximum encoded size of the off-heap models kept decoded on the heap, defaults to {@link OffHeapModelCache#DEFAULT_MAX_DECODED_BYTES}
+     * @return model cache
+     */
+    public static Map<String, Model> getModelCache(final boolean offHeap, final Long maxDecodedBytes)
+    {
+        if (offHeap) return new OffHeapModelCache(maxDecodedBytes != null ? maxDecodedBytes : OffHeapModelCache.DEFAULT_MAX_DECODED_BYTES);
+        
+        return new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Returns persistent cache of dereferenced documents.
+     * 
+     * @param directory cache directory, or null if not cached
+     * @param maxSize maximum size of the cached data in bytes, defaults to {@link ModelDiskCache#DEFAULT_MAX_SIZE}
+     * @return disk cache, or null if not cached
+     * @throws IOException if the directory cannot be created
+     */
+    public static ModelDiskCache getModelDiskCache(final Path directory, final Long maxSize) throws IOException
+    {
+        if (directory == null) return null;
+        
+        return new ModelDiskCache(directory, maxSize != null ? maxSize : ModelDiskCache.DEFAULT_MAX_SIZE);
+    }
+    
+    /**
+     * Returns bulkheads and circuit breakers of upstream hosts.
+     * 
+     * @param maxConcurrency maximum number of concurrent requests per host, or null if unguarded
+     * @param failureThreshold consecutive failures that open the circuit, defaults to {@link UpstreamGuard#DEFAULT_FAILURE_THRESHOLD}
+     * @param openDuration milliseconds before an open circuit is probed, defaults to {@link UpstreamGuard#DEFAULT_OPEN_DURATION}
+     * @return upstream guard, or null if unguarded
+     */
+    public static UpstreamGuard getUpstreamGuard(final Integer maxConcurrency, final Integer failureThreshold, final Long openDuration)
+    {
+        if (maxConcurrency == null) return null;
+        
+        return new UpstreamGuard(maxConcurrency, failureThreshold != null ? failureThreshold : UpstreamGuard.DEFAULT_FAILURE_THRESHOLD, openDuration != null ? openDuration : UpstreamGuard.DEFAULT_OPEN_DURATION);
     }
 
+    /**
+     * Returns limiter of concurrent XSLT transformations.
+     * 
+     * @param maxConcurrency maximum number of concurrent transformations, or null if unlimited
+     * @param maxQueueLength maximum number of waiting requests, defaults to <code>maxConcurrency</code>
+     * @param timeout maximum wait in milliseconds, defaults to {@link AdmissionController#DEFAULT_TIMEOUT}
+     * @return admission controller, or null if unlimited
+     */
+    public static AdmissionController getAdmissionController(final Integer maxConcurrency, final Integer maxQueueLength, final Long timeout)
+    {
+        if (maxConcurrency == null) return null;
+        
+        return new AdmissionController(maxConcurrency, maxQueueLength != null ? maxQueueLength : maxConcurrency, timeout != null ? timeout : AdmissionController.DEFAULT_TIMEOUT);
+    }
+    
     public MediaTypes getMediaTypes()
     {
         return mediaTypes;
@@ -287,6 +599,118 @@ public class Application extends ResourceConfig
         return cacheStylesheet;
     }
     
+    public Integer getStatementLimit()
+    {
+        return statementLimit;
+    }
+    
+    /**
+     * Returns the servlet context that static assets are read from.
+     * 
+     * @return servlet context, or null if there is none
+     */
+    public ServletContext getServletContext()
+    {
+        return servletContext;
+    }
+    
+    /**
+     * Returns the times of the startup phases.
+     * 
+     * @return times in milliseconds per phase
+     */
+    public Map<String, Long> getStartupTimes()
+    {
+        return startupTimes;
+    }
+
+    /**
+     * Returns the runtime counters of the application components, keyed by component and counter name.
+     * 
+     * @return counters, sorted by key
+     */
+    public Map<String, Long> getMetrics()
+    {
+        Map<String, Long> metrics = new TreeMap<>();
+        
+        if (getDataManager() instanceof DataManagerImpl)
+        {
+            DataManagerImpl dataManagerImpl = (DataManagerImpl)getDataManager();
+            metrics.put("dataManager.skippedFetches", dataManagerImpl.getSkippedFetches());
+            metrics.put("nodeInterner.lookups", dataManagerImpl.getNodeInterner().getLookups());
+            metrics.put("nodeInterner.hits", dataManagerImpl.getNodeInterner().getHits());
+            metrics.put("nodeInterner.bytesSaved", dataManagerImpl.getNodeInterner().getBytesSaved());
+            if (dataManagerImpl.getUpstreamGuard() != null) metrics.put("upstreamGuard.rejections", dataManagerImpl.getUpstreamGuard().getRejections());
+            if (dataManagerImpl.getNegativeCache() != null) metrics.put("negativeCache.hits", dataManagerImpl.getNegativeCache().getHits());
+            if (dataManagerImpl.getDiskCache() != null) metrics.put("diskCache.size", dataManagerImpl.getDiskCache().getSize());
+        }
+        
+        metrics.put("documentCache.hits", getDocumentCache().getHits());
+        metrics.put("documentCache.size", (long)getDocumentCache().size());
+        
+        CompressionMetrics compressionMetrics = getCompressionMetrics();
+        if (compressionMetrics != null)
+        {
+            metrics.put("compression.responses", compressionMetrics.getResponses());
+            metrics.put("compression.compressedBytes", compressionMetrics.getCompressedBytes());
+            metrics.put("compression.decompressedBytes", compressionMetrics.getDecompressedBytes());
+        }
+        
+        if (getAdmissionController() != null)
+        {
+            metrics.put("admissionController.admissions", getAdmissionController().getAdmissions());
+            metrics.put("admissionController.rejections", getAdmissionController().getRejections());
+            metrics.put("admissionController.active", (long)getAdmissionController().getActive());
+            metrics.put("admissionController.queueLength", (long)getAdmissionController().getQueueLength());
+        }
+        
+        ModelProvider modelProvider = getModelProvider();
+        if (modelProvider != null)
+        {
+            modelProvider.getParseCounts().forEach((lang, count) -> metrics.put("modelProvider.parses." + lang.getName(), count));
+            modelProvider.getParseErrors().forEach((lang, count) -> metrics.put("modelProvider.parseErrors." + lang.getName(), count));
+            modelProvider.getParseTimes().forEach((lang, time) -> metrics.put("modelProvider.parseTime." + lang.getName(), time));
+        }
+        
+        return metrics;
+    }
+    
+    /**
+     * Returns the metrics of compressed responses received by the HTTP client.
+     * 
+     * @return compression metrics, or null if the client does not measure compression
+     */
+    public CompressionMetrics getCompressionMetrics()
+    {
+        return CompressionMetrics.get(getClient().getConfiguration());
+    }
+    
+    /**
+     * Returns the provider that parses upstream responses and request bodies, together with its parse counts and times.
+     * The instance registered with the HTTP client is shared with the application.
+     * 
+     * @return model provider, or null if the client has none
+     */
+    public ModelProvider getModelProvider()
+    {
+        return ModelProvider.get(getClient().getConfiguration());
+    }
+
+    /**
+     * Returns the indexed documents of mapped URIs that are shared by the XSLT transformations.
+     * 
+     * @return document cache
+     */
+    public IndexedDocumentCache getDocumentCache()
+    {
+        return documentCache;
+    }
+    
+    public AdmissionController getAdmissionController()
+    {
+        return admissionController;
+    }
+    
     public OntModelSpec getOntModelSpec()
     {
         return ontModelSpec;
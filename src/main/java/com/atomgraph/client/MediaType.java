@@ -30,6 +30,10 @@ public class MediaType extends com.atomgraph.core.MediaType
     public final static String TEXT_XSL = "text/xsl";
     /** "text/xsl" */
     public final static MediaType TEXT_XSL_TYPE = new MediaType("text","xsl");
+    /** "application/vnd.datatable+json" */
+    public final static String APPLICATION_DATATABLE_JSON = "application/vnd.datatable+json";
+    /** "application/vnd.datatable+json" */
+    public final static MediaType APPLICATION_DATATABLE_JSON_TYPE = new MediaType("application","vnd.datatable+json");
     
     public MediaType(Lang lang)
     {
@@ -17,6 +17,7 @@ package com.atomgraph.client;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,27 +36,44 @@ public class MediaTypes extends com.atomgraph.core.MediaTypes
     public static final Map<Class, List<MediaType>> READABLE;
     public static final Map<Class, List<MediaType>> WRITABLE;
     
+    /** Orders media types by descending <code>q</code> value */
+    public static final Comparator<MediaType> QUALITY_ORDER = Comparator.comparingDouble((MediaType mediaType) -> getQuality(mediaType)).reversed();
+    
     static
     {
         com.atomgraph.core.MediaTypes coreTypes = new com.atomgraph.core.MediaTypes();
-        READABLE = coreTypes.getReadable();
+        
+        READABLE = new HashMap<>();
+        for (Map.Entry<Class, List<MediaType>> entry : coreTypes.getReadable().entrySet())
+        {
+            List<MediaType> readableTypes = new ArrayList<>(entry.getValue());
+            // list the preferred syntaxes (RDF Thrift, N-Triples) first, as some servers pick the first acceptable type regardless of q
+            readableTypes.sort(QUALITY_ORDER);
+            READABLE.put(entry.getKey(), Collections.unmodifiableList(readableTypes));
+        }
 
         MediaType html = new MediaType(MediaType.TEXT_HTML_TYPE.getType(), MediaType.TEXT_HTML_TYPE.getSubtype(), com.atomgraph.core.MediaTypes.UTF8_PARAM);
         MediaType xhtml = new MediaType(MediaType.APPLICATION_XHTML_XML_TYPE.getType(), MediaType.APPLICATION_XHTML_XML_TYPE.getSubtype(), com.atomgraph.core.MediaTypes.UTF8_PARAM);
 
+        MediaType dataTable = new MediaType(com.atomgraph.client.MediaType.APPLICATION_DATATABLE_JSON_TYPE.getType(), com.atomgraph.client.MediaType.APPLICATION_DATATABLE_JSON_TYPE.getSubtype(), com.atomgraph.core.MediaTypes.UTF8_PARAM);
+
         WRITABLE = new HashMap<>();
 
         List<MediaType> writableDatasetTypes = new ArrayList<>(coreTypes.getWritable(Dataset.class));
         writableDatasetTypes.add(0, html); // add HTML as writable MediaType
         writableDatasetTypes.add(1, xhtml); // add XHTML as writable MediaType
+        writableDatasetTypes.add(dataTable); // add DataTable JSON (of the default graph) as writable MediaType
         WRITABLE.put(Dataset.class, Collections.unmodifiableList(writableDatasetTypes));
-        
+
         List<MediaType> writableModelTypes = new ArrayList<>(coreTypes.getWritable(Model.class));
         writableModelTypes.add(0, html); // add HTML as writable MediaType
         writableModelTypes.add(1, xhtml); // add XHTML as writable MediaType
+        writableModelTypes.add(dataTable); // add DataTable JSON as writable MediaType
         WRITABLE.put(Model.class, Collections.unmodifiableList(writableModelTypes));
         
-        WRITABLE.put(ResultSet.class, coreTypes.getWritable(ResultSet.class));
+        List<MediaType> writableResultSetTypes = new ArrayList<>(coreTypes.getWritable(ResultSet.class));
+        writableResultSetTypes.add(dataTable); // add DataTable JSON as writable MediaType
+        WRITABLE.put(ResultSet.class, Collections.unmodifiableList(writableResultSetTypes));
     }
     
     public MediaTypes()
@@ -68,4 +86,25 @@ public class MediaTypes extends com.atomgraph.core.MediaTypes
         super(readable, writable);
     }
     
+    /**
+     * Returns the quality (<code>q</code> parameter) of a media type.
+     * 
+     * @param mediaType media type
+     * @return quality, 1.0 if not specified
+     */
+    public static double getQuality(MediaType mediaType)
+    {
+        String q = mediaType.getParameters().get("q");
+        if (q == null) return 1.0;
+        
+        try
+        {
+            return Double.parseDouble(q);
+        }
+        catch (NumberFormatException ex)
+        {
+            return 1.0;
+        }
+    }
+    
 }
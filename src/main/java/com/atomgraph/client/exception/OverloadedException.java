@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.exception;
+
+/**
+ * Thrown when a request is shed because the server is overloaded.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class OverloadedException extends RuntimeException
+{
+
+    private final long retryAfter;
+
+    /**
+     * Constructs exception.
+     *
+     * @param message error message
+     * @param retryAfter number of seconds after which the client can retry
+     */
+    public OverloadedException(String message, long retryAfter)
+    {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public long getRetryAfter()
+    {
+        return retryAfter;
+    }
+
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.HttpHeaders;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Servlet filter that serves static assets with compression and cache headers.
+ * Assets are read once and kept in memory together with their gzip variant, which is read from a precompressed
+ * <code>.gz</code> file next to the asset if there is one, or compressed on first use otherwise.
+ * Responses carry a content-hash <code>ETag</code>; requests whose <code>v</code> query parameter equals the
+ * content hash (fingerprinted URLs, see <code>ac:fingerprint()</code>) are cached as immutable for a year,
+ * other requests for <code>maxAge</code> seconds.
+ * <p>
+ * Only existing assets are kept; other paths are passed to the next filter. Paths of assets that are too large are
+ * remembered, so that they are passed on without being read again.
+ * Assets are not reloaded when they change on disk, so the filter is meant for deployed webapps.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class StaticAssetFilter implements Filter
+{
+
+    private static final Logger log = LoggerFactory.getLogger(StaticAssetFilter.class);
+
+    /** Init parameter with the max age of non-fingerprinted assets in seconds */
+    public static final String MAX_AGE_PARAM = "maxAge";
+    /** Query parameter with the content hash of a fingerprinted URL */
+    public static final String VERSION_PARAM = "v";
+    public static final long DEFAULT_MAX_AGE = 3600L;
+    public static final long IMMUTABLE_MAX_AGE = 31536000L;
+    /** Larger assets are passed to the next filter */
+    public static final int MAX_ASSET_SIZE = 4 << 20;
+    public static final String GZIP_EXTENSION = ".gz";
+
+    /** Matches an entity tag, weak or strong, or the wildcard */
+    private static final Pattern ENTITY_TAG = Pattern.compile("(W/)?(\"[^\"]*\")|\\*");
+
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+    private final Set<String> oversized = ConcurrentHashMap.newKeySet();
+    private ServletContext servletContext;
+    private long maxAge;
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException
+    {
+        servletContext = filterConfig.getServletContext();
+        maxAge = filterConfig.getInitParameter(MAX_AGE_PARAM) != null ? Long.parseLong(filterConfig.getInitParameter(MAX_AGE_PARAM)) : DEFAULT_MAX_AGE;
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException
+    {
+        if (!(request instanceof HttpServletRequest) || !(response instanceof HttpServletResponse))
+        {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        HttpServletRequest req = (HttpServletRequest)request;
+        HttpServletResponse resp = (HttpServletResponse)response;
+        if (!req.getMethod().equals("GET") && !req.getMethod().equals("HEAD"))
+        {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        Asset asset = getAsset(req.getServletPath() + (req.getPathInfo() != null ? req.getPathInfo() : ""));
+        if (asset == null)
+        {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        boolean gzip = asset.getGzipped() != null && isGzipAccepted(req.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String eTag = "\"" + asset.getHash() + (gzip ? "-gzip" : "") + "\""; // representations differ by encoding
+        resp.setHeader(HttpHeaders.ETAG, eTag);
+        resp.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (asset.getHash().equals(req.getParameter(VERSION_PARAM)))
+            resp.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + IMMUTABLE_MAX_AGE + ", immutable");
+        else
+            resp.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + getMaxAge());
+
+        if (isNoneMatchFailed(req.getHeader(HttpHeaders.IF_NONE_MATCH), eTag))
+        {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] body = gzip ? asset.getGzipped() : asset.getBytes();
+        resp.setContentType(asset.getContentType());
+        if (gzip) resp.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        resp.setContentLength(body.length);
+        if (req.getMethod().equals("GET")) resp.getOutputStream().write(body);
+    }
+
+    @Override
+    public void destroy()
+    {
+        assets.clear();
+        oversized.clear();
+    }
+
+    /**
+     * Returns asset at the given webapp path.
+     * Missing paths are not remembered, so that arbitrary request paths do not grow the cache.
+     * Paths of assets that are too large are remembered, as they exist in the webapp.
+     *
+     * @param path webapp path
+     * @return asset, or null if it does not exist or is too large
+     * @throws IOException if the asset cannot be read
+     */
+    public Asset getAsset(String path) throws IOException
+    {
+        Asset asset = assets.get(path);
+        if (asset == null && !oversized.contains(path))
+        {
+            asset = loadAsset(path);
+            if (asset != null) assets.putIfAbsent(path, asset);
+        }
+
+        return asset;
+    }
+
+    protected Asset loadAsset(String path) throws IOException
+    {
+        if (path.endsWith("/") || getServletContext().getResourcePaths(path) != null) return null; // directory
+
+        URL url = getServletContext().getResource(path);
+        if (url == null) return null;
+
+        byte[] bytes = read(url);
+        if (bytes == null)
+        {
+            if (log.isDebugEnabled()) log.debug("Static asset {} is larger than {} bytes, passing it on", path, MAX_ASSET_SIZE);
+            oversized.add(path);
+            return null;
+        }
+
+        String contentType = getServletContext().getMimeType(path) != null ? getServletContext().getMimeType(path) : "application/octet-stream";
+        byte[] gzipped = null;
+        if (isCompressible(contentType))
+        {
+            URL precompressed = getServletContext().getResource(path + GZIP_EXTENSION);
+            gzipped = precompressed != null ? read(precompressed) : gzip(bytes);
+            if (gzipped != null && gzipped.length >= bytes.length) gzipped = null; // not worth it
+        }
+
+        if (log.isDebugEnabled()) log.debug("Loaded static asset {} ({} bytes, {} gzipped)", path, bytes.length, gzipped != null ? gzipped.length : "not");
+        return new Asset(bytes, gzipped, contentType, getHash(bytes));
+    }
+
+    /**
+     * Reads the resource, unless it is too large.
+     *
+     * @param url resource URL
+     * @return bytes, or null if the resource is too large
+     * @throws IOException if the resource cannot be read
+     */
+    public static byte[] read(URL url) throws IOException
+    {
+        try (InputStream is = new BoundedInputStream(url.openStream(), MAX_ASSET_SIZE + 1L))
+        {
+            byte[] bytes = IOUtils.toByteArray(is);
+            return bytes.length > MAX_ASSET_SIZE ? null : bytes;
+        }
+    }
+
+    protected static byte[] gzip(byte[] bytes) throws IOException
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(stream))
+        {
+            gzip.write(bytes);
+        }
+        return stream.toByteArray();
+    }
+
+    /**
+     * Returns the content hash that is used as <code>ETag</code> and URL fingerprint.
+     *
+     * @param bytes asset bytes
+     * @return hex-encoded hash prefix
+     */
+    public static String getHash(byte[] bytes)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return String.format("%064x", new BigInteger(1, digest)).substring(0, 20);
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new IllegalStateException(ex); // SHA-256 is supported by every Java platform
+        }
+    }
+
+    public static boolean isCompressible(String contentType)
+    {
+        return contentType.startsWith("text/") || contentType.contains("javascript") || contentType.contains("xml") ||
+            contentType.contains("json");
+    }
+
+    /**
+     * Returns true if the <code>If-None-Match</code> header value matches the entity tag, i.e. the condition fails
+     * and 304 Not Modified should be returned.
+     * The value can be a list of entity tags or <code>*</code>; tags are compared weakly, as required for this header.
+     *
+     * @param ifNoneMatch header value or null
+     * @param eTag quoted entity tag of the current representation
+     * @return true if the tag matches
+     * @see <a href="https://tools.ietf.org/html/rfc7232#section-3.2">If-None-Match</a>
+     */
+    public static boolean isNoneMatchFailed(String ifNoneMatch, String eTag)
+    {
+        if (ifNoneMatch == null) return false;
+
+        Matcher matcher = ENTITY_TAG.matcher(ifNoneMatch);
+        while (matcher.find())
+            if (matcher.group(2) == null || matcher.group(2).equals(eTag)) return true; // wildcard or opaque tags are equal
+
+        return false;
+    }
+
+    /**
+     * Returns true if the <code>Accept-Encoding</code> header value accepts gzip.
+     *
+     * @param acceptEncoding header value or null
+     * @return true if gzip is accepted
+     */
+    public static boolean isGzipAccepted(String acceptEncoding)
+    {
+        if (acceptEncoding == null) return false;
+
+        for (String coding : acceptEncoding.split(","))
+        {
+            String[] parts = coding.trim().split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip") && !parts[0].trim().equals("*")) continue;
+
+            boolean rejected = false;
+            for (int i = 1; i < parts.length; i++)
+                if (parts[i].trim().matches("q=0(\\.0*)?")) rejected = true;
+            if (!rejected) return true;
+        }
+
+        return false;
+    }
+
+    public ServletContext getServletContext()
+    {
+        return servletContext;
+    }
+
+    public long getMaxAge()
+    {
+        return maxAge;
+    }
+
+    /**
+     * Static asset held in memory.
+     */
+    public static class Asset
+    {
+
+        private final byte[] bytes, gzipped;
+        private final String contentType, hash;
+
+        public Asset(byte[] bytes, byte[] gzipped, String contentType, String hash)
+        {
+            this.bytes = bytes;
+            this.gzipped = gzipped;
+            this.contentType = contentType;
+            this.hash = hash;
+        }
+
+        public byte[] getBytes()
+        {
+            return bytes;
+        }
+
+        public byte[] getGzipped()
+        {
+            return gzipped;
+        }
+
+        public String getContentType()
+        {
+            return contentType;
+        }
+
+        public String getHash()
+        {
+            return hash;
+        }
+
+    }
+
+}
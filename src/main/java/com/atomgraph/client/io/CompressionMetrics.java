@@ -0,0 +1,187 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.LongAdder;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Configurable;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import org.apache.commons.io.input.ProxyInputStream;
+
+/**
+ * Measures compressed response entities.
+ * Two reader interceptors wrap the entity stream of responses with a <code>Content-Encoding</code>:
+ * one before it is decoded by the content encoder, counting the bytes transferred,
+ * and one after, counting the bytes read by the message body readers.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class CompressionMetrics
+{
+
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder decompressedBytes = new LongAdder();
+
+    /**
+     * Registers the interceptors around the content encoders.
+     *
+     * @param <C> configurable type
+     * @param configurable client configuration
+     */
+    public <C extends Configurable<C>> void register(Configurable<C> configurable)
+    {
+        configurable.register(new CompressedCounter(), Priorities.ENTITY_CODER - 100);
+        configurable.register(new DecompressedCounter(), Priorities.ENTITY_CODER + 100);
+    }
+
+    /**
+     * Returns the metrics registered with a client or server configuration.
+     *
+     * @param configuration configuration
+     * @return compression metrics, or null if none were registered
+     */
+    public static CompressionMetrics get(Configuration configuration)
+    {
+        if (configuration == null) throw new IllegalArgumentException("Configuration cannot be null");
+
+        for (Object instance : configuration.getInstances())
+            if (instance instanceof CompressedCounter) return ((CompressedCounter)instance).getMetrics();
+
+        return null;
+    }
+
+    /**
+     * Returns the number of compressed responses.
+     *
+     * @return response count
+     */
+    public long getResponses()
+    {
+        return responses.sum();
+    }
+
+    /**
+     * Returns the number of compressed bytes read from the network.
+     *
+     * @return byte count
+     */
+    public long getCompressedBytes()
+    {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * Returns the number of bytes that the compressed responses were decoded into.
+     *
+     * @return byte count
+     */
+    public long getDecompressedBytes()
+    {
+        return decompressedBytes.sum();
+    }
+
+    /**
+     * Reader interceptor that counts the entity bytes of encoded responses.
+     * Subclassed for each position, as providers are registered once per class.
+     */
+    protected abstract class CountingInterceptor implements ReaderInterceptor
+    {
+
+        private final LongAdder bytes;
+        private final boolean countResponses;
+
+        protected CountingInterceptor(LongAdder bytes, boolean countResponses)
+        {
+            this.bytes = bytes;
+            this.countResponses = countResponses;
+        }
+
+        @Override
+        public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException, WebApplicationException
+        {
+            String contentEncoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+            if (contentEncoding != null && !contentEncoding.equalsIgnoreCase("identity"))
+            {
+                if (countResponses) responses.increment();
+                context.setInputStream(new CountingInputStream(context.getInputStream(), bytes));
+            }
+
+            return context.proceed();
+        }
+
+    }
+
+    /**
+     * Counts the bytes before they are decoded.
+     */
+    protected class CompressedCounter extends CountingInterceptor
+    {
+
+        protected CompressedCounter()
+        {
+            super(compressedBytes, true);
+        }
+
+        protected CompressionMetrics getMetrics()
+        {
+            return CompressionMetrics.this;
+        }
+
+    }
+
+    /**
+     * Counts the bytes after they are decoded.
+     */
+    protected class DecompressedCounter extends CountingInterceptor
+    {
+
+        protected DecompressedCounter()
+        {
+            super(decompressedBytes, false);
+        }
+
+    }
+
+    /**
+     * Input stream that adds the number of bytes read to a counter.
+     */
+    protected static class CountingInputStream extends ProxyInputStream
+    {
+
+        private final LongAdder bytes;
+
+        protected CountingInputStream(InputStream in, LongAdder bytes)
+        {
+            super(in);
+            this.bytes = bytes;
+        }
+
+        @Override
+        protected void afterRead(int n) throws IOException
+        {
+            if (n > 0) bytes.add(n);
+        }
+
+    }
+
+}
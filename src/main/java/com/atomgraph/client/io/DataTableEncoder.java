@@ -0,0 +1,331 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.apache.jena.atlas.json.io.JSWriter;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+/**
+ * Encodes SPARQL results and RDF graphs as Google DataTable JSON.
+ * The encoding follows <code>SPARQLXMLResults2DataTable.xsl</code> and <code>RDFXML2DataTable.xsl</code>:
+ * numeric and boolean literals become JSON values, dates become <code>Date(...)</code> strings,
+ * times become arrays, other nodes become strings.
+ * <p>
+ * Results are streamed row by row. The type of a column is only known once all its values have been seen,
+ * so the <code>rows</code> of results are written before the <code>cols</code>.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ * @see <a href="https://developers.google.com/chart/interactive/docs/reference#dataparam">DataTable JavaScript literal</a>
+ */
+public class DataTableEncoder
+{
+
+    private static final DatatypeFactory DATATYPE_FACTORY;
+
+    static
+    {
+        try
+        {
+            DATATYPE_FACTORY = DatatypeFactory.newInstance();
+        }
+        catch (DatatypeConfigurationException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Column types.
+     */
+    public enum ColumnType
+    {
+        STRING("string"), NUMBER("number"), DATE("date"), TIMEOFDAY("timeofday");
+
+        private final String name;
+
+        ColumnType(String name)
+        {
+            this.name = name;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+    }
+
+    /**
+     * Encodes SPARQL results. Columns are the result variables.
+     *
+     * @param results SPARQL results
+     * @param out output writer
+     * @throws IOException if writing fails
+     */
+    public void write(ResultSet results, Writer out) throws IOException
+    {
+        List<Var> vars = Var.varList(results.getResultVars());
+        List<Column> columns = new ArrayList<>(vars.size());
+        for (Var var : vars) columns.add(new Column(var.getVarName(), var.getVarName()));
+
+        out.write("{\n  \"rows\": [");
+        boolean first = true;
+        while (results.hasNext())
+        {
+            Binding binding = results.nextBinding();
+            List<Node> cells = new ArrayList<>(vars.size());
+            for (Var var : vars) cells.add(binding.get(var));
+
+            out.write(first ? "\n" : ",\n");
+            writeRow(out, columns, cells);
+            first = false;
+        }
+        out.write(first ? "],\n" : "\n  ],\n");
+
+        writeColumns(out, columns);
+        out.write("\n}\n");
+        out.flush();
+    }
+
+    /**
+     * Encodes RDF graph. Rows are subjects and columns are properties, sorted by URI.
+     * Only the first value of a property is written per subject.
+     *
+     * @param graph RDF graph
+     * @param out output writer
+     * @throws IOException if writing fails
+     */
+    public void write(Graph graph, Writer out) throws IOException
+    {
+        Map<Node, Column> properties = new TreeMap<>(Comparator.comparing(Node::getURI));
+        ExtendedIterator<Triple> triples = graph.find();
+        try
+        {
+            while (triples.hasNext())
+            {
+                Triple triple = triples.next();
+                properties.computeIfAbsent(triple.getPredicate(), property -> new Column(property.getURI(), property.getURI())).
+                    add(triple.getObject());
+            }
+        }
+        finally
+        {
+            triples.close();
+        }
+
+        List<Column> columns = new ArrayList<>(properties.values());
+        out.write("{\n");
+        writeColumns(out, columns);
+        out.write(",\n  \"rows\": [");
+
+        boolean first = true;
+        Set<Node> seen = new HashSet<>();
+        ExtendedIterator<Node> subjects = graph.find().mapWith(Triple::getSubject).filterKeep(seen::add);
+        try
+        {
+            while (subjects.hasNext())
+            {
+                Node subject = subjects.next();
+                List<Node> cells = new ArrayList<>(columns.size());
+                for (Node property : properties.keySet())
+                {
+                    ExtendedIterator<Triple> values = graph.find(subject, property, Node.ANY);
+                    try
+                    {
+                        cells.add(values.hasNext() ? values.next().getObject() : null);
+                    }
+                    finally
+                    {
+                        values.close();
+                    }
+                }
+
+                out.write(first ? "\n" : ",\n");
+                writeRow(out, null, cells);
+                first = false;
+            }
+        }
+        finally
+        {
+            subjects.close();
+        }
+
+        out.write(first ? "]\n}\n" : "\n  ]\n}\n");
+        out.flush();
+    }
+
+    /**
+     * Writes row.
+     *
+     * @param out output writer
+     * @param columns columns whose types are updated with the cells, or null
+     * @param cells cell values, null if unbound
+     * @throws IOException if writing fails
+     */
+    protected void writeRow(Writer out, List<Column> columns, List<Node> cells) throws IOException
+    {
+        out.write("    { \"c\": [ ");
+        for (int i = 0; i < cells.size(); i++)
+        {
+            if (i > 0) out.write(", ");
+            if (columns != null) columns.get(i).add(cells.get(i));
+            out.write("{ \"v\": " + getValue(cells.get(i)) + " }");
+        }
+        out.write(" ] }");
+    }
+
+    protected void writeColumns(Writer out, List<Column> columns) throws IOException
+    {
+        out.write("  \"cols\": [");
+        for (int i = 0; i < columns.size(); i++)
+        {
+            Column column = columns.get(i);
+            out.write(i > 0 ? ",\n" : "\n");
+            out.write("    { \"id\": " + JSWriter.outputQuotedString(column.getId()) +
+                ", \"label\": " + JSWriter.outputQuotedString(column.getLabel()) +
+                ", \"type\": " + JSWriter.outputQuotedString(column.getType().getName()) + " }");
+        }
+        out.write(columns.isEmpty() ? "]" : "\n  ]");
+    }
+
+    /**
+     * Returns the JSON value of a cell.
+     *
+     * @param node RDF node, or null if unbound
+     * @return JSON value
+     */
+    public static String getValue(Node node)
+    {
+        if (node == null) return "null";
+        if (node.isURI()) return JSWriter.outputQuotedString(node.getURI());
+        if (node.isBlank()) return JSWriter.outputQuotedString(node.getBlankNodeLabel());
+        if (!node.isLiteral()) return JSWriter.outputQuotedString(node.toString());
+
+        String lexical = node.getLiteralLexicalForm();
+        try
+        {
+            switch (getColumnType(node))
+            {
+                case NUMBER:
+                    return new BigDecimal(lexical.trim()).toString(); // normalizes the lexical form to a valid JSON number
+                case DATE:
+                    XMLGregorianCalendar calendar = DATATYPE_FACTORY.newXMLGregorianCalendar(lexical.trim()); // fields are not normalized to UTC
+                    String date = calendar.getYear() + ", " + (calendar.getMonth() - 1) + ", " + calendar.getDay();
+                    if (node.getLiteralDatatypeURI().equals(XSDDatatype.XSDdateTime.getURI()))
+                    {
+                        BigDecimal seconds = BigDecimal.valueOf(calendar.getSecond());
+                        if (calendar.getFractionalSecond() != null) seconds = seconds.add(calendar.getFractionalSecond());
+                        date += ", " + calendar.getHour() + ", " + calendar.getMinute() + ", " + seconds.stripTrailingZeros().toPlainString();
+                    }
+                    return JSWriter.outputQuotedString("Date(" + date + ")");
+                case TIMEOFDAY:
+                    String time = "[ " + Integer.parseInt(lexical.substring(0, 2)) + ", " + Integer.parseInt(lexical.substring(3, 5)) + ", " + Integer.parseInt(lexical.substring(6, 8));
+                    if (lexical.contains(".")) time += ", " + Integer.parseInt(lexical.substring(lexical.indexOf('.') + 1, Math.min(lexical.indexOf('.') + 4, lexical.length())).replaceAll("\\D.*", ""));
+                    return time + " ]";
+                default:
+                    if (node.getLiteralDatatypeURI().equals(XSDDatatype.XSDboolean.getURI()) && (lexical.equals("true") || lexical.equals("false"))) return lexical;
+                    return JSWriter.outputQuotedString(lexical);
+            }
+        }
+        catch (IllegalArgumentException | IndexOutOfBoundsException ex)
+        {
+            return JSWriter.outputQuotedString(lexical); // ill-formed literal
+        }
+    }
+
+    /**
+     * Returns the column type of a single value.
+     *
+     * @param node RDF node
+     * @return column type
+     */
+    public static ColumnType getColumnType(Node node)
+    {
+        if (!node.isLiteral()) return ColumnType.STRING;
+
+        String datatype = node.getLiteralDatatypeURI();
+        if (datatype.equals(XSDDatatype.XSDinteger.getURI()) || datatype.equals(XSDDatatype.XSDdecimal.getURI()) ||
+                datatype.equals(XSDDatatype.XSDdouble.getURI()) || datatype.equals(XSDDatatype.XSDfloat.getURI()))
+            return ColumnType.NUMBER;
+        if (datatype.equals(XSDDatatype.XSDdateTime.getURI()) || datatype.equals(XSDDatatype.XSDdate.getURI())) return ColumnType.DATE;
+        if (datatype.equals(XSDDatatype.XSDtime.getURI())) return ColumnType.TIMEOFDAY;
+
+        return ColumnType.STRING;
+    }
+
+    /**
+     * Column whose type is the common type of its values.
+     */
+    protected static class Column
+    {
+
+        private final String id, label;
+        private ColumnType type;
+        private boolean mixed;
+
+        protected Column(String id, String label)
+        {
+            this.id = id;
+            this.label = label;
+        }
+
+        protected void add(Node node)
+        {
+            if (node == null || mixed) return; // unbound values do not affect the type
+
+            ColumnType nodeType = getColumnType(node);
+            if (type == null) type = nodeType;
+            else if (type != nodeType) mixed = true;
+        }
+
+        public String getId()
+        {
+            return id;
+        }
+
+        public String getLabel()
+        {
+            return label;
+        }
+
+        public ColumnType getType()
+        {
+            return mixed || type == null ? ColumnType.STRING : type;
+        }
+
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.io;
+
+import com.atomgraph.client.util.NodeInterner;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.sparql.core.Quad;
+
+/**
+ * RDF stream that interns the nodes of triples and quads before passing them on.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ * @see com.atomgraph.client.util.NodeInterner
+ */
+public class InterningStreamRDF extends StreamRDFWrapper
+{
+
+    private final NodeInterner interner;
+
+    public InterningStreamRDF(StreamRDF other, NodeInterner interner)
+    {
+        super(other);
+        if (interner == null) throw new IllegalArgumentException("NodeInterner cannot be null");
+
+        this.interner = interner;
+    }
+
+    @Override
+    public void triple(Triple triple)
+    {
+        super.triple(getNodeInterner().intern(triple));
+    }
+
+    @Override
+    public void quad(Quad quad)
+    {
+        super.quad(getNodeInterner().intern(quad));
+    }
+
+    public NodeInterner getNodeInterner()
+    {
+        return interner;
+    }
+
+}
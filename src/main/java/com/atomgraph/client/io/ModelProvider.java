@@ -0,0 +1,195 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.io;
+
+import com.atomgraph.client.util.NodeInterner;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.ext.Provider;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.system.ErrorHandler;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Model provider that measures parsing per RDF syntax.
+ * The measured time includes reading the entity stream, i.e. the transfer of the body.
+ * Only successful parses are counted and timed; failed parses are counted separately.
+ * N-Triples and N-Quads bodies are streamed in chunks that are parsed in parallel.
+ * The nodes of parsed triples are interned, so that models parsed from different documents share them.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+@Provider
+public class ModelProvider extends com.atomgraph.core.io.ModelProvider
+{
+
+    private static final Logger log = LoggerFactory.getLogger(ModelProvider.class);
+
+    private final Map<Lang, LongAdder> parseCounts = new ConcurrentHashMap<>();
+    private final Map<Lang, LongAdder> parseNanos = new ConcurrentHashMap<>();
+    private final Map<Lang, LongAdder> parseErrors = new ConcurrentHashMap<>();
+    private final ParallelLineParser parallelParser;
+    private final NodeInterner interner;
+
+    public ModelProvider()
+    {
+        this(new ParallelLineParser(ForkJoinPool.commonPool(), ParallelLineParser.DEFAULT_CHUNK_SIZE), NodeInterner.get());
+    }
+    
+    /**
+     * Constructs provider with the given parser of line-based syntaxes and node interner.
+     * 
+     * @param parallelParser parallel parser, or null
+     * @param interner node interner, or null
+     */
+    public ModelProvider(ParallelLineParser parallelParser, NodeInterner interner)
+    {
+        this.parallelParser = parallelParser;
+        this.interner = interner;
+    }
+    
+    @Override
+    public Model read(Model model, InputStream is, Lang lang, String baseURI, ErrorHandler errorHandler)
+    {
+        if (model == null) throw new IllegalArgumentException("Model must be not null");
+        if (is == null) throw new IllegalArgumentException("InputStream must be not null");
+        if (lang == null) throw new IllegalArgumentException("Lang must be not null");
+
+        StreamRDF dest = StreamRDFLib.graph(model.getGraph());
+        if (getNodeInterner() != null) dest = new InterningStreamRDF(dest, getNodeInterner());
+        
+        long start = System.nanoTime();
+        boolean parsed = false;
+        try
+        {
+            if (getParallelParser() != null && ParallelLineParser.isLineBased(lang) && getParallelParser().getPool().getParallelism() > 1)
+            {
+                getParallelParser().parse(is, lang, baseURI, errorHandler, dest);
+                parsed = true;
+                return model;
+            }
+            
+            RDFParser.create().
+                lang(lang).
+                errorHandler(errorHandler).
+                base(baseURI).
+                source(is).
+                build().
+                parse(dest);
+            parsed = true;
+            return model;
+        }
+        catch (IOException ex)
+        {
+            throw new WebApplicationException(ex);
+        }
+        finally
+        {
+            long elapsed = System.nanoTime() - start;
+            if (parsed)
+            {
+                parseCounts.computeIfAbsent(lang, key -> new LongAdder()).increment();
+                parseNanos.computeIfAbsent(lang, key -> new LongAdder()).add(elapsed);
+                if (log.isDebugEnabled()) log.debug("Parsed {} statements of {} from base URI {} in {} ms", model.size(), lang.getName(), baseURI, TimeUnit.NANOSECONDS.toMillis(elapsed));
+                if (log.isDebugEnabled() && getNodeInterner() != null) log.debug("Node interner: {} lookups, {} hits, approx. {} bytes saved", getNodeInterner().getLookups(), getNodeInterner().getHits(), getNodeInterner().getBytesSaved());
+            }
+            else
+            {
+                parseErrors.computeIfAbsent(lang, key -> new LongAdder()).increment();
+                if (log.isDebugEnabled()) log.debug("Failed to parse {} from base URI {} after {} ms", lang.getName(), baseURI, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+        }
+    }
+
+    /**
+     * Returns the provider registered with a client or server configuration.
+     *
+     * @param configuration configuration
+     * @return model provider, or null if none was registered
+     */
+    public static ModelProvider get(Configuration configuration)
+    {
+        if (configuration == null) throw new IllegalArgumentException("Configuration cannot be null");
+
+        for (Object instance : configuration.getInstances())
+            if (instance instanceof ModelProvider) return (ModelProvider)instance;
+
+        return null;
+    }
+
+    /**
+     * Returns the number of parsed bodies per RDF syntax.
+     *
+     * @return map of counts
+     */
+    public Map<Lang, Long> getParseCounts()
+    {
+        return getSums(parseCounts);
+    }
+
+    /**
+     * Returns the number of bodies per RDF syntax that failed to parse.
+     *
+     * @return map of counts
+     */
+    public Map<Lang, Long> getParseErrors()
+    {
+        return getSums(parseErrors);
+    }
+
+    /**
+     * Returns the total time in milliseconds of successful parses per RDF syntax.
+     *
+     * @return map of times
+     */
+    public Map<Lang, Long> getParseTimes()
+    {
+        Map<Lang, Long> times = new ConcurrentHashMap<>();
+        parseNanos.forEach((lang, nanos) -> times.put(lang, TimeUnit.NANOSECONDS.toMillis(nanos.sum())));
+        return Collections.unmodifiableMap(times);
+    }
+
+    public ParallelLineParser getParallelParser()
+    {
+        return parallelParser;
+    }
+    
+    public NodeInterner getNodeInterner()
+    {
+        return interner;
+    }
+    
+    protected Map<Lang, Long> getSums(Map<Lang, LongAdder> adders)
+    {
+        Map<Lang, Long> sums = new ConcurrentHashMap<>();
+        adders.forEach((lang, adder) -> sums.put(lang, adder.sum()));
+        return Collections.unmodifiableMap(sums);
+    }
+
+}
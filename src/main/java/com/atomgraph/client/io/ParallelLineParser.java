@@ -0,0 +1,232 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.io;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import org.apache.commons.io.IOUtils;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.lang.LabelToNode;
+import org.apache.jena.riot.system.ErrorHandler;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parses line-based RDF syntaxes (N-Triples and N-Quads) in parallel.
+ * The body is read in chunks that end on line boundaries, the chunks are parsed by a fork-join pool,
+ * and the parsed triples/quads are sent to the destination in document order from the calling thread.
+ * The number of chunks in flight is bounded, so the body is streamed rather than buffered as a whole.
+ * Blank node labels are allocated using a hash scoped to the document, so that the same label
+ * in different chunks denotes the same blank node.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class ParallelLineParser
+{
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelLineParser.class);
+
+    /** Default chunk size in bytes */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    /**
+     * Constructs parser.
+     *
+     * @param pool fork-join pool that parses the chunks
+     * @param chunkSize approximate chunk size in bytes
+     */
+    public ParallelLineParser(ForkJoinPool pool, int chunkSize)
+    {
+        if (pool == null) throw new IllegalArgumentException("ForkJoinPool cannot be null");
+        if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive");
+
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns true if the syntax can be split on line boundaries.
+     *
+     * @param lang RDF syntax
+     * @return true if line-based
+     */
+    public static boolean isLineBased(Lang lang)
+    {
+        return RDFLanguages.NTRIPLES.equals(lang) || RDFLanguages.NQUADS.equals(lang);
+    }
+
+    /**
+     * Parses body and sends its triples or quads to the destination.
+     * At most twice as many chunks as the parallelism of the pool are read ahead of the destination.
+     *
+     * @param is body stream
+     * @param lang line-based RDF syntax
+     * @param baseURI base URI
+     * @param errorHandler parser error handler
+     * @param dest destination stream
+     * @throws IOException if the body cannot be read
+     */
+    public void parse(InputStream is, Lang lang, String baseURI, ErrorHandler errorHandler, StreamRDF dest) throws IOException
+    {
+        if (is == null) throw new IllegalArgumentException("InputStream cannot be null");
+        if (!isLineBased(lang)) throw new IllegalArgumentException("Lang '" + lang + "' is not line-based");
+        if (dest == null) throw new IllegalArgumentException("StreamRDF cannot be null");
+
+        InputStream buffered = new BufferedInputStream(is);
+        UUID labelScope = UUID.randomUUID();
+        int maxInFlight = getPool().getParallelism() * 2;
+        Deque<ForkJoinTask<ChunkCollector>> tasks = new ArrayDeque<>();
+        int chunks = 0;
+        
+        dest.start();
+        try
+        {
+            byte[] chunk;
+            while ((chunk = readChunk(buffered)) != null)
+            {
+                final byte[] bytes = chunk;
+                tasks.add(getPool().submit(() -> parseChunk(bytes, 0, bytes.length, lang, baseURI, errorHandler, labelScope)));
+                chunks++;
+                if (tasks.size() >= maxInFlight) send(tasks.poll(), dest);
+            }
+            while (!tasks.isEmpty()) send(tasks.poll(), dest);
+        }
+        finally
+        {
+            tasks.forEach(task -> task.cancel(false));
+            dest.finish();
+            if (log.isDebugEnabled()) log.debug("Parsed {} in {} chunks", lang.getName(), chunks);
+        }
+    }
+
+    /**
+     * Waits for the chunk to be parsed and sends its triples or quads to the destination.
+     *
+     * @param task chunk task
+     * @param dest destination stream
+     */
+    protected void send(ForkJoinTask<ChunkCollector> task, StreamRDF dest)
+    {
+        ChunkCollector chunk = task.join(); // rethrows parse errors
+        chunk.getTriples().forEach(dest::triple);
+        chunk.getQuads().forEach(dest::quad);
+    }
+
+    /**
+     * Reads the next chunk of the body. The chunk ends after the first line break following the chunk size.
+     *
+     * @param is buffered body stream
+     * @return chunk bytes, or null if the body has been read
+     * @throws IOException if the body cannot be read
+     */
+    protected byte[] readChunk(InputStream is) throws IOException
+    {
+        byte[] buffer = new byte[getChunkSize()];
+        int length = IOUtils.read(is, buffer);
+        if (length == 0) return null;
+
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(length + 256);
+        chunk.write(buffer, 0, length);
+        if (length == buffer.length && buffer[length - 1] != '\n')
+        {
+            int b;
+            while ((b = is.read()) != -1)
+            {
+                chunk.write(b);
+                if (b == '\n') break;
+            }
+        }
+        
+        return chunk.toByteArray();
+    }
+
+    protected ChunkCollector parseChunk(byte[] bytes, int offset, int length, Lang lang, String baseURI, ErrorHandler errorHandler, UUID labelScope)
+    {
+        ChunkCollector collector = new ChunkCollector();
+        RDFParser.create().
+            lang(lang).
+            errorHandler(errorHandler).
+            base(baseURI).
+            labelToNode(LabelToNode.createScopeByDocumentHash(labelScope)).
+            source(new ByteArrayInputStream(bytes, offset, length)).
+            build().
+            parse(collector);
+        return collector;
+    }
+
+    public ForkJoinPool getPool()
+    {
+        return pool;
+    }
+
+    public int getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    /**
+     * Collects the triples and quads of a chunk.
+     */
+    protected static class ChunkCollector extends StreamRDFBase
+    {
+
+        private final List<Triple> triples = new ArrayList<>();
+        private final List<Quad> quads = new ArrayList<>();
+
+        @Override
+        public void triple(Triple triple)
+        {
+            triples.add(triple);
+        }
+
+        @Override
+        public void quad(Quad quad)
+        {
+            quads.add(quad);
+        }
+
+        public List<Triple> getTriples()
+        {
+            return triples;
+        }
+
+        public List<Quad> getQuads()
+        {
+            return quads;
+        }
+
+    }
+
+}
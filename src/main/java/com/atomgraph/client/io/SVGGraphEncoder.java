@@ -0,0 +1,311 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.io;
+
+import com.atomgraph.client.util.GraphLayout;
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+
+/**
+ * Draws RDF graphs as SVG, using nodes positioned by {@link GraphLayout}.
+ * The drawing matches <code>RDFXML2SVG.xsl</code>: resources are labeled circles that link to the resource,
+ * literals are labeled rectangles, and triples are arrows (loops for triples whose subject is the object).
+ * Arrows are drawn before the nodes, so that they end under the node borders.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class SVGGraphEncoder
+{
+
+    public static final String SVG_NS = "http://www.w3.org/2000/svg";
+    public static final double RADIUS = 25d;
+    public static final double LITERAL_WIDTH = 50d, LITERAL_HEIGHT = 25d;
+    /** Longer literals are truncated */
+    public static final int MAX_LITERAL_LENGTH = 14;
+    public static final double LOOP_HEIGHT = 100d;
+
+    private final GraphLayout layout;
+
+    public SVGGraphEncoder(GraphLayout layout)
+    {
+        if (layout == null) throw new IllegalArgumentException("GraphLayout cannot be null");
+
+        this.layout = layout;
+    }
+
+    /**
+     * Writes the graph as a standalone SVG document.
+     *
+     * @param graph RDF graph
+     * @param writer XML writer
+     * @throws XMLStreamException if the SVG cannot be written
+     */
+    public void write(Graph graph, XMLStreamWriter writer) throws XMLStreamException
+    {
+        writer.writeStartDocument();
+        writeSVG(graph, writer);
+        writer.writeEndDocument();
+        writer.flush();
+    }
+
+    /**
+     * Writes the <code>&lt;svg&gt;</code> element of the graph.
+     *
+     * @param graph RDF graph
+     * @param writer XML writer
+     * @throws XMLStreamException if the SVG cannot be written
+     */
+    public void writeSVG(Graph graph, XMLStreamWriter writer) throws XMLStreamException
+    {
+        GraphLayout.Layout nodes = getLayout().getLayout(graph);
+
+        writer.setDefaultNamespace(SVG_NS);
+        writer.writeStartElement(SVG_NS, "svg");
+        writer.writeDefaultNamespace(SVG_NS);
+        writer.writeAttribute("version", "1.1");
+        if (nodes.size() > 0) writer.writeAttribute("viewBox", getViewBox(nodes));
+
+        writer.writeStartElement(SVG_NS, "defs");
+        writer.writeStartElement(SVG_NS, "marker");
+        writer.writeAttribute("id", "triangle");
+        writer.writeAttribute("viewBox", "0 0 10 10");
+        writer.writeAttribute("refX", "10");
+        writer.writeAttribute("refY", "5");
+        writer.writeAttribute("markerUnits", "strokeWidth");
+        writer.writeAttribute("markerWidth", "8");
+        writer.writeAttribute("markerHeight", "6");
+        writer.writeAttribute("orient", "auto");
+        writer.writeEmptyElement(SVG_NS, "path");
+        writer.writeAttribute("d", "M 0 0 L 10 5 L 0 10 z");
+        writer.writeAttribute("fill", "gray");
+        writer.writeEndElement();
+        writer.writeEndElement();
+
+        for (Triple edge : nodes.getEdges()) writeEdge(nodes, edge, writer);
+        for (Node node : nodes.getResources().keySet()) writeResource(nodes, node, writer);
+        for (Triple triple : nodes.getLiterals().keySet()) writeLiteral(nodes, triple, writer);
+
+        writer.writeEndElement();
+    }
+
+    protected void writeEdge(GraphLayout.Layout nodes, Triple edge, XMLStreamWriter writer) throws XMLStreamException
+    {
+        double[] from = nodes.getPosition(edge.getSubject());
+
+        if (edge.getObject().isLiteral())
+        {
+            double[] to = nodes.getPosition(edge);
+            double scale = getRectangleScale(to[0] - from[0], to[1] - from[1]);
+            writeLine(from[0], from[1], to[0] - (to[0] - from[0]) * scale, to[1] - (to[1] - from[1]) * scale, edge, writer);
+            return;
+        }
+
+        if (edge.getSubject().equals(edge.getObject()))
+        {
+            // loop path always pointing down, starting and ending on the circle
+            double width = RADIUS / 2, yDelta = RADIUS - Math.sqrt(RADIUS * RADIUS - width * width);
+            double cx = from[0], cy = from[1];
+            writer.writeStartElement(SVG_NS, "path");
+            writer.writeAttribute("d", "M " + format(cx - width) + "," + format(cy + RADIUS - yDelta) +
+                " C " + format(cx - RADIUS / 2) + "," + format(cy + RADIUS + LOOP_HEIGHT) +
+                " " + format(cx + RADIUS / 2) + "," + format(cy + RADIUS + LOOP_HEIGHT) +
+                " " + format(cx + width) + "," + format(cy + RADIUS - yDelta));
+            writer.writeAttribute("stroke", "gray");
+            writer.writeAttribute("stroke-width", "1");
+            writer.writeAttribute("fill", "none");
+            writer.writeAttribute("marker-end", "url(#triangle)");
+            writeTitle(edge.getPredicate().getURI(), writer);
+            writer.writeEndElement();
+            return;
+        }
+
+        double[] to = nodes.getPosition(edge.getObject());
+        double diffX = to[0] - from[0], diffY = to[1] - from[1];
+        double distance = Math.sqrt(diffX * diffX + diffY * diffY);
+        double scale = distance > 0 ? RADIUS / distance : 0; // end the line where it intersects the circle
+        writeLine(from[0], from[1], to[0] - diffX * scale, to[1] - diffY * scale, edge, writer);
+    }
+
+    protected void writeLine(double x1, double y1, double x2, double y2, Triple edge, XMLStreamWriter writer) throws XMLStreamException
+    {
+        writer.writeStartElement(SVG_NS, "line");
+        writer.writeAttribute("x1", format(x1));
+        writer.writeAttribute("y1", format(y1));
+        writer.writeAttribute("x2", format(x2));
+        writer.writeAttribute("y2", format(y2));
+        writer.writeAttribute("stroke", "gray");
+        writer.writeAttribute("stroke-width", "1");
+        writer.writeAttribute("marker-end", "url(#triangle)");
+        writeTitle(edge.getPredicate().getURI(), writer);
+        writer.writeEndElement();
+    }
+
+    protected void writeResource(GraphLayout.Layout nodes, Node node, XMLStreamWriter writer) throws XMLStreamException
+    {
+        double[] position = nodes.getPosition(node);
+        String id = node.isBlank() ? node.getBlankNodeLabel() : node.getURI();
+
+        writer.writeStartElement(SVG_NS, "g");
+        writer.writeAttribute("class", "subject");
+        writer.writeAttribute("about", id);
+
+        writer.writeStartElement(SVG_NS, "circle");
+        writer.writeAttribute("r", format(RADIUS));
+        writer.writeAttribute("cx", format(position[0]));
+        writer.writeAttribute("cy", format(position[1]));
+        writer.writeAttribute("fill", "#acf");
+        writer.writeAttribute("stroke", "gray");
+        writer.writeAttribute("stroke-width", "1");
+        writeTitle(id, writer);
+        writer.writeEndElement();
+
+        writer.writeStartElement(SVG_NS, "a");
+        if (node.isURI()) writer.writeAttribute("href", id);
+        else writer.writeAttribute("id", id);
+        writeText(position[0], position[1], getLabel(node), writer);
+        writer.writeEndElement();
+
+        writer.writeEndElement();
+    }
+
+    protected void writeLiteral(GraphLayout.Layout nodes, Triple triple, XMLStreamWriter writer) throws XMLStreamException
+    {
+        double[] position = nodes.getPosition(triple);
+        String text = triple.getObject().getLiteralLexicalForm();
+
+        writer.writeStartElement(SVG_NS, "g");
+        writer.writeAttribute("class", "object");
+
+        writer.writeEmptyElement(SVG_NS, "rect");
+        writer.writeAttribute("x", format(position[0] - LITERAL_WIDTH / 2));
+        writer.writeAttribute("y", format(position[1] - LITERAL_HEIGHT / 2));
+        writer.writeAttribute("height", format(LITERAL_HEIGHT));
+        writer.writeAttribute("width", format(LITERAL_WIDTH));
+        writer.writeAttribute("fill", "#fc3");
+        writer.writeAttribute("stroke", "gray");
+        writer.writeAttribute("stroke-width", "1");
+
+        writeText(position[0], position[1], text.length() > MAX_LITERAL_LENGTH ? text.substring(0, MAX_LITERAL_LENGTH) + "..." : text, writer);
+
+        writer.writeEndElement();
+    }
+
+    protected void writeText(double x, double y, String text, XMLStreamWriter writer) throws XMLStreamException
+    {
+        writer.writeStartElement(SVG_NS, "text");
+        writer.writeAttribute("x", format(x));
+        writer.writeAttribute("y", format(y));
+        writer.writeAttribute("text-anchor", "middle");
+        writer.writeAttribute("font-size", "6");
+        writer.writeAttribute("dy", ".3em");
+        writer.writeCharacters(text);
+        writer.writeEndElement();
+    }
+
+    protected void writeTitle(String title, XMLStreamWriter writer) throws XMLStreamException
+    {
+        writer.writeStartElement(SVG_NS, "title");
+        writer.writeCharacters(title);
+        writer.writeEndElement();
+    }
+
+    /**
+     * Returns the view box that fits all nodes with a padding of half the spring length.
+     *
+     * @param nodes node layout
+     * @return <code>viewBox</code> attribute value
+     */
+    protected String getViewBox(GraphLayout.Layout nodes)
+    {
+        Set<Node> loops = new HashSet<>();
+        for (Triple edge : nodes.getEdges())
+            if (edge.getSubject().equals(edge.getObject())) loops.add(edge.getSubject());
+
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (Map.Entry<Node, Integer> resource : nodes.getResources().entrySet())
+        {
+            double[] position = nodes.getPosition(resource.getKey());
+            minX = Math.min(minX, position[0] - RADIUS);
+            minY = Math.min(minY, position[1] - RADIUS);
+            maxX = Math.max(maxX, position[0] + RADIUS);
+            maxY = Math.max(maxY, position[1] + RADIUS + (loops.contains(resource.getKey()) ? LOOP_HEIGHT : 0));
+        }
+        for (Triple triple : nodes.getLiterals().keySet())
+        {
+            double[] position = nodes.getPosition(triple);
+            minX = Math.min(minX, position[0] - LITERAL_WIDTH / 2);
+            minY = Math.min(minY, position[1] - LITERAL_HEIGHT / 2);
+            maxX = Math.max(maxX, position[0] + LITERAL_WIDTH / 2);
+            maxY = Math.max(maxY, position[1] + LITERAL_HEIGHT / 2);
+        }
+
+        double padding = getLayout().getSpringLength() / 2;
+        return format(minX - padding) + " " + format(minY - padding) + " " + format(maxX - minX + 2 * padding) + " " + format(maxY - minY + 2 * padding);
+    }
+
+    /**
+     * Returns the fraction of the line from the center of a literal rectangle that lies inside it.
+     *
+     * @param diffX horizontal line length
+     * @param diffY vertical line length
+     * @return fraction between 0 and 1
+     */
+    protected static double getRectangleScale(double diffX, double diffY)
+    {
+        double scaleX = diffX != 0 ? LITERAL_WIDTH / 2 / Math.abs(diffX) : Double.MAX_VALUE;
+        double scaleY = diffY != 0 ? LITERAL_HEIGHT / 2 / Math.abs(diffY) : Double.MAX_VALUE;
+        return Math.min(1, Math.min(scaleX, scaleY));
+    }
+
+    /**
+     * Returns the label of a resource: the last URI path segment, or the blank node label.
+     *
+     * @param node resource node
+     * @return label
+     */
+    public static String getLabel(Node node)
+    {
+        if (node.isBlank()) return node.getBlankNodeLabel();
+
+        String uri = node.getURI();
+        String[] segments = uri.split("/", -1);
+        return segments[segments.length - 1];
+    }
+
+    /**
+     * Formats a coordinate with at most two decimals.
+     *
+     * @param value coordinate
+     * @return formatted number
+     */
+    protected static String format(double value)
+    {
+        return BigDecimal.valueOf(Math.round(value * 100) / 100d).stripTrailingZeros().toPlainString();
+    }
+
+    public GraphLayout getLayout()
+    {
+        return layout;
+    }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.io;
+
+import java.io.PrintWriter;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdfxml.xmloutput.impl.Basic;
+import org.apache.jena.vocabulary.RDF;
+
+/**
+ * Plain RDF/XML writer that groups statements by subject and writes subjects and their properties in canonical order.
+ * The order is the one that <code>group-sort-triples.xsl</code> produces in the <code>ac:GroupTriples</code> mode:
+ * URI subjects sorted by URI, followed by blank node subjects; properties sorted by predicate URI and then by object
+ * (literals by datatype, language and lexical form, followed by blank nodes and URI resources).
+ * Blank nodes are sorted by their labels rather than by the <code>rdf:nodeID</code> values written for them.
+ * <p>
+ * Each distinct subject, predicate and object is compared only once, to assign it a rank.
+ * Statements are then sorted as <code>long</code> keys packing the three ranks.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class SortedRDFXMLWriter extends Basic
+{
+
+    /** Number of bits of a rank in the packed sort key */
+    public static final int RANK_BITS = 21;
+    /** Max number of distinct nodes per statement position for which sort keys are packed */
+    public static final int MAX_PACKED_RANKS = 1 << RANK_BITS;
+
+    private static final long RANK_MASK = MAX_PACKED_RANKS - 1;
+
+    /** URI resources sorted by URI, followed by blank nodes */
+    public static final Comparator<Resource> SUBJECT_ORDER = Comparator.comparing(Resource::isAnon).
+        thenComparing(SortedRDFXMLWriter::getResourceKey).
+        thenComparing(SortedRDFXMLWriter::getNodeIDKey);
+
+    public static final Comparator<Property> PREDICATE_ORDER = Comparator.comparing(Property::getURI);
+
+    /** Objects in the order of their <code>rdf:resource</code>, <code>rdf:nodeID</code>, <code>rdf:datatype</code>, <code>xml:lang</code> and text, absent values first */
+    public static final Comparator<RDFNode> OBJECT_ORDER = Comparator.comparing(SortedRDFXMLWriter::getResourceKey).
+        thenComparing(SortedRDFXMLWriter::getNodeIDKey).
+        thenComparing(SortedRDFXMLWriter::getDatatypeKey).
+        thenComparing(SortedRDFXMLWriter::getLanguageKey).
+        thenComparing(SortedRDFXMLWriter::getLexicalKey);
+
+    @Override
+    protected void writeRDFStatements(Model model, PrintWriter writer)
+    {
+        Resource subject = null;
+        for (Statement stmt : sort(model))
+        {
+            if (!stmt.getSubject().equals(subject))
+            {
+                if (subject != null) writeDescriptionTrailer(subject, writer);
+                subject = stmt.getSubject();
+                writeDescriptionHeader(subject, writer);
+            }
+
+            writePredicate(stmt, writer);
+        }
+
+        if (subject != null) writeDescriptionTrailer(subject, writer);
+    }
+
+    /**
+     * Returns the statements of the model in canonical order.
+     *
+     * @param model RDF model
+     * @return sorted list of statements
+     */
+    public static List<Statement> sort(Model model)
+    {
+        List<Statement> stmts = model.listStatements().toList();
+        Ranks<Resource> subjects = new Ranks<>(Resource.class, SUBJECT_ORDER);
+        Ranks<Property> predicates = new Ranks<>(Property.class, PREDICATE_ORDER);
+        Ranks<RDFNode> objects = new Ranks<>(RDFNode.class, OBJECT_ORDER);
+        for (Statement stmt : stmts)
+        {
+            subjects.add(stmt.getSubject());
+            predicates.add(stmt.getPredicate());
+            objects.add(stmt.getObject());
+        }
+        subjects.rank();
+        predicates.rank();
+        objects.rank();
+
+        if (subjects.size() > MAX_PACKED_RANKS || predicates.size() > MAX_PACKED_RANKS || objects.size() > MAX_PACKED_RANKS)
+        {
+            stmts.sort(Comparator.comparingInt((Statement stmt) -> subjects.getRank(stmt.getSubject())).
+                thenComparingInt(stmt -> predicates.getRank(stmt.getPredicate())).
+                thenComparingInt(stmt -> objects.getRank(stmt.getObject())));
+            return stmts;
+        }
+
+        // statements of a model are distinct, and so are their keys
+        long[] keys = new long[stmts.size()];
+        for (int i = 0; i < keys.length; i++)
+        {
+            Statement stmt = stmts.get(i);
+            keys[i] = ((long)subjects.getRank(stmt.getSubject()) << (2 * RANK_BITS)) |
+                ((long)predicates.getRank(stmt.getPredicate()) << RANK_BITS) |
+                objects.getRank(stmt.getObject());
+        }
+        Arrays.sort(keys);
+
+        List<Statement> sorted = new ArrayList<>(keys.length);
+        for (long key : keys)
+            sorted.add(model.createStatement(subjects.getNode((int)(key >>> (2 * RANK_BITS))),
+                predicates.getNode((int)((key >>> RANK_BITS) & RANK_MASK)),
+                objects.getNode((int)(key & RANK_MASK))));
+        return sorted;
+    }
+
+    protected static String getResourceKey(RDFNode node)
+    {
+        return node.isURIResource() ? node.asResource().getURI() : "";
+    }
+
+    protected static String getNodeIDKey(RDFNode node)
+    {
+        return node.isAnon() ? node.asResource().getId().getLabelString() : "";
+    }
+
+    protected static String getDatatypeKey(RDFNode node)
+    {
+        if (!node.isLiteral()) return "";
+
+        Literal literal = node.asLiteral();
+        if (!literal.getLanguage().isEmpty() || literal.getDatatypeURI().equals(XSDDatatype.XSDstring.getURI())) return ""; // written without rdf:datatype
+        if (literal.getDatatypeURI().equals(RDF.xmlLiteral.getURI()) && literal.isWellFormedXML()) return ""; // written as rdf:parseType="Literal"
+        return literal.getDatatypeURI();
+    }
+
+    protected static String getLanguageKey(RDFNode node)
+    {
+        return node.isLiteral() ? node.asLiteral().getLanguage() : "";
+    }
+
+    protected static String getLexicalKey(RDFNode node)
+    {
+        return node.isLiteral() ? node.asLiteral().getLexicalForm() : "";
+    }
+
+    /**
+     * Dictionary that assigns ranks to distinct nodes in the given order.
+     *
+     * @param <T> node type
+     */
+    protected static class Ranks<T extends RDFNode>
+    {
+
+        private final Class<T> type;
+        private final Comparator<? super T> order;
+        private final Map<T, Integer> ranks = new HashMap<>();
+        private T[] nodes;
+
+        protected Ranks(Class<T> type, Comparator<? super T> order)
+        {
+            this.type = type;
+            this.order = order;
+        }
+
+        protected void add(T node)
+        {
+            ranks.putIfAbsent(node, 0);
+        }
+
+        @SuppressWarnings("unchecked")
+        protected void rank()
+        {
+            nodes = ranks.keySet().toArray((T[])Array.newInstance(type, ranks.size()));
+            Arrays.sort(nodes, order);
+            for (int i = 0; i < nodes.length; i++) ranks.put(nodes[i], i);
+        }
+
+        protected int getRank(T node)
+        {
+            return ranks.get(node);
+        }
+
+        protected T getNode(int rank)
+        {
+            return nodes[rank];
+        }
+
+        protected int size()
+        {
+            return ranks.size();
+        }
+
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.mapper;
+
+import com.atomgraph.client.exception.OverloadedException;
+import com.atomgraph.client.util.AdmissionController;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.ResourceFactory;
+
+/**
+ * Maps shed requests to 503 Service Unavailable with a <code>Retry-After</code> header.
+ * The request is marked with the {@link AdmissionController#SHED_ATTRIBUTE} attribute, so that its error page is rendered without a permit.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class OverloadedExceptionMapper extends ExceptionMapperBase implements ExceptionMapper<OverloadedException>
+{
+
+    @Context private HttpServletRequest httpServletRequest;
+    
+    @Override
+    public Response toResponse(OverloadedException ex)
+    {
+        getHttpServletRequest().setAttribute(AdmissionController.SHED_ATTRIBUTE, true);
+        
+        return getResponseBuilder(DatasetFactory.create(toResource(ex, Response.Status.SERVICE_UNAVAILABLE,
+                        ResourceFactory.createResource("http://www.w3.org/2011/http-statusCodes#ServiceUnavailable")).
+                    getModel())).
+                status(Response.Status.SERVICE_UNAVAILABLE).
+                header(HttpHeaders.RETRY_AFTER, ex.getRetryAfter()).
+                build();
+    }
+
+    public HttpServletRequest getHttpServletRequest()
+    {
+        return httpServletRequest;
+    }
+
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.riot.lang;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.atlas.json.io.JSWriter;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFFormatVariant;
+import org.apache.jena.riot.WriterGraphRIOTFactory;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.riot.system.PrefixMap;
+import org.apache.jena.riot.writer.WriterGraphRIOTBase;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
+
+/**
+ * JSON-LD writer that streams compact JSON-LD from the graph to the output.
+ * Unlike the JSON-LD writer of Jena, it does not build the expanded and compacted document in memory:
+ * only the description of the subject being written is held at a time.
+ * <p>
+ * The <code>@context</code> maps the prefixes of the graph to their namespaces, and IRIs are written as compact IRIs
+ * where a prefix applies. Contexts are built once per prefix mapping (i.e. per ontology the data comes from) and cached.
+ * Literals other than plain strings are written as value objects, so no datatype information is lost.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class StreamingJSONLDWriter extends WriterGraphRIOTBase
+{
+
+    /** Streaming variant of the JSON-LD format */
+    public static final RDFFormat FORMAT = new RDFFormat(Lang.JSONLD, new RDFFormatVariant("streaming"));
+    public static final WriterGraphRIOTFactory FACTORY = format -> new StreamingJSONLDWriter();
+    /** Max number of cached contexts */
+    public static final int MAX_CONTEXTS = 1000;
+
+    private static final Map<Map<String, String>, JSONLDContext> CONTEXTS = new ConcurrentHashMap<>();
+    private static final LongAdder CONTEXT_HITS = new LongAdder();
+
+    @Override
+    public void write(OutputStream out, Graph graph, PrefixMap prefixMap, String baseURI, Context context)
+    {
+        Writer writer = IO.asBufferedUTF8(out);
+        write(writer, graph, prefixMap, baseURI, context);
+        IO.flush(writer);
+    }
+
+    @Override
+    public void write(Writer out, Graph graph, PrefixMap prefixMap, String baseURI, Context context)
+    {
+        JSONLDContext jsonLDContext = getContext(prefixMap != null ? prefixMap.getMapping() : null);
+
+        try
+        {
+            out.write("{\n");
+            if (jsonLDContext.getJSON() != null) out.write("  \"@context\" : " + jsonLDContext.getJSON() + ",\n");
+            out.write("  \"@graph\" : [");
+
+            boolean first = true;
+            ExtendedIterator<Node> subjects = graph.find().mapWith(Triple::getSubject).filterKeep(new DistinctFilter());
+            try
+            {
+                while (subjects.hasNext())
+                {
+                    out.write(first ? "\n" : ",\n");
+                    writeSubject(out, graph, subjects.next(), jsonLDContext);
+                    first = false;
+                }
+            }
+            finally
+            {
+                subjects.close();
+            }
+
+            out.write(first ? "]\n}\n" : "\n  ]\n}\n");
+            out.flush();
+        }
+        catch (IOException ex)
+        {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Writes the node object of a subject.
+     *
+     * @param out output writer
+     * @param graph RDF graph
+     * @param subject subject node
+     * @param context JSON-LD context
+     * @throws IOException if writing fails
+     */
+    protected void writeSubject(Writer out, Graph graph, Node subject, JSONLDContext context) throws IOException
+    {
+        Map<Node, List<Node>> properties = new TreeMap<>(Comparator.comparing(Node::getURI));
+        ExtendedIterator<Triple> triples = graph.find(subject, Node.ANY, Node.ANY);
+        try
+        {
+            while (triples.hasNext())
+            {
+                Triple triple = triples.next();
+                properties.computeIfAbsent(triple.getPredicate(), predicate -> new ArrayList<>()).add(triple.getObject());
+            }
+        }
+        finally
+        {
+            triples.close();
+        }
+
+        out.write("    { \"@id\" : " + quote(getId(subject, context)));
+
+        List<Node> types = properties.remove(RDF.type.asNode());
+        if (types != null)
+        {
+            List<Node> typeIRIs = new ArrayList<>(), typeValues = new ArrayList<>();
+            for (Node type : types) (type.isURI() ? typeIRIs : typeValues).add(type);
+
+            if (!typeIRIs.isEmpty())
+            {
+                out.write(",\n      \"@type\" : ");
+                writeValues(out, typeIRIs, node -> quote(context.compact(node.getURI())));
+            }
+            if (!typeValues.isEmpty()) properties.put(RDF.type.asNode(), typeValues); // blank nodes or literals cannot be @type
+        }
+
+        for (Map.Entry<Node, List<Node>> property : properties.entrySet())
+        {
+            out.write(",\n      " + quote(context.compact(property.getKey().getURI())) + " : ");
+            writeValues(out, property.getValue(), node -> getValue(node, context));
+        }
+
+        out.write("\n    }");
+    }
+
+    protected void writeValues(Writer out, List<Node> nodes, ValueWriter writer) throws IOException
+    {
+        if (nodes.size() == 1)
+        {
+            out.write(writer.write(nodes.get(0)));
+            return;
+        }
+
+        out.write("[ ");
+        for (int i = 0; i < nodes.size(); i++)
+        {
+            if (i > 0) out.write(", ");
+            out.write(writer.write(nodes.get(i)));
+        }
+        out.write(" ]");
+    }
+
+    /**
+     * Returns the JSON of an object value.
+     *
+     * @param node object node
+     * @param context JSON-LD context
+     * @return JSON string
+     */
+    protected String getValue(Node node, JSONLDContext context)
+    {
+        if (!node.isLiteral()) return "{ \"@id\" : " + quote(getId(node, context)) + " }";
+
+        String lang = node.getLiteralLanguage();
+        if (lang != null && !lang.isEmpty()) return "{ \"@value\" : " + quote(node.getLiteralLexicalForm()) + ", \"@language\" : " + quote(lang) + " }";
+        if (node.getLiteralDatatypeURI().equals(XSDDatatype.XSDstring.getURI())) return quote(node.getLiteralLexicalForm());
+
+        return "{ \"@value\" : " + quote(node.getLiteralLexicalForm()) + ", \"@type\" : " + quote(context.compact(node.getLiteralDatatypeURI())) + " }";
+    }
+
+    protected String getId(Node node, JSONLDContext context)
+    {
+        if (node.isBlank()) return "_:" + NodeFmtLib.encodeBNodeLabel(node.getBlankNodeLabel());
+
+        return context.compact(node.getURI());
+    }
+
+    protected static String quote(String string)
+    {
+        return JSWriter.outputQuotedString(string);
+    }
+
+    /**
+     * Returns the cached context of a prefix mapping, or builds and caches it.
+     *
+     * @param prefixes prefix mapping, or null
+     * @return JSON-LD context
+     */
+    public static JSONLDContext getContext(Map<String, String> prefixes)
+    {
+        Map<String, String> key = prefixes != null ? new TreeMap<>(prefixes) : new TreeMap<>();
+        JSONLDContext context = CONTEXTS.get(key);
+        if (context != null)
+        {
+            CONTEXT_HITS.increment();
+            return context;
+        }
+
+        if (CONTEXTS.size() >= MAX_CONTEXTS) CONTEXTS.clear(); // prefix mappings are not expected to vary much
+        context = new JSONLDContext(key);
+        CONTEXTS.put(key, context);
+        return context;
+    }
+
+    /**
+     * Returns the number of writes that reused a cached context.
+     *
+     * @return hit count
+     */
+    public static long getContextHits()
+    {
+        return CONTEXT_HITS.sum();
+    }
+
+    @Override
+    public Lang getLang()
+    {
+        return Lang.JSONLD;
+    }
+
+    /**
+     * Writes node as JSON.
+     */
+    protected interface ValueWriter
+    {
+
+        String write(Node node);
+
+    }
+
+    /**
+     * Filter that keeps the first occurrence of each node.
+     * Triples with the same subject are usually adjacent in the graph, so only a change of subject is looked up.
+     */
+    protected static class DistinctFilter implements Predicate<Node>
+    {
+
+        private final Set<Node> seen = new HashSet<>();
+        private Node last;
+
+        @Override
+        public boolean test(Node node)
+        {
+            if (node.equals(last)) return false;
+
+            last = node;
+            return seen.add(node);
+        }
+
+    }
+
+    /**
+     * JSON-LD context built from a prefix mapping.
+     */
+    public static class JSONLDContext
+    {
+
+        private final List<Map.Entry<String, String>> namespaces = new ArrayList<>();
+        private final String json;
+
+        public JSONLDContext(Map<String, String> prefixes)
+        {
+            StringBuilder builder = new StringBuilder();
+            for (Map.Entry<String, String> prefix : prefixes.entrySet())
+            {
+                // the empty prefix cannot be a term, and prefixes with colons would be read as compact IRIs
+                if (prefix.getKey().isEmpty() || prefix.getKey().contains(":")) continue;
+                if (!isPrefixNamespace(prefix.getValue())) continue;
+
+                builder.append(builder.length() == 0 ? "{\n    " : ",\n    ").
+                    append(quote(prefix.getKey())).append(" : ").append(quote(prefix.getValue()));
+                namespaces.add(prefix);
+            }
+            namespaces.sort(Comparator.comparingInt((Map.Entry<String, String> namespace) -> namespace.getValue().length()).reversed()); // longest match first
+
+            json = builder.length() == 0 ? null : builder.append("\n  }").toString();
+        }
+
+        /**
+         * Returns compact IRI, or the IRI itself if no prefix applies.
+         *
+         * @param iri absolute IRI
+         * @return compact IRI or IRI
+         */
+        public String compact(String iri)
+        {
+            for (Map.Entry<String, String> namespace : namespaces)
+                if (iri.startsWith(namespace.getValue()))
+                {
+                    String suffix = iri.substring(namespace.getValue().length());
+                    if (!suffix.isEmpty() && !suffix.startsWith("//")) return namespace.getKey() + ":" + suffix;
+                }
+
+            return iri;
+        }
+
+        /**
+         * Returns true if a term mapped to the namespace can be used as a prefix of compact IRIs,
+         * i.e. if the namespace ends with a generic delimiter.
+         *
+         * @param namespace namespace IRI
+         * @return true if usable as prefix
+         */
+        public static boolean isPrefixNamespace(String namespace)
+        {
+            return !namespace.isEmpty() && ":/?#[]@".indexOf(namespace.charAt(namespace.length() - 1)) >= 0;
+        }
+
+        /**
+         * Returns the JSON of the context.
+         *
+         * @return JSON object, or null if there are no prefixes
+         */
+        public String getJSON()
+        {
+            return json;
+        }
+
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import com.atomgraph.client.exception.OverloadedException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of concurrently executed tasks, such as XSLT transformations.
+ * Callers wait for a permit in a bounded queue until a deadline; callers that do not fit into the queue,
+ * or that do not get a permit in time, are rejected with {@link OverloadedException}.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class AdmissionController
+{
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionController.class);
+
+    /** Default maximum time to wait for a permit in milliseconds */
+    public static final long DEFAULT_TIMEOUT = 5000L;
+    /** Request attribute that marks shed requests, whose error pages are rendered without a permit */
+    public static final String SHED_ATTRIBUTE = AdmissionController.class.getName() + ".shed";
+
+    private final Semaphore permits;
+    private final int maxConcurrency, maxQueueLength;
+    private final long timeout;
+    private final AtomicInteger queueLength = new AtomicInteger();
+    private final LongAdder admissions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Constructs admission controller.
+     *
+     * @param maxConcurrency maximum number of concurrent tasks
+     * @param maxQueueLength maximum number of callers waiting for a permit
+     * @param timeout maximum time to wait for a permit in milliseconds
+     */
+    public AdmissionController(int maxConcurrency, int maxQueueLength, long timeout)
+    {
+        if (maxConcurrency <= 0) throw new IllegalArgumentException("Max concurrency must be positive");
+        if (maxQueueLength < 0) throw new IllegalArgumentException("Max queue length cannot be negative");
+        if (timeout < 0) throw new IllegalArgumentException("Timeout cannot be negative");
+
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueueLength = maxQueueLength;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Acquires a permit. Must be followed by {@link #release()}.
+     *
+     * @throws OverloadedException if the queue is full or the permit was not acquired before the deadline
+     */
+    public void acquire()
+    {
+        if (permits.tryAcquire())
+        {
+            admissions.increment();
+            return;
+        }
+
+        if (queueLength.incrementAndGet() > getMaxQueueLength())
+        {
+            queueLength.decrementAndGet();
+            reject("Queue is full");
+        }
+
+        try
+        {
+            if (!permits.tryAcquire(getTimeout(), TimeUnit.MILLISECONDS)) reject("Timed out waiting for a permit");
+
+            admissions.increment();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            reject("Interrupted while waiting for a permit");
+        }
+        finally
+        {
+            queueLength.decrementAndGet();
+        }
+    }
+
+    /**
+     * Releases a permit acquired by {@link #acquire()}.
+     */
+    public void release()
+    {
+        permits.release();
+    }
+
+    protected void reject(String reason)
+    {
+        rejections.increment();
+        if (log.isWarnEnabled()) log.warn("Rejecting request: {}. Active: {} Queued: {}", reason, getActive(), getQueueLength());
+        throw new OverloadedException("Server is overloaded, try again later", getRetryAfter());
+    }
+
+    /**
+     * Returns the number of seconds after which rejected clients can retry, derived from the queue timeout.
+     *
+     * @return seconds
+     */
+    public long getRetryAfter()
+    {
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(getTimeout() + 999));
+    }
+
+    public int getMaxConcurrency()
+    {
+        return maxConcurrency;
+    }
+
+    public int getMaxQueueLength()
+    {
+        return maxQueueLength;
+    }
+
+    public long getTimeout()
+    {
+        return timeout;
+    }
+
+    /**
+     * Returns the number of tasks that currently hold a permit.
+     *
+     * @return active task count
+     */
+    public int getActive()
+    {
+        return getMaxConcurrency() - permits.availablePermits();
+    }
+
+    /**
+     * Returns the number of callers waiting for a permit.
+     *
+     * @return queue depth
+     */
+    public int getQueueLength()
+    {
+        return queueLength.get();
+    }
+
+    public long getAdmissions()
+    {
+        return admissions.sum();
+    }
+
+    public long getRejections()
+    {
+        return rejections.sum();
+    }
+
+}
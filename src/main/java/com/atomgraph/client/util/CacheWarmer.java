@@ -0,0 +1,167 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import com.atomgraph.client.locator.PrefixMapper;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.xml.transform.TransformerException;
+import org.apache.jena.util.LocationMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads mapped documents (such as system ontologies) into the caches of the data manager in parallel,
+ * so that the first requests after startup do not pay for parsing them.
+ * If model loads are cached, the models are cached; in any case their RDF/XML serialization,
+ * which is read by the XSLT stylesheets, is memoized.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class CacheWarmer
+{
+
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private final DataManagerImpl dataManager;
+    private final int concurrency;
+
+    /**
+     * Constructs warmer.
+     *
+     * @param dataManager data manager
+     * @param concurrency number of documents loaded in parallel
+     */
+    public CacheWarmer(DataManagerImpl dataManager, int concurrency)
+    {
+        if (dataManager == null) throw new IllegalArgumentException("DataManagerImpl cannot be null");
+        if (concurrency <= 0) throw new IllegalArgumentException("Concurrency must be positive");
+
+        this.dataManager = dataManager;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Returns URIs that are mapped to files by the location mapper.
+     *
+     * @param mapper location mapper
+     * @return set of URIs
+     */
+    public static Set<String> getMappedURIs(LocationMapper mapper)
+    {
+        Set<String> uris = new LinkedHashSet<>();
+        mapper.listAltEntries().forEachRemaining(uris::add);
+        if (mapper instanceof PrefixMapper) ((PrefixMapper)mapper).listAltPrefixEntries().forEachRemaining(uris::add);
+        return uris;
+    }
+
+    /**
+     * Warms up the documents mapped by the location mapper of the data manager.
+     *
+     * @return load times in milliseconds per URI, slowest first
+     */
+    public Map<String, Long> warm()
+    {
+        return warm(getMappedURIs(getDataManager().getLocationMapper()));
+    }
+
+    /**
+     * Warms up the given documents and logs a timing report. Documents that fail to load are skipped.
+     *
+     * @param uris document URIs
+     * @return load times in milliseconds per URI, slowest first
+     */
+    public Map<String, Long> warm(Collection<String> uris)
+    {
+        Map<String, Long> times = new ConcurrentHashMap<>();
+        long start = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(getConcurrency());
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String uri : uris) futures.add(executor.submit(() -> warm(uri, times)));
+            for (Future<?> future : futures) future.get();
+        }
+        catch (InterruptedException ex)
+        {
+            if (log.isWarnEnabled()) log.warn("Cache warm-up was interrupted");
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException ex)
+        {
+            if (log.isWarnEnabled()) log.warn("Cache warm-up failed: {}", ex.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        Map<String, Long> report = new LinkedHashMap<>();
+        times.entrySet().stream().
+            sorted(Collections.reverseOrder(Map.Entry.comparingByValue())).
+            forEach(entry -> report.put(entry.getKey(), entry.getValue()));
+
+        if (log.isInfoEnabled()) log.info("Warmed up {} of {} mapped documents in {} ms using {} threads", report.size(), uris.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), getConcurrency());
+        if (log.isDebugEnabled()) report.forEach((uri, time) -> log.debug("Warmed up {} in {} ms", uri, time));
+        return report;
+    }
+
+    /**
+     * Loads document into the caches.
+     *
+     * @param uri document URI
+     * @param times load times
+     */
+    protected void warm(String uri, Map<String, Long> times)
+    {
+        long start = System.nanoTime();
+        try
+        {
+            if (getDataManager().isCachingModels()) getDataManager().loadModel(uri);
+            getDataManager().resolve(uri, uri); // memoizes the RDF/XML serialization
+
+            times.put(uri, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        catch (TransformerException | RuntimeException ex)
+        {
+            if (log.isWarnEnabled()) log.warn("Could not warm up URI: {} ({})", uri, ex.getMessage());
+        }
+    }
+
+    public DataManagerImpl getDataManager()
+    {
+        return dataManager;
+    }
+
+    public int getConcurrency()
+    {
+        return concurrency;
+    }
+
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.GraphBase;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.shared.impl.PrefixMappingImpl;
+import org.apache.jena.sparql.util.NodeUtils;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.util.iterator.NiceIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-only, array-backed RDF graph.
+ * Nodes are dictionary-encoded as integer IDs, which are their positions in the dictionary sorted in RDF term order.
+ * Triples are stored as ID triples in two sorted arrays, in SPO and OSP order, which answer patterns with a concrete
+ * subject or object by binary search. Other patterns are answered by a scan.
+ * The graph uses a fraction of the heap of a mutable in-memory graph, and lists triples grouped by subject.
+ * <p>
+ * Literals are matched by term equality, not by value.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class CompactGraph extends GraphBase
+{
+
+    private static final Logger log = LoggerFactory.getLogger(CompactGraph.class);
+
+    /** Maximum dictionary size for which three IDs can be packed into a <code>long</code> sort key */
+    private static final int PACKED_ID_LIMIT = 1 << 21;
+
+    private static final int ANY = -1, MISSING = -2;
+    private static final int S = 0, P = 1, O = 2;
+    private static final int[] SPO = { S, P, O }, OSP = { O, S, P };
+
+    private final Node[] nodes;
+    private final int[] spo;
+    private final int[] osp;
+
+    /**
+     * Constructs compact copy of the given graph, including its prefix mapping.
+     *
+     * @param graph source graph
+     */
+    public CompactGraph(Graph graph)
+    {
+        if (graph == null) throw new IllegalArgumentException("Graph cannot be null");
+
+        Set<Node> nodeSet = new HashSet<>();
+        ExtendedIterator<Triple> it = graph.find();
+        try
+        {
+            while (it.hasNext())
+            {
+                Triple triple = it.next();
+                nodeSet.add(triple.getSubject());
+                nodeSet.add(triple.getPredicate());
+                nodeSet.add(triple.getObject());
+            }
+        }
+        finally
+        {
+            it.close();
+        }
+
+        nodes = nodeSet.toArray(new Node[nodeSet.size()]);
+        Arrays.sort(nodes, NodeUtils::compareRDFTerms);
+        Map<Node, Integer> ids = new HashMap<>(nodes.length * 2);
+        for (int i = 0; i < nodes.length; i++) ids.put(nodes[i], i);
+
+        int[] triples = new int[graph.size() * 3];
+        int size = 0;
+        it = graph.find();
+        try
+        {
+            while (it.hasNext())
+            {
+                Triple triple = it.next();
+                triples[size++] = ids.get(triple.getSubject());
+                triples[size++] = ids.get(triple.getPredicate());
+                triples[size++] = ids.get(triple.getObject());
+            }
+        }
+        finally
+        {
+            it.close();
+        }
+        if (size != triples.length) triples = Arrays.copyOf(triples, size);
+
+        spo = sort(triples, SPO);
+        osp = sort(triples, OSP);
+        getPrefixMapping().setNsPrefixes(graph.getPrefixMapping());
+
+        if (log.isDebugEnabled()) log.debug("Compacted {} triples with {} distinct nodes", spo.length / 3, nodes.length);
+    }
+
+    /**
+     * Returns ID triples sorted in the given component order. The components are stored in that order.
+     *
+     * @param triples ID triples in SPO order
+     * @param order component order
+     * @return sorted ID triples
+     */
+    protected final int[] sort(int[] triples, int[] order)
+    {
+        int count = triples.length / 3;
+        int[] sorted = new int[triples.length];
+
+        if (nodes.length < PACKED_ID_LIMIT)
+        {
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++)
+                keys[i] = (long)triples[i * 3 + order[0]] << 42 | (long)triples[i * 3 + order[1]] << 21 | triples[i * 3 + order[2]];
+            Arrays.sort(keys);
+
+            for (int i = 0; i < count; i++)
+            {
+                sorted[i * 3] = (int)(keys[i] >>> 42);
+                sorted[i * 3 + 1] = (int)(keys[i] >>> 21 & (PACKED_ID_LIMIT - 1));
+                sorted[i * 3 + 2] = (int)(keys[i] & (PACKED_ID_LIMIT - 1));
+            }
+        }
+        else
+        {
+            Integer[] indexes = new Integer[count];
+            for (int i = 0; i < count; i++) indexes[i] = i;
+            Arrays.sort(indexes, Comparator.
+                comparingInt((Integer i) -> triples[i * 3 + order[0]]).
+                thenComparingInt(i -> triples[i * 3 + order[1]]).
+                thenComparingInt(i -> triples[i * 3 + order[2]]));
+
+            for (int i = 0; i < count; i++)
+                for (int c = 0; c < 3; c++) sorted[i * 3 + c] = triples[indexes[i] * 3 + order[c]];
+        }
+
+        return sorted;
+    }
+
+    @Override
+    protected ExtendedIterator<Triple> graphBaseFind(Triple pattern)
+    {
+        int s = getId(pattern.getSubject()), p = getId(pattern.getPredicate()), o = getId(pattern.getObject());
+        if (s == MISSING || p == MISSING || o == MISSING) return NiceIterator.emptyIterator();
+
+        if (s != ANY)
+        {
+            int[] range = getRange(spo, 0, spo.length / 3, 0, s);
+            if (p == ANY) return new TripleIterator(spo, SPO, range[0], range[1], ANY, ANY, o); // objects are only sorted within a predicate
+
+            range = getRange(spo, range[0], range[1], 1, p);
+            if (o != ANY) range = getRange(spo, range[0], range[1], 2, o);
+            return new TripleIterator(spo, SPO, range[0], range[1], ANY, ANY, ANY);
+        }
+
+        if (o != ANY)
+        {
+            int[] range = getRange(osp, 0, osp.length / 3, 0, o);
+            return new TripleIterator(osp, OSP, range[0], range[1], ANY, ANY, p); // predicate is stored last
+        }
+
+        return new TripleIterator(spo, SPO, 0, spo.length / 3, ANY, p, ANY);
+    }
+
+    @Override
+    protected int graphBaseSize()
+    {
+        return spo.length / 3;
+    }
+
+    @Override
+    protected PrefixMapping createPrefixMapping()
+    {
+        return new PrefixMappingImpl();
+    }
+
+    /**
+     * Returns dictionary ID of a node.
+     *
+     * @param node pattern node
+     * @return ID, <code>ANY</code> for wildcards, or <code>MISSING</code> if the node is not in the graph
+     */
+    protected int getId(Node node)
+    {
+        if (node == null || !node.isConcrete()) return ANY;
+
+        int id = Arrays.binarySearch(nodes, node, NodeUtils::compareRDFTerms);
+        return id >= 0 ? id : MISSING;
+    }
+
+    /**
+     * Returns the range of triples, within a range sorted on the given component, whose component equals the ID.
+     *
+     * @param triples sorted ID triples
+     * @param from first triple (inclusive)
+     * @param to last triple (exclusive)
+     * @param component component position
+     * @param id node ID
+     * @return two-element array with the start (inclusive) and end (exclusive) of the range
+     */
+    protected static int[] getRange(int[] triples, int from, int to, int component, int id)
+    {
+        int lo = from, hi = to;
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (triples[mid * 3 + component] < id) lo = mid + 1;
+            else hi = mid;
+        }
+
+        int start = lo;
+        hi = to;
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (triples[mid * 3 + component] <= id) lo = mid + 1;
+            else hi = mid;
+        }
+
+        return new int[] { start, lo };
+    }
+
+    /**
+     * Iterates a range of ID triples, filtering them on the stored components.
+     */
+    protected class TripleIterator extends NiceIterator<Triple>
+    {
+
+        private final int[] triples, order, filter;
+        private final int end;
+        private int position;
+        private Triple next;
+
+        protected TripleIterator(int[] triples, int[] order, int start, int end, int first, int second, int third)
+        {
+            this.triples = triples;
+            this.order = order;
+            this.position = start;
+            this.end = end;
+            this.filter = new int[] { first, second, third };
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            while (next == null && position < end)
+            {
+                int i = position++;
+                if (matches(i))
+                {
+                    Node[] spoNodes = new Node[3];
+                    for (int c = 0; c < 3; c++) spoNodes[order[c]] = nodes[triples[i * 3 + c]];
+                    next = Triple.create(spoNodes[S], spoNodes[P], spoNodes[O]);
+                }
+            }
+
+            return next != null;
+        }
+
+        protected boolean matches(int i)
+        {
+            for (int c = 0; c < 3; c++)
+                if (filter[c] != ANY && triples[i * 3 + c] != filter[c]) return false;
+
+            return true;
+        }
+
+        @Override
+        public Triple next()
+        {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            Triple triple = next;
+            next = null;
+            return triple;
+        }
+
+    }
+
+}
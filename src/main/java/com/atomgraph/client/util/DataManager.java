@@ -43,8 +43,23 @@ public interface DataManager extends com.atomgraph.core.util.jena.DataManager, U
     
     boolean isMapped(String filenameOrURI);
     
+    /**
+     * Returns the modification time of the local file that the URI is mapped to.
+     * 
+     * @param filenameOrURI mapped URI
+     * @return time in milliseconds, or 0 if unknown
+     */
+    long getLastModified(String filenameOrURI);
+    
     Source getSource(Model model, String systemId) throws IOException;
         
     Source getSource(ResultSet results, String systemId) throws IOException;
     
+    /**
+     * Returns URI resolver for a single transformation.
+     * 
+     * @return URI resolver
+     */
+    URIResolver getURIResolver();
+    
 }
@@ -25,20 +25,44 @@ import java.net.URI;
 import java.util.*;
 import javax.xml.transform.Source;
 import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
 import javax.xml.transform.stream.StreamSource;
 import com.atomgraph.core.MediaTypes;
+import com.atomgraph.core.client.LinkedDataClient;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Client;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import net.sf.saxon.Configuration;
 import net.sf.saxon.trans.XPathException;
 import org.apache.commons.io.IOUtils;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.jena.graph.GraphEvents;
+import org.glassfish.jersey.client.ClientProperties;
+import org.apache.jena.rdf.listeners.StatementListener;
 import org.apache.jena.rdf.model.ModelFactory;
+import com.atomgraph.client.io.InterningStreamRDF;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.system.IRIResolver;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.shared.JenaException;
+import org.apache.jena.util.TypedStream;
+import org.apache.jena.rdf.model.Statement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,16 +76,55 @@ public class DataManagerImpl extends com.atomgraph.core.util.jena.DataManagerImp
 
     private static final Logger log = LoggerFactory.getLogger(DataManagerImpl.class);
 
+    /** Maximum total size of memoized RDF/XML serializations of mapped documents */
+    public static final long DEFAULT_MAX_SERIALIZED_MAPPED_BYTES = 64L << 20;
+
     private final javax.ws.rs.core.MediaType[] acceptedTypes;
     private final MediaType[] acceptedXMLMediaTypes;
     private final boolean resolvingUncached;
     private final boolean resolvingMapped = true;
+    private final Map<Model, byte[]> serializedModels = Collections.synchronizedMap(new WeakHashMap<>()); // models do not override equals(), so the keys are compared by identity
+    private final WeightedCache<String, byte[]> serializedMapped = new WeightedCache<>(DEFAULT_MAX_SERIALIZED_MAPPED_BYTES);
+    private final Map<String, Long> mappedModified = new ConcurrentHashMap<>();
+    private final ModelDiskCache diskCache;
+    private final UpstreamGuard upstreamGuard;
+    private final Long resolutionBudget;
+    private final NegativeCache negativeCache;
+    private final LongAdder skippedFetches = new LongAdder();
+    private final NodeInterner nodeInterner = NodeInterner.get();
             
     public DataManagerImpl(LocationMapper mapper, Map<String, Model> modelCache, Client client, MediaTypes mediaTypes,
             boolean cacheModelLoads, boolean preemptiveAuth, boolean resolvingUncached)
+    {
+        this(mapper, modelCache, client, mediaTypes, cacheModelLoads, preemptiveAuth, resolvingUncached, null, null, null, null);
+    }
+    
+    /**
+     * Constructs data manager with optional resolution features: a persistent cache of dereferenced RDF documents,
+     * guarded upstream hosts, a time budget for resolution and a cache of failed URIs.
+     * 
+     * @param mapper location mapper
+     * @param modelCache in-memory model cache
+     * @param client HTTP client
+     * @param mediaTypes supported media types
+     * @param cacheModelLoads if true, loaded models are cached in memory
+     * @param preemptiveAuth if true, HTTP Basic credentials are sent preemptively
+     * @param resolvingUncached if true, uncached URIs are dereferenced during XSLT transformation
+     * @param diskCache disk cache of dereferenced documents, or null
+     * @param upstreamGuard per-host bulkheads and circuit breakers of resolved URIs, or null
+     * @param resolutionBudget time in milliseconds that a transformation may spend dereferencing URIs, or null if unlimited
+     * @param negativeCache cache of URIs that failed to resolve, or null
+     */
+    public DataManagerImpl(LocationMapper mapper, Map<String, Model> modelCache, Client client, MediaTypes mediaTypes,
+            boolean cacheModelLoads, boolean preemptiveAuth, boolean resolvingUncached, ModelDiskCache diskCache, UpstreamGuard upstreamGuard,
+            Long resolutionBudget, NegativeCache negativeCache)
     {
         super(mapper, modelCache, client, mediaTypes, cacheModelLoads, preemptiveAuth);
         this.resolvingUncached = resolvingUncached;
+        this.diskCache = diskCache;
+        this.upstreamGuard = upstreamGuard;
+        this.resolutionBudget = resolutionBudget;
+        this.negativeCache = negativeCache;
         
         List<MediaType> acceptedTypeList = new ArrayList();
         acceptedTypeList.addAll(mediaTypes.getReadable(Model.class));
@@ -95,6 +158,133 @@ public class DataManagerImpl extends com.atomgraph.core.util.jena.DataManagerImp
         return get(filenameOrURI, getAcceptedMediaTypes());
     }
     
+    /**
+     * Loads RDF model from URI.
+     * If the disk cache is configured, HTTP(S) documents are revalidated using the stored validators
+     * and read from the disk cache if they have not been modified.
+     * 
+     * @param filenameOrURI document URI
+     * @return RDF model
+     */
+    @Override
+    public Model loadModel(String filenameOrURI)
+    {
+        if (getDiskCache() == null || hasCachedModel(filenameOrURI)) return super.loadModel(filenameOrURI);
+        
+        String mappedURI = mapURI(filenameOrURI);
+        if (!mappedURI.startsWith("http") && !mappedURI.startsWith("https")) return super.loadModel(filenameOrURI);
+        
+        Model model = loadModel(filenameOrURI, getDiskCache());
+        if (isCachingModels()) addCacheModel(filenameOrURI, model);
+        return model;
+    }
+    
+    /**
+     * Dereferences RDF document, using the disk cache for conditional requests.
+     * If the origin cannot be reached, the cached copy is used regardless of its freshness.
+     * 
+     * @param uri document URI
+     * @param diskCache disk cache
+     * @return RDF model
+     */
+    protected Model loadModel(String uri, ModelDiskCache diskCache)
+    {
+        Properties validators = diskCache.getValidators(uri);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        if (validators != null)
+        {
+            if (validators.getProperty(ModelDiskCache.ETAG_KEY) != null) headers.putSingle(HttpHeaders.IF_NONE_MATCH, validators.getProperty(ModelDiskCache.ETAG_KEY));
+            if (validators.getProperty(ModelDiskCache.LAST_MODIFIED_KEY) != null) headers.putSingle(HttpHeaders.IF_MODIFIED_SINCE, validators.getProperty(ModelDiskCache.LAST_MODIFIED_KEY));
+        }
+        
+        List<MediaType> readableTypes = getMediaTypes().getReadable(Model.class);
+        try (Response cr = LinkedDataClient.create(getEndpoint(URI.create(uri)), getMediaTypes()).
+                get(readableTypes.toArray(new MediaType[readableTypes.size()]), null, headers))
+        {
+            if (cr.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode())
+            {
+                Model model = diskCache.get(uri);
+                if (model != null)
+                {
+                    if (log.isDebugEnabled()) log.debug("URI {} not modified, read from disk cache", uri);
+                    return model;
+                }
+                
+                return super.loadModel(uri); // cache entry got lost, fetch unconditionally
+            }
+            
+            Model model = cr.readEntity(Model.class);
+            if (cr.getStatusInfo().getFamily().equals(Response.Status.Family.SUCCESSFUL))
+                diskCache.put(uri, model, cr.getEntityTag() != null ? cr.getEntityTag().toString() : null, cr.getHeaderString(HttpHeaders.LAST_MODIFIED));
+            else
+                diskCache.remove(uri);
+            
+            return model;
+        }
+        catch (ProcessingException ex)
+        {
+            Model model = validators != null ? diskCache.get(uri) : null;
+            if (model == null) throw ex;
+            
+            if (log.isWarnEnabled()) log.warn("Could not dereference URI {}, using stale copy from disk cache", uri);
+            return model;
+        }
+    }
+    
+    /**
+     * Reads RDF document into the model. Documents that are not dereferenced over HTTP (e.g. mapped files)
+     * are parsed into an interning stream, as they are not read by the interning <code>ModelProvider</code>.
+     * 
+     * @param model RDF model
+     * @param filenameOrURI document URI
+     * @param baseURI base URI, or null
+     * @param syntax RDF syntax name, or null if it is guessed from the file extension
+     * @return the model
+     * @see com.atomgraph.client.io.InterningStreamRDF
+     */
+    @Override
+    protected Model readModelWorker(Model model, String filenameOrURI, String baseURI, String syntax)
+    {
+        String mappedURI = mapURI(filenameOrURI);
+        TypedStream in = mappedURI.startsWith("http:") || mappedURI.startsWith("https:") ? null : openNoMapOrNull(mappedURI);
+        if (in == null) return super.readModelWorker(model, filenameOrURI, baseURI, syntax);
+        
+        Lang lang = syntax != null ? RDFLanguages.nameToLang(syntax) : null;
+        if (lang == null) lang = RDFLanguages.filenameToLang(mappedURI, Lang.RDFXML);
+        try (InputStream is = in.getInput())
+        {
+            RDFParser.create().
+                lang(lang).
+                base(baseURI != null ? baseURI : IRIResolver.resolveString(filenameOrURI)).
+                source(is).
+                build().
+                parse(new InterningStreamRDF(StreamRDFLib.graph(model.getGraph()), getNodeInterner()));
+            return model;
+        }
+        catch (IOException ex)
+        {
+            throw new JenaException(ex);
+        }
+    }
+    
+    /**
+     * Caches RDF model.
+     * Cached models are retained and only read, so a compact read-only copy is cached instead of the model itself.
+     * 
+     * @param filenameOrURI model URI
+     * @param model RDF model
+     * @see CompactGraph
+     */
+    @Override
+    public void addCacheModel(String filenameOrURI, Model model)
+    {
+        if (!isCachingModels()) return;
+
+        if (!(model.getGraph() instanceof CompactGraph)) model = ModelFactory.createModelForGraph(new CompactGraph(model.getGraph()));
+        
+        super.addCacheModel(filenameOrURI, model);
+    }
+    
     @Override
     public boolean isMapped(String filenameOrURI)
     {
@@ -102,6 +292,60 @@ public class DataManagerImpl extends com.atomgraph.core.util.jena.DataManagerImp
         return (!mappedURI.equals(filenameOrURI) && !mappedURI.startsWith("http:"));
     }
     
+    /**
+     * Returns the modification time of the local file that the URI is mapped to.
+     * 
+     * @param filenameOrURI mapped URI
+     * @return time in milliseconds, or 0 if the URI is not mapped to a local file (e.g. it is mapped to a classpath resource)
+     */
+    @Override
+    public long getLastModified(String filenameOrURI)
+    {
+        if (!isMapped(filenameOrURI)) return 0L;
+        
+        String mappedURI = mapURI(filenameOrURI);
+        try
+        {
+            Path file = mappedURI.startsWith("file:") ? Paths.get(URI.create(mappedURI)) : Paths.get(mappedURI);
+            return Files.isRegularFile(file) ? Files.getLastModifiedTime(file).toMillis() : 0L;
+        }
+        catch (IllegalArgumentException | IOException ex)
+        {
+            return 0L;
+        }
+    }
+    
+    /**
+     * Discards the cached model and RDF/XML serialization of a mapped URI if its file has changed since it was read.
+     * 
+     * @param filenameOrURI mapped URI
+     */
+    protected void refreshMapped(String filenameOrURI)
+    {
+        long lastModified = getLastModified(filenameOrURI);
+        Long readModified = mappedModified.put(filenameOrURI, lastModified);
+        if (readModified != null && readModified != lastModified)
+        {
+            if (log.isDebugEnabled()) log.debug("Mapped file of URI {} has changed, rereading it", filenameOrURI);
+            removeCacheModel(filenameOrURI);
+            getSerializedMapped().remove(filenameOrURI);
+        }
+    }
+    
+    /**
+     * Returns URI resolver for a single transformation.
+     * If the resolution budget is configured, the resolver carries its own deadline.
+     * 
+     * @return URI resolver
+     */
+    @Override
+    public URIResolver getURIResolver()
+    {
+        if (getResolutionBudget() == null) return this;
+        
+        return new BudgetedURIResolver(new ResolutionBudget(getResolutionBudget()));
+    }
+    
     /**
      * Resolves relative URI to XML source.
      * @param href relative URI
@@ -111,17 +355,36 @@ public class DataManagerImpl extends com.atomgraph.core.util.jena.DataManagerImp
      */
     @Override
     public Source resolve(String href, String base) throws TransformerException
+    {
+        return resolve(href, base, null);
+    }
+    
+    /**
+     * Resolves relative URI to XML source within a time budget.
+     * Once the budget is spent, uncached URIs are not dereferenced anymore: they resolve to the disk-cached copy,
+     * if there is one, or to an empty document.
+     * 
+     * @param href relative URI
+     * @param base base URI
+     * @param budget resolution budget, or null if unlimited
+     * @return XML source
+     * @throws javax.xml.transform.TransformerException 
+     */
+    public Source resolve(String href, String base, ResolutionBudget budget) throws TransformerException
     {
         URI baseURI = URI.create(base);
         URI uri = href.isEmpty() ? baseURI : baseURI.resolve(href);
         
+        if (isResolvingMapped() && isMapped(uri.toString())) refreshMapped(uri.toString());
         if (hasCachedModel(uri.toString()) || (isResolvingMapped() && isMapped(uri.toString()))) // read mapped URIs (such as system ontologies) from a file
         {
             try
             {
                 if (log.isDebugEnabled()) log.debug("hasCachedModel({}): {}", uri, hasCachedModel(uri.toString()));
                 if (log.isDebugEnabled()) log.debug("isMapped({}): {}", uri, isMapped(uri.toString()));
-                return getSource(loadModel(uri.toString()), uri.toString());
+                if (hasCachedModel(uri.toString())) return getCachedSource(loadModel(uri.toString()), uri.toString());
+                
+                return getMappedSource(uri.toString());
             }
             catch (IOException ex)
             {
@@ -142,13 +405,33 @@ public class DataManagerImpl extends com.atomgraph.core.util.jena.DataManagerImp
                     return getSource(ModelFactory.createDefaultModel(), uri.toString());
                 }
 
-                try (Response cr = get(uri.toString(), getAcceptedXMLMediaTypes()))
+                NegativeCache.Failure failure = getNegativeCache() != null ? getNegativeCache().get(uri.toString()) : null;
+                if (failure != null)
+                {
+                    if (log.isDebugEnabled()) log.debug("URI {} is known to fail ({}), not dereferencing it", uri, failure.getFailureClass());
+                    throw new TransformerException(new IOException(failure.getMessage()));
+                }
+                
+                if (budget != null && budget.isExpired()) return getSkippedSource(uri.toString(), budget);
+                
+                if (getUpstreamGuard() != null && !getUpstreamGuard().tryAcquire(uri.getHost()))
+                {
+                    if (log.isInfoEnabled()) log.info("Host {} is unavailable or busy - returning empty document for URI: {}", uri.getHost(), uri);
+                    return getSource(ModelFactory.createDefaultModel(), uri.toString());
+                }
+
+                boolean hostFailed = true; // connection errors and server errors count as failures of the host
+                boolean budgetExpired = false;
+                try (Response cr = get(uri.toString(), getAcceptedXMLMediaTypes(), budget))
                 {
+                    hostFailed = cr.getStatusInfo().getFamily().equals(Response.Status.Family.SERVER_ERROR);
                     if (!cr.getStatusInfo().getFamily().equals(Response.Status.Family.SUCCESSFUL))
-                        throw new IOException("XML document could not be successfully loaded over HTTP. Status code: " + cr.getStatus());
+                        throw getFailure(uri.toString(), NegativeCache.getFailureClass(cr.getStatusInfo()),
+                            "XML document could not be successfully loaded over HTTP. Status code: " + cr.getStatus());
                     
                     if (!isAcceptedMediaType(cr.getMediaType(), getAcceptedXMLMediaTypes())) // response content type is an acceptable XML format
-                        throw new IOException("MediaType '" + cr.getMediaType() + "' is not accepted");
+                        throw getFailure(uri.toString(), NegativeCache.FailureClass.UNSUPPORTED_MEDIA_TYPE,
+                            "MediaType '" + cr.getMediaType() + "' is not accepted");
 
                     // buffer the stream so we can close ClientResponse
                     try (InputStream is = cr.readEntity(InputStream.class))
@@ -156,6 +439,36 @@ public class DataManagerImpl extends com.atomgraph.core.util.jena.DataManagerImp
                         byte[] bytes = IOUtils.toByteArray(is);
                         return new StreamSource(new ByteArrayInputStream(bytes), uri.toString());
                     }
+                    catch (IOException ex) // the entity could not be read
+                    {
+                        if (budget != null && budget.isExpired())
+                        {
+                            budgetExpired = true;
+                            return getSkippedSource(uri.toString(), budget);
+                        }
+                        
+                        hostFailed = true;
+                        throw getFailure(uri.toString(), NegativeCache.getFailureClass(ex), ex.getMessage());
+                    }
+                }
+                catch (ProcessingException ex)
+                {
+                    if (budget != null && budget.isExpired()) // timed out by the budget, not a failure of the host
+                    {
+                        budgetExpired = true;
+                        return getSkippedSource(uri.toString(), budget);
+                    }
+                    
+                    if (getNegativeCache() != null) getNegativeCache().put(uri.toString(), NegativeCache.getFailureClass(ex), ex.getMessage());
+                    throw ex;
+                }
+                finally
+                {
+                    if (getUpstreamGuard() != null)
+                    {
+                        if (budgetExpired) getUpstreamGuard().release(uri.getHost());
+                        else getUpstreamGuard().release(uri.getHost(), !hostFailed);
+                    }
                 }
             }
             catch (IOException ex)
@@ -168,6 +481,58 @@ public class DataManagerImpl extends com.atomgraph.core.util.jena.DataManagerImp
         return null;
     }
 
+    /**
+     * Returns exception of a failed resolution and remembers the failure in the negative cache.
+     * 
+     * @param uri document URI
+     * @param failureClass failure class, or null if it should not be cached
+     * @param message failure message
+     * @return exception to be thrown
+     */
+    protected IOException getFailure(String uri, NegativeCache.FailureClass failureClass, String message)
+    {
+        if (getNegativeCache() != null && failureClass != null) getNegativeCache().put(uri, failureClass, message);
+        
+        return new IOException(message);
+    }
+    
+    /**
+     * Returns source of a URI whose fetch was skipped because the resolution budget was spent.
+     * 
+     * @param uri document URI
+     * @param budget spent budget
+     * @return disk-cached copy of the document, or empty document
+     * @throws java.io.IOException
+     */
+    protected Source getSkippedSource(String uri, ResolutionBudget budget) throws IOException
+    {
+        budget.skip();
+        skippedFetches.increment();
+        
+        Model cached = getDiskCache() != null ? getDiskCache().get(uri) : null;
+        if (log.isInfoEnabled()) log.info("Resolution budget is spent - returning {} document for URI: {}", cached != null ? "disk-cached" : "empty", uri);
+        return getSource(cached != null ? cached : ModelFactory.createDefaultModel(), uri);
+    }
+    
+    /**
+     * Sends GET request whose timeouts are limited by the remaining resolution budget.
+     * 
+     * @param uri request URI
+     * @param acceptedTypes accepted media types
+     * @param budget resolution budget, or null if unlimited
+     * @return response
+     */
+    protected Response get(String uri, MediaType[] acceptedTypes, ResolutionBudget budget)
+    {
+        if (budget == null) return get(uri, acceptedTypes);
+        
+        int timeout = (int)Math.min(Math.max(budget.getRemaining(), 1), Integer.MAX_VALUE);
+        WebTarget endpoint = getEndpoint(URI.create(uri)).
+            property(ClientProperties.CONNECT_TIMEOUT, timeout).
+            property(ClientProperties.READ_TIMEOUT, timeout);
+        return LinkedDataClient.create(endpoint, getMediaTypes()).get(acceptedTypes, null);
+    }
+    
     @Override
     public Reader resolve(URI uri, String encoding, Configuration config) throws XPathException
     {
@@ -203,16 +568,86 @@ public class DataManagerImpl extends com.atomgraph.core.util.jena.DataManagerImp
     public Source getSource(Model model, String systemId) throws IOException
     {
         if (log.isDebugEnabled()) log.debug("Number of Model stmts read: {}", model.size());
+        return new StreamSource(new ByteArrayInputStream(serialize(model)), systemId);
+    }
+
+    /**
+     * Returns XML source of a cached RDF model.
+     * The RDF/XML serialization is memoized per model instance and discarded when the model changes.
+     * 
+     * @param model RDF model
+     * @param systemId system ID (usually origin URI) of the source
+     * @return XML source
+     * @throws java.io.IOException
+     */
+    public Source getCachedSource(Model model, String systemId) throws IOException
+    {
+        byte[] bytes = getSerializedModels().get(model);
+        
+        if (bytes == null)
+        {
+            SerializedModelListener listener = new SerializedModelListener(model);
+            model.register(listener); // register before writing so that concurrent changes are not missed
+            bytes = serialize(model);
+            if (listener.isValid())
+            {
+                byte[] existing = getSerializedModels().putIfAbsent(model, bytes);
+                if (existing != null) // a concurrent miss won, its listener is the one that invalidates the serialization
+                {
+                    model.unregister(listener);
+                    bytes = existing;
+                }
+            }
+        }
+        else if (log.isDebugEnabled()) log.debug("Reusing serialized RDF/XML of cached Model for URI: {}", systemId);
+        
+        return new StreamSource(new ByteArrayInputStream(bytes), systemId);
+    }
+    
+    /**
+     * Returns XML source of a mapped RDF document, such as a system ontology.
+     * Mapped documents are static files, so their RDF/XML serialization is kept even if model loads are not cached.
+     * The least recently used serializations are discarded when their total size exceeds {@link #DEFAULT_MAX_SERIALIZED_MAPPED_BYTES}.
+     * 
+     * @param filenameOrURI mapped URI
+     * @return XML source
+     * @throws java.io.IOException
+     */
+    public Source getMappedSource(String filenameOrURI) throws IOException
+    {
+        byte[] bytes = getSerializedMapped().get(filenameOrURI);
+        
+        if (bytes == null)
+        {
+            bytes = serialize(loadModel(filenameOrURI));
+            getSerializedMapped().put(filenameOrURI, bytes, bytes.length);
+        }
+        else if (log.isDebugEnabled()) log.debug("Reusing serialized RDF/XML of mapped URI: {}", filenameOrURI);
+        
+        return new StreamSource(new ByteArrayInputStream(bytes), filenameOrURI);
+    }
+    
+    /**
+     * Serializes RDF model to RDF/XML bytes.
+     * 
+     * @param model RDF model
+     * @return RDF/XML bytes
+     * @throws java.io.IOException
+     */
+    protected byte[] serialize(Model model) throws IOException
+    {
         try (ByteArrayOutputStream stream = new ByteArrayOutputStream())
         {
             model.write(stream);
-            if (log.isDebugEnabled()) log.debug("RDF/XML bytes written: {}", stream.toByteArray().length);
-            return new StreamSource(new ByteArrayInputStream(stream.toByteArray()), systemId);
+            byte[] bytes = stream.toByteArray();
+            if (log.isDebugEnabled()) log.debug("RDF/XML bytes written: {}", bytes.length);
+            return bytes;
         }
     }
 
     /**
-     * Serializes SPARQL XML results to XML source.
+     * Feeds SPARQL XML results to XML source.
+     * The results are not serialized, the source sends them as XML events when it is read.
      * 
      * @param results SPARQL XML results
      * @param systemId system ID (usually origin URI) of the source
@@ -223,14 +658,90 @@ public class DataManagerImpl extends com.atomgraph.core.util.jena.DataManagerImp
     public Source getSource(ResultSet results, String systemId) throws IOException
     {
         if (log.isDebugEnabled()) log.debug("ResultVars: {}", results.getResultVars());
-        try (ByteArrayOutputStream stream = new ByteArrayOutputStream())
+        return new ResultSetSource(results, systemId);
+    }
+ 
+    /**
+     * URI resolver that resolves URIs within the time budget of a single transformation.
+     */
+    protected class BudgetedURIResolver implements URIResolver
+    {
+        
+        private final ResolutionBudget budget;
+        
+        public BudgetedURIResolver(ResolutionBudget budget)
         {
-            ResultSetFormatter.outputAsXML(stream, results);
-            if (log.isDebugEnabled()) log.debug("SPARQL XML result bytes written: {}", stream.toByteArray().length);
-            return new StreamSource(new ByteArrayInputStream(stream.toByteArray()), systemId);
+            this.budget = budget;
         }
+        
+        @Override
+        public Source resolve(String href, String base) throws TransformerException
+        {
+            return DataManagerImpl.this.resolve(href, base, getBudget());
+        }
+        
+        public ResolutionBudget getBudget()
+        {
+            return budget;
+        }
+        
     }
- 
+    
+    /**
+     * Model listener that discards the memoized serialization on the first change of the model.
+     */
+    protected class SerializedModelListener extends StatementListener
+    {
+        
+        private final Model model;
+        private volatile boolean valid = true;
+        
+        public SerializedModelListener(Model model)
+        {
+            this.model = model;
+        }
+        
+        protected void invalidate()
+        {
+            if (!valid) return;
+            
+            valid = false;
+            getSerializedModels().remove(getModel());
+            getModel().unregister(this);
+            if (log.isDebugEnabled()) log.debug("Model changed, discarding its serialized RDF/XML");
+        }
+        
+        @Override
+        public void addedStatement(Statement s)
+        {
+            invalidate();
+        }
+        
+        @Override
+        public void removedStatement(Statement s)
+        {
+            invalidate();
+        }
+
+        @Override
+        public void notifyEvent(Model m, Object event)
+        {
+            // removeAll() and remove(s, p, o) are only reported as events
+            if (event instanceof GraphEvents && !event.equals(GraphEvents.startRead) && !event.equals(GraphEvents.finishRead)) invalidate();
+        }
+        
+        public boolean isValid()
+        {
+            return valid;
+        }
+        
+        public Model getModel()
+        {
+            return model;
+        }
+        
+    }
+    
     public boolean isAcceptedMediaType(MediaType mediaType, MediaType[] mediaTypes)
     {
         for (MediaType accepted : mediaTypes)
@@ -262,5 +773,55 @@ public class DataManagerImpl extends com.atomgraph.core.util.jena.DataManagerImp
     {
         return acceptedXMLMediaTypes;
     }
+    
+    /**
+     * Returns the interner of the nodes of read documents, together with its lookup, hit and saved byte counts.
+     * 
+     * @return node interner
+     */
+    public NodeInterner getNodeInterner()
+    {
+        return nodeInterner;
+    }
+    
+    public ModelDiskCache getDiskCache()
+    {
+        return diskCache;
+    }
+    
+    public UpstreamGuard getUpstreamGuard()
+    {
+        return upstreamGuard;
+    }
+    
+    public Long getResolutionBudget()
+    {
+        return resolutionBudget;
+    }
+    
+    public NegativeCache getNegativeCache()
+    {
+        return negativeCache;
+    }
+    
+    /**
+     * Returns the number of fetches that were skipped because the resolution budget was spent.
+     * 
+     * @return skip count
+     */
+    public long getSkippedFetches()
+    {
+        return skippedFetches.sum();
+    }
+    
+    protected Map<Model, byte[]> getSerializedModels()
+    {
+        return serializedModels;
+    }
+    
+    protected WeightedCache<String, byte[]> getSerializedMapped()
+    {
+        return serializedMapped;
+    }
 
 }
\ No newline at end of file
@@ -0,0 +1,557 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Force-directed layout of RDF graphs, used to draw the SVG graph view.
+ * Subjects and resource objects become circle nodes; literal objects become rectangle nodes of their own
+ * (one per triple), if literals are shown. Replaces the positioning loop of <code>RDFXML2SVG.xsl</code>,
+ * which compared every node with every other node in every step.
+ * <p>
+ * The layout is Fruchterman-Reingold: linked nodes attract each other, all nodes repel each other, and the
+ * movement is limited by a temperature that cools down with each iteration. Repulsion is only computed between
+ * nodes in neighbouring cells of a grid, which makes an iteration linear in the size of the graph.
+ * Nodes start on a spiral in the breadth-first order of the graph, so that linked nodes start close to each other,
+ * and the nodes are visited in the order of their N-Triples form, so that the layout of a graph is deterministic.
+ * <p>
+ * Computed layouts are cached by the digest of the graph (SHA-256 of its sorted N-Triples), so that repeated
+ * views of the same graph are not laid out again. Blank node labels are part of the digest, so graphs with
+ * generated labels should be relabelled by {@link #getCanonicalGraph(Graph)} first.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class GraphLayout
+{
+
+    private static final Logger log = LoggerFactory.getLogger(GraphLayout.class);
+
+    /** Default ideal length of an edge */
+    public static final double DEFAULT_SPRING_LENGTH = 150d;
+    public static final int DEFAULT_ITERATIONS = 100;
+    /** Default number of cached layouts */
+    public static final int DEFAULT_MAX_LAYOUTS = 100;
+    private static final double GOLDEN_ANGLE = Math.PI * (3 - Math.sqrt(5));
+
+    private final double springLength;
+    private final int iterations;
+    private final boolean showLiterals;
+    private final Map<String, Layout> layouts;
+    private final LongAdder hits = new LongAdder();
+
+    public GraphLayout()
+    {
+        this(DEFAULT_SPRING_LENGTH, DEFAULT_ITERATIONS, false, DEFAULT_MAX_LAYOUTS);
+    }
+
+    /**
+     * Constructs layout engine.
+     *
+     * @param springLength ideal length of an edge
+     * @param iterations number of layout iterations
+     * @param showLiterals if true, literal objects are laid out as nodes
+     * @param maxLayouts maximum number of cached layouts
+     */
+    public GraphLayout(double springLength, int iterations, boolean showLiterals, final int maxLayouts)
+    {
+        if (springLength <= 0) throw new IllegalArgumentException("Spring length must be positive");
+        if (iterations < 0) throw new IllegalArgumentException("Iterations cannot be negative");
+        if (maxLayouts < 0) throw new IllegalArgumentException("Max layouts cannot be negative");
+
+        this.springLength = springLength;
+        this.iterations = iterations;
+        this.showLiterals = showLiterals;
+        this.layouts = new LinkedHashMap<String, Layout>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Layout> eldest)
+            {
+                return size() > maxLayouts;
+            }
+        };
+    }
+
+    /**
+     * Returns the layout of the graph, computing it if it is not cached.
+     *
+     * @param graph RDF graph
+     * @return layout
+     */
+    public Layout getLayout(Graph graph)
+    {
+        if (graph == null) throw new IllegalArgumentException("Graph cannot be null");
+
+        SortedMap<String, Triple> triples = getSortedTriples(graph);
+        String digest = getDigest(triples.keySet());
+
+        synchronized (layouts)
+        {
+            Layout layout = layouts.get(digest);
+            if (layout != null)
+            {
+                hits.increment();
+                return layout;
+            }
+        }
+
+        long start = System.nanoTime();
+        Layout layout = layout(new ArrayList<>(triples.values()));
+        if (log.isDebugEnabled()) log.debug("Laid out {} nodes and {} edges in {} ms", layout.size(), layout.getEdges().size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        synchronized (layouts)
+        {
+            layouts.put(digest, layout);
+        }
+
+        return layout;
+    }
+
+    /**
+     * Returns the triples of the graph keyed and sorted by their N-Triples form.
+     *
+     * @param graph RDF graph
+     * @return sorted triples
+     */
+    protected static SortedMap<String, Triple> getSortedTriples(Graph graph)
+    {
+        SortedMap<String, Triple> triples = new TreeMap<>();
+        ExtendedIterator<Triple> it = graph.find();
+        try
+        {
+            while (it.hasNext())
+            {
+                Triple triple = it.next();
+                triples.put(NodeFmtLib.str(triple), triple);
+            }
+        }
+        finally
+        {
+            it.close();
+        }
+
+        return triples;
+    }
+
+    /**
+     * Returns a copy of the graph in which blank nodes are labelled by their position in the graph, so that
+     * graphs that differ only in blank node labels become equal.
+     * <p>
+     * Blank nodes are hashed by colour refinement: each round, the hash of a blank node is derived from its previous
+     * hash and the sorted predicates and neighbours (hashes of neighbouring blank nodes, N-Triples form of other terms)
+     * of its triples, until the rounds stop distinguishing more nodes. Nodes that remain indistinguishable
+     * are numbered in the order of their original labels.
+     *
+     * @param graph RDF graph
+     * @return graph with canonical blank node labels, or the same graph if it has no blank nodes
+     */
+    public static Graph getCanonicalGraph(Graph graph)
+    {
+        if (graph == null) throw new IllegalArgumentException("Graph cannot be null");
+
+        List<Triple> triples = graph.find().toList();
+        Map<Node, String> hashes = new HashMap<>();
+        for (Triple triple : triples)
+        {
+            if (triple.getSubject().isBlank()) hashes.put(triple.getSubject(), "");
+            if (triple.getObject().isBlank()) hashes.put(triple.getObject(), "");
+        }
+        if (hashes.isEmpty()) return graph;
+
+        int classes = 1;
+        for (int round = 0; round < hashes.size(); round++) // each round that changes the partition splits at least one class
+        {
+            Map<Node, List<String>> signatures = new HashMap<>();
+            for (Node node : hashes.keySet()) signatures.put(node, new ArrayList<>(Collections.singletonList(hashes.get(node))));
+            for (Triple triple : triples)
+            {
+                String predicate = NodeFmtLib.str(triple.getPredicate());
+                if (triple.getSubject().isBlank()) signatures.get(triple.getSubject()).add("+" + predicate + " " + getLabel(triple.getObject(), hashes));
+                if (triple.getObject().isBlank()) signatures.get(triple.getObject()).add("-" + predicate + " " + getLabel(triple.getSubject(), hashes));
+            }
+
+            Map<Node, String> refined = new HashMap<>();
+            for (Map.Entry<Node, List<String>> signature : signatures.entrySet())
+            {
+                List<String> lines = signature.getValue();
+                Collections.sort(lines.subList(1, lines.size()));
+                refined.put(signature.getKey(), getDigest(lines));
+            }
+
+            int refinedClasses = new HashSet<>(refined.values()).size();
+            hashes = refined;
+            if (refinedClasses == classes) break;
+            classes = refinedClasses;
+        }
+
+        List<Node> nodes = new ArrayList<>(hashes.keySet());
+        final Map<Node, String> finalHashes = hashes;
+        nodes.sort(Comparator.comparing((Node node) -> finalHashes.get(node)).thenComparing(node -> node.getBlankNodeLabel()));
+        Map<Node, Node> labels = new HashMap<>();
+        for (int i = 0; i < nodes.size(); i++)
+        {
+            String hash = hashes.get(nodes.get(i));
+            boolean unique = (i == 0 || !hashes.get(nodes.get(i - 1)).equals(hash)) && (i == nodes.size() - 1 || !hashes.get(nodes.get(i + 1)).equals(hash));
+            labels.put(nodes.get(i), NodeFactory.createBlankNode(hash.substring(0, 16) + (unique ? "" : "-" + i)));
+        }
+
+        Graph canonical = GraphFactory.createDefaultGraph();
+        for (Triple triple : triples)
+            canonical.add(Triple.create(labels.getOrDefault(triple.getSubject(), triple.getSubject()), triple.getPredicate(),
+                labels.getOrDefault(triple.getObject(), triple.getObject())));
+        return canonical;
+    }
+
+    private static String getLabel(Node node, Map<Node, String> hashes)
+    {
+        return node.isBlank() ? "_:" + hashes.get(node) : NodeFmtLib.str(node);
+    }
+
+    /**
+     * Returns the hex-encoded SHA-256 digest of N-Triples lines.
+     *
+     * @param lines sorted N-Triples lines
+     * @return digest
+     */
+    public static String getDigest(Collection<String> lines)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String line : lines)
+            {
+                digest.update(line.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte)'\n');
+            }
+            return String.format("%064x", new BigInteger(1, digest.digest()));
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new IllegalStateException(ex); // SHA-256 is supported by every Java platform
+        }
+    }
+
+    /**
+     * Lays out the nodes of the triples.
+     *
+     * @param triples sorted triples
+     * @return layout
+     */
+    protected Layout layout(List<Triple> triples)
+    {
+        Map<Node, Integer> resources = new LinkedHashMap<>();
+        Map<Triple, Integer> literals = new LinkedHashMap<>();
+        List<Triple> edges = new ArrayList<>();
+        for (Triple triple : triples)
+        {
+            resources.computeIfAbsent(triple.getSubject(), node -> resources.size());
+            if (!triple.getObject().isLiteral())
+            {
+                resources.computeIfAbsent(triple.getObject(), node -> resources.size());
+                edges.add(triple);
+            }
+        }
+        if (isShowLiterals())
+            for (Triple triple : triples)
+                if (triple.getObject().isLiteral())
+                {
+                    literals.put(triple, resources.size() + literals.size());
+                    edges.add(triple);
+                }
+
+        int size = resources.size() + literals.size();
+        int[] sources = new int[edges.size()], targets = new int[edges.size()];
+        for (int i = 0; i < edges.size(); i++)
+        {
+            Triple edge = edges.get(i);
+            sources[i] = resources.get(edge.getSubject());
+            targets[i] = edge.getObject().isLiteral() ? literals.get(edge) : resources.get(edge.getObject());
+        }
+
+        // start on a spiral in breadth-first order, so that linked nodes start close to each other
+        double[] x = new double[size], y = new double[size];
+        int[] order = getBreadthFirstOrder(size, sources, targets);
+        for (int i = 0; i < size; i++)
+        {
+            double radius = getSpringLength() * Math.sqrt(i / Math.PI), angle = i * GOLDEN_ANGLE;
+            x[order[i]] = radius * Math.cos(angle);
+            y[order[i]] = radius * Math.sin(angle);
+        }
+
+        double temperature = getSpringLength() * Math.sqrt(size) / 2;
+        for (int step = 0; step < getIterations(); step++)
+            move(x, y, sources, targets, temperature * (getIterations() - step) / getIterations()); // cools down linearly
+
+        return new Layout(resources, literals, edges, x, y);
+    }
+
+    /**
+     * Moves the nodes by one layout iteration.
+     *
+     * @param x horizontal node positions
+     * @param y vertical node positions
+     * @param sources edge source node indexes
+     * @param targets edge target node indexes
+     * @param temperature maximum displacement
+     */
+    protected void move(double[] x, double[] y, int[] sources, int[] targets, double temperature)
+    {
+        double k = getSpringLength(), cellSize = 2 * k;
+        double[] dx = new double[x.length], dy = new double[y.length];
+
+        // repulsion between nodes in the same and neighbouring cells
+        Map<Long, List<Integer>> cells = new HashMap<>();
+        for (int i = 0; i < x.length; i++)
+            cells.computeIfAbsent(getCell((long)Math.floor(x[i] / cellSize), (long)Math.floor(y[i] / cellSize)), cell -> new ArrayList<>()).add(i);
+
+        for (int i = 0; i < x.length; i++)
+        {
+            long cellX = (long)Math.floor(x[i] / cellSize), cellY = (long)Math.floor(y[i] / cellSize);
+            for (long nx = cellX - 1; nx <= cellX + 1; nx++)
+                for (long ny = cellY - 1; ny <= cellY + 1; ny++)
+                {
+                    List<Integer> cell = cells.get(getCell(nx, ny));
+                    if (cell == null) continue;
+
+                    for (int j : cell)
+                    {
+                        if (i == j) continue;
+
+                        double distX = x[i] - x[j], distY = y[i] - y[j];
+                        double dist2 = distX * distX + distY * distY;
+                        if (dist2 == 0) // nudge apart coinciding nodes in a deterministic direction
+                        {
+                            distX = i < j ? -0.01 : 0.01;
+                            dist2 = distX * distX;
+                        }
+                        if (dist2 > cellSize * cellSize) continue;
+
+                        dx[i] += distX * k * k / dist2;
+                        dy[i] += distY * k * k / dist2;
+                    }
+                }
+        }
+
+        // attraction between linked nodes
+        for (int e = 0; e < sources.length; e++)
+        {
+            int i = sources[e], j = targets[e];
+            if (i == j) continue; // loops have no effect
+
+            double distX = x[i] - x[j], distY = y[i] - y[j];
+            double dist = Math.sqrt(distX * distX + distY * distY);
+            dx[i] -= distX * dist / k;
+            dy[i] -= distY * dist / k;
+            dx[j] += distX * dist / k;
+            dy[j] += distY * dist / k;
+        }
+
+        for (int i = 0; i < x.length; i++)
+        {
+            double displacement = Math.sqrt(dx[i] * dx[i] + dy[i] * dy[i]);
+            if (displacement == 0) continue;
+
+            double limited = Math.min(displacement, temperature);
+            x[i] += dx[i] / displacement * limited;
+            y[i] += dy[i] / displacement * limited;
+        }
+    }
+
+    /**
+     * Returns node indexes in the breadth-first order of the graph. Unlinked parts are visited in index order.
+     *
+     * @param size number of nodes
+     * @param sources edge source node indexes
+     * @param targets edge target node indexes
+     * @return node indexes
+     */
+    protected static int[] getBreadthFirstOrder(int size, int[] sources, int[] targets)
+    {
+        List<List<Integer>> neighbours = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) neighbours.add(new ArrayList<>());
+        for (int e = 0; e < sources.length; e++)
+        {
+            neighbours.get(sources[e]).add(targets[e]);
+            neighbours.get(targets[e]).add(sources[e]);
+        }
+
+        int[] order = new int[size];
+        boolean[] visited = new boolean[size];
+        int head = 0, tail = 0;
+        for (int root = 0; root < size; root++)
+        {
+            if (visited[root]) continue;
+
+            visited[root] = true;
+            order[tail++] = root;
+            while (head < tail)
+                for (int neighbour : neighbours.get(order[head++]))
+                    if (!visited[neighbour])
+                    {
+                        visited[neighbour] = true;
+                        order[tail++] = neighbour;
+                    }
+        }
+
+        return order;
+    }
+
+    protected static long getCell(long x, long y)
+    {
+        return (x << 32) ^ (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the number of layouts that were read from the cache.
+     *
+     * @return hit count
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    public int size()
+    {
+        synchronized (layouts)
+        {
+            return layouts.size();
+        }
+    }
+
+    public double getSpringLength()
+    {
+        return springLength;
+    }
+
+    public int getIterations()
+    {
+        return iterations;
+    }
+
+    public boolean isShowLiterals()
+    {
+        return showLiterals;
+    }
+
+    /**
+     * Node positions of a graph. Resources are identified by their nodes, literals by their triples.
+     * Layouts are immutable and shared between requests.
+     */
+    public static class Layout
+    {
+
+        private final Map<Node, Integer> resources;
+        private final Map<Triple, Integer> literals;
+        private final List<Triple> edges;
+        private final double[] x, y;
+
+        protected Layout(Map<Node, Integer> resources, Map<Triple, Integer> literals, List<Triple> edges, double[] x, double[] y)
+        {
+            this.resources = Collections.unmodifiableMap(resources);
+            this.literals = Collections.unmodifiableMap(literals);
+            this.edges = Collections.unmodifiableList(edges);
+            this.x = x;
+            this.y = y;
+        }
+
+        /**
+         * Returns the position of a resource node.
+         *
+         * @param node subject or object node
+         * @return <code>{x, y}</code> position, or null if the node is not laid out
+         */
+        public double[] getPosition(Node node)
+        {
+            Integer index = getResources().get(node);
+            return index != null ? new double[]{ x[index], y[index] } : null;
+        }
+
+        /**
+         * Returns the position of a literal node.
+         *
+         * @param triple triple with literal object
+         * @return <code>{x, y}</code> position, or null if the literal is not laid out
+         */
+        public double[] getPosition(Triple triple)
+        {
+            Integer index = getLiterals().get(triple);
+            return index != null ? new double[]{ x[index], y[index] } : null;
+        }
+
+        /**
+         * Returns laid out resource nodes, in their N-Triples order.
+         *
+         * @return node indexes
+         */
+        public Map<Node, Integer> getResources()
+        {
+            return resources;
+        }
+
+        /**
+         * Returns laid out literal nodes, in their N-Triples order.
+         *
+         * @return node indexes
+         */
+        public Map<Triple, Integer> getLiterals()
+        {
+            return literals;
+        }
+
+        /**
+         * Returns the triples that link laid out nodes.
+         *
+         * @return edge triples
+         */
+        public List<Triple> getEdges()
+        {
+            return edges;
+        }
+
+        public int size()
+        {
+            return x.length;
+        }
+
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import net.sf.saxon.Controller;
+import net.sf.saxon.Version;
+import net.sf.saxon.om.NodeInfo;
+import net.sf.saxon.om.TreeInfo;
+import net.sf.saxon.s9api.DocumentBuilder;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Long-lived Saxon documents of mapped URIs (such as system vocabularies), shared across transformations.
+ * Documents are parsed once using the processor of the compiled stylesheet and returned to <code>document()</code> calls
+ * as trees, so that their <code>key()</code> indexes can be reused as well.
+ * A document is parsed again once the modification time of its mapped file changes.
+ * <p>
+ * Saxon attaches shared key indexes of documents loaded by <code>document()</code> to the transformation,
+ * and keeps only weak references to them otherwise. Once a transformation has finished,
+ * {@link #pinKeyIndexes(Controller)} attaches its indexes to the cached documents, which keeps them reachable
+ * for the following transformations of the same stylesheet.
+ * The indexes are stored under undocumented Saxon user data, so pinning is only enabled for the Saxon version
+ * it was verified with; with other versions the documents are still cached, but their indexes are rebuilt.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class IndexedDocumentCache
+{
+
+    private static final Logger log = LoggerFactory.getLogger(IndexedDocumentCache.class);
+
+    /** Name of the user data in which Saxon stores the key indexes of a document */
+    public static final String KEY_INDEX_LIST = "saxon:key-index-list";
+    /** Major Saxon version whose key index storage {@link #pinKeyIndexes(Controller)} relies on */
+    public static final int KEY_INDEX_SAXON_VERSION = 10;
+
+    private final DocumentBuilder docBuilder;
+    private final boolean pinningKeyIndexes;
+    private final Map<String, Document> documents = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Constructs cache.
+     *
+     * @param processor processor of the stylesheet that reads the documents
+     */
+    public IndexedDocumentCache(Processor processor)
+    {
+        if (processor == null) throw new IllegalArgumentException("Processor cannot be null");
+
+        this.docBuilder = processor.newDocumentBuilder();
+        this.pinningKeyIndexes = Version.getStructuredVersionNumber()[0] == KEY_INDEX_SAXON_VERSION;
+        if (!pinningKeyIndexes && log.isWarnEnabled()) log.warn("Key indexes are not pinned with Saxon version {}", Version.getProductVersion());
+    }
+
+    /**
+     * Returns cached document.
+     *
+     * @param uri document URI
+     * @return document node, or null if the document is not cached
+     */
+    public NodeInfo get(String uri)
+    {
+        Document doc = documents.get(getDocumentURI(uri));
+        return doc != null ? doc.getNode() : null;
+    }
+
+    /**
+     * Returns cached document, or parses the source and caches its document.
+     *
+     * @param uri document URI
+     * @param source document source
+     * @param lastModified modification time of the document source, or 0 if unknown
+     * @return document node
+     * @throws TransformerException if the source cannot be parsed
+     */
+    public NodeInfo getDocument(String uri, Source source, long lastModified) throws TransformerException
+    {
+        String docURI = getDocumentURI(uri);
+        Document doc = documents.get(docURI);
+        if (doc != null && doc.getLastModified() == lastModified)
+        {
+            hits.increment();
+            return doc.getNode();
+        }
+
+        try
+        {
+            doc = new Document(getDocumentBuilder().build(source).getUnderlyingNode(), lastModified);
+            if (log.isDebugEnabled()) log.debug("Caching indexed document of URI: {}", docURI);
+            Document parsed = doc;
+            // another thread might have parsed the same version meanwhile
+            return documents.compute(docURI, (key, existing) -> existing != null && existing.getLastModified() == lastModified ? existing : parsed).getNode();
+        }
+        catch (SaxonApiException ex)
+        {
+            throw new TransformerException(ex);
+        }
+    }
+
+    /**
+     * Returns resolver that reads mapped URIs from this cache and delegates other URIs.
+     *
+     * @param dataManager data manager that maps the URIs
+     * @param resolver resolver of the transformation
+     * @return URI resolver
+     */
+    public URIResolver getURIResolver(DataManager dataManager, URIResolver resolver)
+    {
+        if (dataManager == null) throw new IllegalArgumentException("DataManager cannot be null");
+        if (resolver == null) throw new IllegalArgumentException("URIResolver cannot be null");
+
+        return (href, base) ->
+        {
+            String uri = base != null ? URI.create(base).resolve(href).toString() : href;
+            if (!dataManager.isMapped(getDocumentURI(uri))) return resolver.resolve(href, base);
+
+            long lastModified = dataManager.getLastModified(getDocumentURI(uri));
+            Document doc = documents.get(getDocumentURI(uri));
+            if (doc != null)
+            {
+                if (doc.getLastModified() == lastModified)
+                {
+                    hits.increment();
+                    return doc.getNode();
+                }
+
+                if (log.isDebugEnabled()) log.debug("Mapped file of URI {} has changed, discarding its indexed document", uri);
+                documents.remove(getDocumentURI(uri), doc);
+            }
+
+            Source source = resolver.resolve(href, base);
+            return source != null ? getDocument(uri, source, lastModified) : null;
+        };
+    }
+
+    /**
+     * Attaches the key indexes that a finished transformation has built for the cached documents to the documents.
+     *
+     * @param controller controller of the transformation
+     */
+    public void pinKeyIndexes(Controller controller)
+    {
+        if (!isPinningKeyIndexes()) return;
+
+        for (Document doc : documents.values())
+        {
+            TreeInfo tree = doc.getNode().getTreeInfo();
+            Object indexes = controller.getUserData(tree, KEY_INDEX_LIST);
+            if (indexes != null && tree.getUserData(KEY_INDEX_LIST) == null)
+            {
+                if (log.isDebugEnabled()) log.debug("Pinning key indexes of document: {}", doc.getNode().getSystemId());
+                tree.setUserData(KEY_INDEX_LIST, indexes);
+            }
+        }
+    }
+
+    /**
+     * Strips the fragment identifier.
+     *
+     * @param uri URI
+     * @return URI without fragment
+     */
+    public static String getDocumentURI(String uri)
+    {
+        try
+        {
+            URI docURI = URI.create(uri);
+            if (docURI.getFragment() == null) return uri;
+
+            return new URI(docURI.getScheme(), docURI.getSchemeSpecificPart(), null).toString();
+        }
+        catch (IllegalArgumentException | URISyntaxException ex)
+        {
+            return uri;
+        }
+    }
+
+    /**
+     * Returns the number of document lookups served from the cache.
+     *
+     * @return hit count
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    public int size()
+    {
+        return documents.size();
+    }
+
+    public DocumentBuilder getDocumentBuilder()
+    {
+        return docBuilder;
+    }
+
+    /**
+     * Returns true if the key indexes of the documents are pinned, which depends on the Saxon version.
+     *
+     * @return true if pinning
+     */
+    public boolean isPinningKeyIndexes()
+    {
+        return pinningKeyIndexes;
+    }
+
+    /**
+     * Cached document together with the modification time of its source.
+     */
+    protected static class Document
+    {
+
+        private final NodeInfo node;
+        private final long lastModified;
+
+        protected Document(NodeInfo node, long lastModified)
+        {
+            this.node = node;
+            this.lastModified = lastModified;
+        }
+
+        public NodeInfo getNode()
+        {
+            return node;
+        }
+
+        public long getLastModified()
+        {
+            return lastModified;
+        }
+
+    }
+
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of dereferenced RDF documents.
+ * Models are stored in the binary RDF Thrift encoding, which is much cheaper to parse than the text syntaxes,
+ * together with the HTTP validators (<code>ETag</code> and <code>Last-Modified</code>) of the response they were read from.
+ * The cache survives restarts, so cached documents only need to be revalidated instead of fetched and parsed again.
+ * <p>
+ * The total size of the data files is capped. Reads touch the modification time of the data file, and when a write
+ * exceeds the cap the entries with the oldest modification times are pruned, which approximates LRU eviction.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ * @see <a href="https://jena.apache.org/documentation/io/rdf-binary.html">RDF Binary using Apache Thrift</a>
+ */
+public class ModelDiskCache
+{
+
+    private static final Logger log = LoggerFactory.getLogger(ModelDiskCache.class);
+
+    public static final String DATA_EXTENSION = ".trdf";
+    public static final String VALIDATORS_EXTENSION = ".properties";
+    public static final String TEMP_EXTENSION = ".tmp";
+    public static final String URI_KEY = "uri";
+    public static final String ETAG_KEY = "etag";
+    public static final String LAST_MODIFIED_KEY = "lastModified";
+    public static final long DEFAULT_MAX_SIZE = 1L << 30;
+
+    private final Path directory;
+    private final long maxSize;
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * Constructs cache in the given directory with the default size cap.
+     *
+     * @param directory cache directory
+     * @throws IOException if the directory cannot be created
+     */
+    public ModelDiskCache(Path directory) throws IOException
+    {
+        this(directory, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructs cache in the given directory. The directory is created if it does not exist.
+     * Entries that exceed the size cap are pruned straight away.
+     *
+     * @param directory cache directory
+     * @param maxSize maximum total size of the data files in bytes
+     * @throws IOException if the directory cannot be created
+     */
+    public ModelDiskCache(Path directory, long maxSize) throws IOException
+    {
+        if (directory == null) throw new IllegalArgumentException("Path cannot be null");
+        if (maxSize < 0) throw new IllegalArgumentException("Max size cannot be negative");
+
+        this.directory = Files.createDirectories(directory);
+        this.maxSize = maxSize;
+        prune();
+        if (log.isDebugEnabled()) log.debug("Using Model disk cache directory: {} ({} of max {} bytes)", directory, getSize(), maxSize);
+    }
+
+    /**
+     * Returns stored validators of the document, or null if it is not cached.
+     *
+     * @param uri document URI
+     * @return validator properties
+     */
+    public Properties getValidators(String uri)
+    {
+        Path validatorsPath = getPath(uri, VALIDATORS_EXTENSION);
+        if (!Files.exists(validatorsPath) || !Files.exists(getPath(uri, DATA_EXTENSION))) return null;
+
+        try (InputStream is = Files.newInputStream(validatorsPath))
+        {
+            Properties validators = new Properties();
+            validators.load(is);
+            if (!uri.equals(validators.getProperty(URI_KEY))) return null; // hash collision
+
+            return validators;
+        }
+        catch (IOException ex)
+        {
+            if (log.isWarnEnabled()) log.warn("Could not read validators of cached URI: {}", uri);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the cached document, or null if it is not cached.
+     *
+     * @param uri document URI
+     * @return RDF model
+     */
+    public Model get(String uri)
+    {
+        if (getValidators(uri) == null) return null;
+
+        Path dataPath = getPath(uri, DATA_EXTENSION);
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(dataPath)))
+        {
+            Model model = ModelFactory.createDefaultModel();
+            RDFDataMgr.read(model, is, Lang.RDFTHRIFT);
+            touch(dataPath);
+            if (log.isDebugEnabled()) log.debug("Read {} statements of URI {} from disk cache", model.size(), uri);
+            return model;
+        }
+        catch (IOException | RuntimeException ex)
+        {
+            if (log.isWarnEnabled()) log.warn("Could not read cached URI: {}, discarding it", uri);
+            remove(uri);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the document together with its validators.
+     * The files are written to temporary files first and then moved, so that readers never see a partial entry.
+     * If the size cap is exceeded afterwards, the least recently used entries are pruned.
+     *
+     * @param uri document URI
+     * @param model RDF model
+     * @param eTag <code>ETag</code> header value or null
+     * @param lastModified <code>Last-Modified</code> header value or null
+     */
+    public void put(String uri, Model model, String eTag, String lastModified)
+    {
+        if (uri == null) throw new IllegalArgumentException("URI cannot be null");
+        if (model == null) throw new IllegalArgumentException("Model cannot be null");
+
+        Properties validators = new Properties();
+        validators.setProperty(URI_KEY, uri);
+        if (eTag != null) validators.setProperty(ETAG_KEY, eTag);
+        if (lastModified != null) validators.setProperty(LAST_MODIFIED_KEY, lastModified);
+
+        Path dataTemp = null, validatorsTemp = null;
+        try
+        {
+            dataTemp = Files.createTempFile(getDirectory(), "model", TEMP_EXTENSION);
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(dataTemp)))
+            {
+                RDFDataMgr.write(os, model, RDFFormat.RDF_THRIFT);
+            }
+
+            validatorsTemp = Files.createTempFile(getDirectory(), "model", TEMP_EXTENSION);
+            try (OutputStream os = Files.newOutputStream(validatorsTemp))
+            {
+                validators.store(os, null);
+            }
+
+            // the entry is only valid while the validators exist, so remove them before replacing the data
+            Path dataPath = getPath(uri, DATA_EXTENSION);
+            long dataSize = Files.size(dataTemp);
+            Files.deleteIfExists(getPath(uri, VALIDATORS_EXTENSION));
+            if (Files.exists(dataPath)) size.addAndGet(-Files.size(dataPath));
+            Files.move(dataTemp, dataPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dataTemp = null;
+            size.addAndGet(dataSize);
+            Files.move(validatorsTemp, getPath(uri, VALIDATORS_EXTENSION), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            validatorsTemp = null;
+            if (log.isDebugEnabled()) log.debug("Wrote {} statements of URI {} to disk cache", model.size(), uri);
+
+            if (size.get() > getMaxSize()) prune();
+        }
+        catch (IOException | RuntimeException ex) // RDFDataMgr throws RuntimeExceptions
+        {
+            if (log.isWarnEnabled()) log.warn("Could not write URI {} to disk cache: {}", uri, ex);
+        }
+        finally
+        {
+            // temporary files that were not moved into the cache
+            deleteTemp(dataTemp);
+            deleteTemp(validatorsTemp);
+        }
+    }
+
+    protected void deleteTemp(Path temp)
+    {
+        if (temp == null) return;
+
+        try
+        {
+            Files.deleteIfExists(temp);
+        }
+        catch (IOException ex)
+        {
+            if (log.isWarnEnabled()) log.warn("Could not delete temporary file {}: {}", temp, ex);
+        }
+    }
+
+    /**
+     * Removes the document from the cache.
+     *
+     * @param uri document URI
+     */
+    public void remove(String uri)
+    {
+        try
+        {
+            Files.deleteIfExists(getPath(uri, VALIDATORS_EXTENSION));
+            delete(getPath(uri, DATA_EXTENSION));
+        }
+        catch (IOException ex)
+        {
+            if (log.isWarnEnabled()) log.warn("Could not remove URI {} from disk cache: {}", uri, ex);
+        }
+    }
+
+    /**
+     * Deletes the entries with the oldest modification times until the data files fit into the size cap.
+     * The total size is recalculated from the directory, which also corrects for entries removed by other processes.
+     */
+    public synchronized void prune()
+    {
+        List<Path> dataPaths = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(getDirectory()))
+        {
+            paths.filter(path -> path.getFileName().toString().endsWith(DATA_EXTENSION)).forEach(dataPaths::add);
+        }
+        catch (IOException ex)
+        {
+            if (log.isWarnEnabled()) log.warn("Could not list disk cache directory: {}", ex);
+            return;
+        }
+
+        Map<Path, FileTime> times = new HashMap<>();
+        long total = 0;
+        for (Path dataPath : dataPaths)
+        {
+            try
+            {
+                total += Files.size(dataPath);
+                times.put(dataPath, Files.getLastModifiedTime(dataPath));
+            }
+            catch (IOException ex)
+            {
+                // removed concurrently
+            }
+        }
+        size.set(total);
+        if (total <= getMaxSize()) return;
+
+        List<Path> eldestFirst = new ArrayList<>(times.keySet());
+        eldestFirst.sort(Comparator.comparing(times::get));
+        for (Path dataPath : eldestFirst)
+        {
+            if (size.get() <= getMaxSize()) break;
+
+            String name = dataPath.getFileName().toString();
+            try
+            {
+                Files.deleteIfExists(dataPath.resolveSibling(name.substring(0, name.length() - DATA_EXTENSION.length()) + VALIDATORS_EXTENSION));
+                delete(dataPath);
+                if (log.isDebugEnabled()) log.debug("Pruned disk cache entry: {}", dataPath);
+            }
+            catch (IOException ex)
+            {
+                if (log.isWarnEnabled()) log.warn("Could not prune disk cache entry {}: {}", dataPath, ex);
+            }
+        }
+    }
+
+    /**
+     * Deletes data file and subtracts its size from the total.
+     *
+     * @param dataPath data file path
+     * @throws IOException if the file cannot be deleted
+     */
+    protected void delete(Path dataPath) throws IOException
+    {
+        long dataSize = Files.exists(dataPath) ? Files.size(dataPath) : 0;
+        if (Files.deleteIfExists(dataPath)) size.addAndGet(-dataSize);
+    }
+
+    /**
+     * Marks the data file as recently used.
+     *
+     * @param dataPath data file path
+     */
+    protected void touch(Path dataPath)
+    {
+        try
+        {
+            Files.setLastModifiedTime(dataPath, FileTime.fromMillis(System.currentTimeMillis()));
+        }
+        catch (IOException ex)
+        {
+            if (log.isDebugEnabled()) log.debug("Could not touch disk cache entry {}: {}", dataPath, ex);
+        }
+    }
+
+    /**
+     * Returns path of a cache file. File names are SHA-256 hashes of the URI.
+     *
+     * @param uri document URI
+     * @param extension file extension
+     * @return file path
+     */
+    protected Path getPath(String uri, String extension)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(uri.getBytes(StandardCharsets.UTF_8));
+            return getDirectory().resolve(String.format("%064x", new BigInteger(1, digest)) + extension);
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new IllegalStateException(ex); // SHA-256 is supported by every Java platform
+        }
+    }
+
+    public Path getDirectory()
+    {
+        return directory;
+    }
+
+    public long getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Returns the total size of the data files in bytes.
+     *
+     * @return size
+     */
+    public long getSize()
+    {
+        return size.get();
+    }
+
+}
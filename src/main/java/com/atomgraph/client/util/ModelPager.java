@@ -0,0 +1,173 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits large RDF model into pages of statements, so that only a window of the description is rendered.
+ * Statements of top-level subjects (URI resources and blank nodes that are not objects) are ordered by subject,
+ * property and object, which keeps the descriptions of subjects together and makes the paging stable.
+ * Blank nodes used as objects are included in the page together with their descriptions.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class ModelPager
+{
+
+    private static final Logger log = LoggerFactory.getLogger(ModelPager.class);
+
+    private static final Comparator<RDFNode> NODE_ORDER = Comparator.
+            comparing((RDFNode node) -> node.isAnon()).
+            thenComparing(node -> node.isAnon() ? node.asResource().getId().getLabelString() : node.toString());
+
+    private static final Comparator<Statement> STATEMENT_ORDER = Comparator.
+            comparing(Statement::getSubject, NODE_ORDER).
+            thenComparing(stmt -> stmt.getPredicate().getURI()).
+            thenComparing(Statement::getObject, NODE_ORDER);
+
+    private final Model model;
+    private final List<Statement> statements;
+
+    /**
+     * Constructs pager for the given model.
+     *
+     * @param model RDF model
+     */
+    public ModelPager(Model model)
+    {
+        if (model == null) throw new IllegalArgumentException("Model cannot be null");
+
+        this.model = model;
+        this.statements = getTopLevelStatements(model);
+    }
+
+    /**
+     * Returns statements of the subjects that are not nested as blank node objects, in the paging order.
+     *
+     * @param model RDF model
+     * @return sorted list of statements
+     */
+    protected List<Statement> getTopLevelStatements(Model model)
+    {
+        List<Statement> list = new ArrayList<>();
+
+        StmtIterator it = model.listStatements();
+        try
+        {
+            while (it.hasNext())
+            {
+                Statement stmt = it.next();
+                if (stmt.getSubject().isURIResource() || !model.contains(null, null, stmt.getSubject())) list.add(stmt);
+            }
+        }
+        finally
+        {
+            it.close();
+        }
+
+        list.sort(STATEMENT_ORDER);
+        return list;
+    }
+
+    /**
+     * Returns a page of the model.
+     *
+     * @param offset number of top-level statements to skip
+     * @param limit maximum number of top-level statements in the page
+     * @return page model
+     */
+    public Model getPage(long offset, long limit)
+    {
+        if (offset < 0) throw new IllegalArgumentException("Offset cannot be negative");
+        if (limit < 0) throw new IllegalArgumentException("Limit cannot be negative");
+
+        Model page = ModelFactory.createDefaultModel();
+        page.setNsPrefixes(getModel().getNsPrefixMap());
+
+        int fromIndex = (int)Math.min(offset, getStatements().size());
+        int toIndex = fromIndex + (int)Math.min(limit, getStatements().size() - fromIndex); // offset + limit can overflow
+        Set<Resource> visited = new HashSet<>();
+        for (Statement stmt : getStatements().subList(fromIndex, toIndex))
+        {
+            page.add(stmt);
+            if (stmt.getObject().isAnon()) addDescription(stmt.getResource(), page, visited);
+        }
+
+        if (log.isDebugEnabled()) log.debug("Paged Model statements {}-{} out of {}; page size: {}", fromIndex, toIndex, getStatements().size(), page.size());
+        return page;
+    }
+
+    /**
+     * Adds the description of a nested blank node to the page, including its own nested blank nodes.
+     *
+     * @param resource blank node
+     * @param page page model
+     * @param visited blank nodes already added
+     */
+    protected void addDescription(Resource resource, Model page, Set<Resource> visited)
+    {
+        if (!visited.add(resource)) return;
+
+        StmtIterator it = getModel().listStatements(resource, null, (RDFNode)null);
+        try
+        {
+            while (it.hasNext())
+            {
+                Statement stmt = it.next();
+                page.add(stmt);
+                if (stmt.getObject().isAnon()) addDescription(stmt.getResource(), page, visited);
+            }
+        }
+        finally
+        {
+            it.close();
+        }
+    }
+
+    /**
+     * Returns the total number of top-level statements that are paged.
+     *
+     * @return statement count
+     */
+    public long getCount()
+    {
+        return getStatements().size();
+    }
+
+    public Model getModel()
+    {
+        return model;
+    }
+
+    protected List<Statement> getStatements()
+    {
+        return statements;
+    }
+
+}
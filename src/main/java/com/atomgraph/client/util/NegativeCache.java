@@ -0,0 +1,235 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.SSLException;
+import javax.ws.rs.core.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of URIs that could not be resolved.
+ * Failures are remembered for a time-to-live that depends on their class, so that known-bad URIs
+ * (dead links, non-RDF documents) fail instantly instead of being dereferenced again on every transformation.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class NegativeCache
+{
+
+    private static final Logger log = LoggerFactory.getLogger(NegativeCache.class);
+
+    /** Default maximum number of remembered failures */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    /**
+     * Classes of resolution failures.
+     */
+    public enum FailureClass
+    {
+        /** 4xx response */
+        CLIENT_ERROR,
+        /** 5xx response */
+        SERVER_ERROR,
+        /** connect or read timeout */
+        TIMEOUT,
+        /** unknown host or refused connection */
+        CONNECTION_ERROR,
+        /** TLS handshake or certificate error */
+        TLS_ERROR,
+        /** other I/O error, e.g. while reading the response entity */
+        READ_ERROR,
+        /** response media type is not accepted */
+        UNSUPPORTED_MEDIA_TYPE
+    }
+
+    private final Map<FailureClass, Long> ttls;
+    private final int maxSize;
+    private final Map<String, Failure> failures = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+
+    public NegativeCache(Map<FailureClass, Long> ttls)
+    {
+        this(ttls, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructs cache.
+     *
+     * @param ttls time-to-live in milliseconds per failure class. Failures of classes without TTL are not cached.
+     * @param maxSize maximum number of remembered failures
+     */
+    public NegativeCache(Map<FailureClass, Long> ttls, int maxSize)
+    {
+        if (ttls == null) throw new IllegalArgumentException("TTL Map cannot be null");
+        if (maxSize <= 0) throw new IllegalArgumentException("Max size must be positive");
+
+        this.ttls = new EnumMap<>(FailureClass.class);
+        this.ttls.putAll(ttls);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the failure class of a response status.
+     *
+     * @param status response status
+     * @return failure class, or null if the status is not an error
+     */
+    public static FailureClass getFailureClass(Response.StatusType status)
+    {
+        switch (status.getFamily())
+        {
+            case CLIENT_ERROR:
+                return FailureClass.CLIENT_ERROR;
+            case SERVER_ERROR:
+                return FailureClass.SERVER_ERROR;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the failure class of a client exception, based on its causes.
+     *
+     * @param ex exception thrown while sending the request or reading the response
+     * @return failure class
+     */
+    public static FailureClass getFailureClass(Throwable ex)
+    {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause())
+        {
+            if (cause instanceof SocketTimeoutException) return FailureClass.TIMEOUT;
+            if (cause instanceof UnknownHostException || cause instanceof ConnectException || cause instanceof NoRouteToHostException) return FailureClass.CONNECTION_ERROR;
+            if (cause instanceof SSLException) return FailureClass.TLS_ERROR;
+        }
+
+        return FailureClass.READ_ERROR;
+    }
+
+    /**
+     * Returns the remembered failure of the URI.
+     *
+     * @param uri document URI
+     * @return failure, or null if the URI is not known to fail
+     */
+    public Failure get(String uri)
+    {
+        Failure failure = failures.get(uri);
+        if (failure == null) return null;
+
+        if (failure.isExpired())
+        {
+            failures.remove(uri, failure);
+            return null;
+        }
+
+        hits.increment();
+        return failure;
+    }
+
+    /**
+     * Remembers failure of the URI, if its class has a TTL.
+     *
+     * @param uri document URI
+     * @param failureClass failure class
+     * @param message failure message
+     */
+    public void put(String uri, FailureClass failureClass, String message)
+    {
+        if (uri == null) throw new IllegalArgumentException("URI cannot be null");
+        if (failureClass == null) throw new IllegalArgumentException("FailureClass cannot be null");
+
+        Long ttl = ttls.get(failureClass);
+        if (ttl == null || ttl <= 0) return;
+
+        if (failures.size() >= getMaxSize())
+        {
+            failures.values().removeIf(Failure::isExpired);
+            if (failures.size() >= getMaxSize())
+            {
+                if (log.isDebugEnabled()) log.debug("Negative cache is full, not caching failure of URI: {}", uri);
+                return;
+            }
+        }
+
+        failures.put(uri, new Failure(failureClass, message, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl)));
+        if (log.isDebugEnabled()) log.debug("Caching {} failure of URI {} for {} ms", failureClass, uri, ttl);
+    }
+
+    /**
+     * Returns the number of lookups that found a failure.
+     *
+     * @return hit count
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    public int size()
+    {
+        return failures.size();
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Remembered failure.
+     */
+    public static class Failure
+    {
+
+        private final FailureClass failureClass;
+        private final String message;
+        private final long expiresAt;
+
+        protected Failure(FailureClass failureClass, String message, long expiresAt)
+        {
+            this.failureClass = failureClass;
+            this.message = message;
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean isExpired()
+        {
+            return System.nanoTime() - expiresAt >= 0;
+        }
+
+        public FailureClass getFailureClass()
+        {
+            return failureClass;
+        }
+
+        public String getMessage()
+        {
+            return message;
+        }
+
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.jena.ext.com.google.common.collect.Interner;
+import org.apache.jena.ext.com.google.common.collect.Interners;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.core.Quad;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide dictionary of interned RDF nodes.
+ * URIs and short literals are replaced with a canonical instance, so that models parsed from different documents
+ * share the same node objects (and their strings). The dictionary holds the nodes weakly,
+ * so nodes that are no longer used by any model are garbage-collected.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class NodeInterner
+{
+
+    private static final Logger log = LoggerFactory.getLogger(NodeInterner.class);
+
+    /** Maximum lexical form length of interned literals */
+    public static final int DEFAULT_MAX_LITERAL_LENGTH = 64;
+
+    private static final NodeInterner INSTANCE = new NodeInterner(DEFAULT_MAX_LITERAL_LENGTH);
+
+    private final Interner<Node> interner = Interners.newWeakInterner();
+    private final int maxLiteralLength;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    /**
+     * Constructs interner.
+     *
+     * @param maxLiteralLength maximum lexical form length of interned literals
+     */
+    public NodeInterner(int maxLiteralLength)
+    {
+        this.maxLiteralLength = maxLiteralLength;
+    }
+
+    /**
+     * Returns the process-wide interner.
+     *
+     * @return interner instance
+     */
+    public static NodeInterner get()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the canonical instance of a node. Blank nodes and long literals are returned as they are.
+     *
+     * @param node RDF node
+     * @return interned node
+     */
+    public Node intern(Node node)
+    {
+        if (node == null || !(node.isURI() || (node.isLiteral() && node.getLiteralLexicalForm().length() <= getMaxLiteralLength()))) return node;
+
+        lookups.increment();
+        Node interned = interner.intern(node);
+        if (interned != node)
+        {
+            hits.increment();
+            bytesSaved.add(estimateSize(node));
+        }
+
+        return interned;
+    }
+
+    /**
+     * Returns triple with interned nodes.
+     *
+     * @param triple RDF triple
+     * @return the same triple if its nodes are already interned, otherwise a new triple
+     */
+    public Triple intern(Triple triple)
+    {
+        Node s = intern(triple.getSubject()), p = intern(triple.getPredicate()), o = intern(triple.getObject());
+        if (s == triple.getSubject() && p == triple.getPredicate() && o == triple.getObject()) return triple;
+
+        return Triple.create(s, p, o);
+    }
+
+    /**
+     * Returns quad with interned nodes.
+     *
+     * @param quad RDF quad
+     * @return the same quad if its nodes are already interned, otherwise a new quad
+     */
+    public Quad intern(Quad quad)
+    {
+        Node g = intern(quad.getGraph()), s = intern(quad.getSubject()), p = intern(quad.getPredicate()), o = intern(quad.getObject());
+        if (g == quad.getGraph() && s == quad.getSubject() && p == quad.getPredicate() && o == quad.getObject()) return quad;
+
+        return Quad.create(g, s, p, o);
+    }
+
+    /**
+     * Estimates the heap size of a node that is replaced by its interned instance:
+     * the node object, its label, and the string with Latin-1 compact encoding.
+     *
+     * @param node RDF node
+     * @return approximate size in bytes
+     */
+    protected long estimateSize(Node node)
+    {
+        if (node.isURI()) return 56 + node.getURI().length();
+
+        return 96 + node.getLiteralLexicalForm().length();
+    }
+
+    public int getMaxLiteralLength()
+    {
+        return maxLiteralLength;
+    }
+
+    /**
+     * Returns the number of interned nodes that were looked up.
+     *
+     * @return lookup count
+     */
+    public long getLookups()
+    {
+        return lookups.sum();
+    }
+
+    /**
+     * Returns the number of nodes that were replaced with an existing instance.
+     *
+     * @return hit count
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the estimated number of bytes saved by replacing duplicate nodes.
+     *
+     * @return saved bytes
+     */
+    public long getBytesSaved()
+    {
+        return bytesSaved.sum();
+    }
+
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import com.atomgraph.client.io.InterningStreamRDF;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Model cache that keeps models off the Java heap.
+ * Models are encoded as RDF Thrift into direct byte buffers, which are not scanned by the garbage collector.
+ * They are decoded lazily when they are read; recently used models are kept decoded on the heap,
+ * so that frequently used models (e.g. system ontologies) keep their identity and are not decoded on every read.
+ * The decoded models are bounded by the total size of their encodings, which is proportional to their heap size.
+ * <p>
+ * Decoded models are copies: changes to a model returned from this cache are not stored unless it is put again.
+ * Direct buffers of replaced or removed models are released when they are garbage-collected.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class OffHeapModelCache extends AbstractMap<String, Model>
+{
+
+    private static final Logger log = LoggerFactory.getLogger(OffHeapModelCache.class);
+
+    /** Default maximum encoded size of the models kept decoded on the heap */
+    public static final long DEFAULT_MAX_DECODED_BYTES = 16L << 20;
+
+    private final Map<String, ByteBuffer> buffers = new ConcurrentHashMap<>();
+    private final WeightedCache<String, Model> decoded;
+    private final AtomicLong offHeapBytes = new AtomicLong();
+    private final LongAdder decodes = new LongAdder();
+
+    public OffHeapModelCache()
+    {
+        this(DEFAULT_MAX_DECODED_BYTES);
+    }
+
+    /**
+     * Constructs cache.
+     *
+     * @param maxDecodedBytes maximum total encoded size of the models kept decoded on the heap
+     */
+    public OffHeapModelCache(final long maxDecodedBytes)
+    {
+        if (maxDecodedBytes < 0) throw new IllegalArgumentException("Max decoded bytes cannot be negative");
+
+        this.decoded = new WeightedCache<>(maxDecodedBytes);
+    }
+
+    @Override
+    public Model get(Object key)
+    {
+        if (!(key instanceof String)) return null;
+        
+        Model model = decoded.get((String)key);
+        if (model != null) return model;
+
+        ByteBuffer buffer = buffers.get(key);
+        if (buffer == null) return null;
+
+        model = decode(buffer);
+        decodes.increment();
+        if (log.isDebugEnabled()) log.debug("Decoded {} statements of Model {} from off-heap buffer", model.size(), key);
+
+        Model existing = decoded.putIfAbsent((String)key, model, buffer.capacity()); // another thread might have decoded it meanwhile
+        return existing != null ? existing : model;
+    }
+
+    /**
+     * Puts model into the cache.
+     * If the key was cached, the previous model is returned, which is decoded if it is not on the heap.
+     *
+     * @param key key
+     * @param model RDF model
+     * @return previous model, or null
+     */
+    @Override
+    public Model put(String key, Model model)
+    {
+        if (key == null) throw new IllegalArgumentException("Key cannot be null");
+        if (model == null) throw new IllegalArgumentException("Model cannot be null");
+
+        ByteBuffer buffer = encode(model);
+        ByteBuffer previous = buffers.put(key, buffer);
+        offHeapBytes.addAndGet(buffer.capacity() - (previous != null ? previous.capacity() : 0));
+        if (log.isDebugEnabled()) log.debug("Encoded {} statements of Model {} into {} off-heap bytes", model.size(), key, buffer.capacity());
+
+        Model previousModel = decoded.put(key, model, buffer.capacity()); // the model that was put is the decoded view
+        if (previousModel == null && previous != null) previousModel = decode(previous);
+        return previousModel;
+    }
+
+    /**
+     * Removes model from the cache.
+     * The removed model is returned, which is decoded if it is not on the heap.
+     *
+     * @param key key
+     * @return removed model, or null
+     */
+    @Override
+    public Model remove(Object key)
+    {
+        if (!(key instanceof String)) return null;
+        
+        Model previousModel = decoded.remove((String)key);
+        ByteBuffer previous = buffers.remove(key);
+        if (previous == null) return null;
+        
+        offHeapBytes.addAndGet(-previous.capacity());
+        return previousModel != null ? previousModel : decode(previous);
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return buffers.containsKey(key);
+    }
+
+    @Override
+    public int size()
+    {
+        return buffers.size();
+    }
+
+    @Override
+    public void clear()
+    {
+        decoded.clear();
+
+        buffers.clear();
+        offHeapBytes.set(0);
+    }
+
+    @Override
+    public Set<String> keySet()
+    {
+        return buffers.keySet();
+    }
+
+    /**
+     * Returns the entries of the cache. Models are decoded when the entries are read, which can be expensive.
+     *
+     * @return set of entries
+     */
+    @Override
+    public Set<Map.Entry<String, Model>> entrySet()
+    {
+        return new AbstractSet<Map.Entry<String, Model>>()
+        {
+            @Override
+            public Iterator<Map.Entry<String, Model>> iterator()
+            {
+                Iterator<String> keys = buffers.keySet().iterator();
+                return new Iterator<Map.Entry<String, Model>>()
+                {
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return keys.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, Model> next()
+                    {
+                        String key = keys.next();
+                        return new AbstractMap.SimpleImmutableEntry<>(key, get(key));
+                    }
+                };
+            }
+
+            @Override
+            public int size()
+            {
+                return buffers.size();
+            }
+        };
+    }
+
+    /**
+     * Encodes model as RDF Thrift into a read-only direct buffer.
+     *
+     * @param model RDF model
+     * @return byte buffer
+     */
+    protected ByteBuffer encode(Model model)
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        RDFDataMgr.write(stream, model, RDFFormat.RDF_THRIFT);
+        byte[] bytes = stream.toByteArray();
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Decodes RDF Thrift from buffer. The nodes of the decoded model are interned.
+     *
+     * @param buffer byte buffer
+     * @return RDF model
+     */
+    protected Model decode(ByteBuffer buffer)
+    {
+        Model model = ModelFactory.createDefaultModel();
+        RDFParser.create().
+            lang(Lang.RDFTHRIFT).
+            source(new ByteBufferInputStream(buffer.duplicate())).
+            build().
+            parse(new InterningStreamRDF(StreamRDFLib.graph(model.getGraph()), NodeInterner.get()));
+        return model;
+    }
+
+    /**
+     * Returns the total size of encoded models.
+     *
+     * @return number of off-heap bytes
+     */
+    public long getOffHeapBytes()
+    {
+        return offHeapBytes.get();
+    }
+
+    /**
+     * Returns the total encoded size of the models kept decoded on the heap.
+     *
+     * @return number of bytes
+     */
+    public long getDecodedBytes()
+    {
+        return decoded.getWeight();
+    }
+
+    /**
+     * Returns the number of times a model was decoded from its buffer.
+     *
+     * @return decode count
+     */
+    public long getDecodes()
+    {
+        return decodes.sum();
+    }
+
+    /**
+     * Input stream that reads the remaining bytes of a buffer.
+     */
+    protected static class ByteBufferInputStream extends InputStream
+    {
+
+        private final ByteBuffer buffer;
+
+        public ByteBufferInputStream(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException
+        {
+            if (length == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException
+        {
+            return buffer.remaining();
+        }
+
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Time budget for dereferencing external documents during a single XSLT transformation.
+ * The deadline starts when the budget is created; once it has passed, fetches are skipped.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class ResolutionBudget
+{
+
+    private final long deadline;
+    private final AtomicInteger skipped = new AtomicInteger();
+
+    /**
+     * Constructs budget.
+     *
+     * @param budget total time in milliseconds
+     */
+    public ResolutionBudget(long budget)
+    {
+        if (budget < 0) throw new IllegalArgumentException("Budget cannot be negative");
+
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget);
+    }
+
+    /**
+     * Returns true if the deadline has passed.
+     *
+     * @return true if spent
+     */
+    public boolean isExpired()
+    {
+        return getRemaining() <= 0;
+    }
+
+    /**
+     * Returns the time left until the deadline.
+     *
+     * @return milliseconds, negative if the deadline has passed
+     */
+    public long getRemaining()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+
+    /**
+     * Records a fetch that was skipped because the budget was spent.
+     */
+    public void skip()
+    {
+        skipped.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of skipped fetches.
+     *
+     * @return skip count
+     */
+    public int getSkipped()
+    {
+        return skipped.get();
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.sparql.engine.ResultSetStream;
+import org.apache.jena.sparql.engine.binding.Binding;
+
+/**
+ * SPARQL results that are read in fixed-size chunks of rows during a transformation.
+ * Only one chunk is held in memory at a time, and the output is flushed before the next chunk is read.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ * @see com.atomgraph.client.writer.function.NextResults
+ */
+public class ResultSetChunks
+{
+
+    private final ResultSet results;
+    private final int chunkSize;
+    private final Flushable output;
+
+    /**
+     * Constructs chunks from SPARQL results.
+     *
+     * @param results SPARQL results
+     * @param chunkSize number of rows per chunk
+     * @param output transformation output, flushed before each chunk is read
+     */
+    public ResultSetChunks(ResultSet results, int chunkSize, Flushable output)
+    {
+        if (results == null) throw new IllegalArgumentException("ResultSet cannot be null");
+        if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive");
+        if (output == null) throw new IllegalArgumentException("Output cannot be null");
+
+        this.results = results;
+        this.chunkSize = chunkSize;
+        this.output = output;
+    }
+
+    /**
+     * Flushes the output of the previous chunk and reads the next chunk of rows.
+     *
+     * @return results of the next chunk, or null if all rows have been read
+     * @throws IOException if the output could not be flushed
+     */
+    public ResultSet next() throws IOException
+    {
+        getOutput().flush();
+
+        List<Binding> bindings = new ArrayList<>(getChunkSize());
+        while (getResultSet().hasNext() && bindings.size() < getChunkSize()) bindings.add(getResultSet().nextBinding());
+        if (bindings.isEmpty()) return null;
+
+        return new ResultSetStream(getResultSet().getResultVars(), getResultSet().getResourceModel(), bindings.iterator());
+    }
+
+    public ResultSet getResultSet()
+    {
+        return results;
+    }
+
+    public int getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    public Flushable getOutput()
+    {
+        return output;
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.util.List;
+import net.sf.saxon.event.EventSource;
+import net.sf.saxon.event.Receiver;
+import net.sf.saxon.event.ReceiverOption;
+import net.sf.saxon.expr.parser.Loc;
+import net.sf.saxon.lib.NamespaceConstant;
+import net.sf.saxon.om.AttributeInfo;
+import net.sf.saxon.om.AttributeMap;
+import net.sf.saxon.om.EmptyAttributeMap;
+import net.sf.saxon.om.FingerprintedQName;
+import net.sf.saxon.om.NamespaceMap;
+import net.sf.saxon.om.NodeName;
+import net.sf.saxon.om.NoNamespaceName;
+import net.sf.saxon.om.SingletonAttributeMap;
+import net.sf.saxon.trans.XPathException;
+import net.sf.saxon.type.BuiltInAtomicType;
+import net.sf.saxon.type.Untyped;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+
+/**
+ * XML source that feeds SPARQL results to Saxon as SPARQL Query Results XML Format events.
+ * Avoids serializing results to XML text and parsing it back. The results are consumed when the source is read.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ * @see <a href="https://www.w3.org/TR/rdf-sparql-XMLres/">SPARQL Query Results XML Format</a>
+ */
+public class ResultSetSource extends EventSource
+{
+
+    /** SPARQL Query Results XML Format namespace */
+    public static final String NS = "http://www.w3.org/2005/sparql-results#";
+
+    private static final NamespaceMap NAMESPACES = NamespaceMap.of("", NS);
+    private static final NodeName NAME = new NoNamespaceName("name");
+    private static final NodeName DATATYPE = new NoNamespaceName("datatype");
+    private static final NodeName XML_LANG = new FingerprintedQName("xml", NamespaceConstant.XML, "lang");
+
+    private final ResultSet results;
+
+    /**
+     * Constructs source from SPARQL results.
+     *
+     * @param results SPARQL results
+     * @param systemId system ID (usually origin URI) of the source
+     */
+    public ResultSetSource(ResultSet results, String systemId)
+    {
+        if (results == null) throw new IllegalArgumentException("ResultSet cannot be null");
+
+        this.results = results;
+        setSystemId(systemId);
+    }
+
+    @Override
+    public void send(Receiver out) throws XPathException
+    {
+        List<String> vars = getResultSet().getResultVars();
+
+        out.setSystemId(getSystemId());
+        out.open();
+        out.startDocument(ReceiverOption.NONE);
+        startElement(out, "sparql", EmptyAttributeMap.getInstance());
+
+        startElement(out, "head", EmptyAttributeMap.getInstance());
+        for (String var : vars)
+        {
+            startElement(out, "variable", getAttributes(NAME, var));
+            out.endElement();
+        }
+        out.endElement();
+
+        startElement(out, "results", EmptyAttributeMap.getInstance());
+        while (getResultSet().hasNext())
+        {
+            Binding binding = getResultSet().nextBinding();
+
+            startElement(out, "result", EmptyAttributeMap.getInstance());
+            for (String var : vars)
+            {
+                Node node = binding.get(Var.alloc(var));
+                if (node != null)
+                {
+                    startElement(out, "binding", getAttributes(NAME, var));
+                    sendNode(out, node);
+                    out.endElement();
+                }
+            }
+            out.endElement();
+        }
+        out.endElement();
+
+        out.endElement();
+        out.endDocument();
+        out.close();
+    }
+
+    /**
+     * Sends RDF term as <code>uri</code>, <code>bnode</code> or <code>literal</code> element.
+     *
+     * @param out event receiver
+     * @param node RDF term
+     * @throws XPathException
+     */
+    protected void sendNode(Receiver out, Node node) throws XPathException
+    {
+        if (node.isURI())
+        {
+            startElement(out, "uri", EmptyAttributeMap.getInstance());
+            out.characters(node.getURI(), Loc.NONE, ReceiverOption.NONE);
+            out.endElement();
+        }
+        if (node.isBlank())
+        {
+            startElement(out, "bnode", EmptyAttributeMap.getInstance());
+            out.characters(node.getBlankNodeLabel(), Loc.NONE, ReceiverOption.NONE);
+            out.endElement();
+        }
+        if (node.isLiteral())
+        {
+            AttributeMap attributes = EmptyAttributeMap.getInstance();
+            if (!node.getLiteralLanguage().isEmpty()) attributes = getAttributes(XML_LANG, node.getLiteralLanguage());
+            else if (!node.getLiteralDatatypeURI().equals(XSDDatatype.XSDstring.getURI())) attributes = getAttributes(DATATYPE, node.getLiteralDatatypeURI());
+
+            startElement(out, "literal", attributes);
+            out.characters(node.getLiteralLexicalForm(), Loc.NONE, ReceiverOption.NONE);
+            out.endElement();
+        }
+    }
+
+    protected void startElement(Receiver out, String localName, AttributeMap attributes) throws XPathException
+    {
+        out.startElement(new FingerprintedQName("", NS, localName), Untyped.getInstance(), attributes, NAMESPACES, Loc.NONE, ReceiverOption.NONE);
+    }
+
+    protected AttributeMap getAttributes(NodeName name, String value)
+    {
+        return SingletonAttributeMap.of(new AttributeInfo(name, BuiltInAtomicType.UNTYPED_ATOMIC, value, Loc.NONE, ReceiverOption.NONE));
+    }
+
+    public ResultSet getResultSet()
+    {
+        return results;
+    }
+
+}
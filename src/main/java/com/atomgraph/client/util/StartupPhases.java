@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs independent application startup phases concurrently and measures them.
+ * Phases are either submitted to run in the background or run on the calling thread.
+ * Failures are logged together with the name of the phase.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class StartupPhases
+{
+
+    private static final Logger log = LoggerFactory.getLogger(StartupPhases.class);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Long> times = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final List<Future<?>> futures = new ArrayList<>();
+    private final long start = System.nanoTime();
+
+    /**
+     * Starts phase in the background.
+     *
+     * @param <T> result type
+     * @param name phase name
+     * @param task phase task
+     * @return future result
+     */
+    public <T> Future<T> submit(String name, Callable<T> task)
+    {
+        Future<T> future = executor.submit(() -> time(name, task));
+        futures.add(future);
+        return future;
+    }
+
+    /**
+     * Runs phase on the calling thread.
+     *
+     * @param <T> result type
+     * @param name phase name
+     * @param task phase task
+     * @return result
+     * @throws Exception if the task fails
+     */
+    public <T> T run(String name, Callable<T> task) throws Exception
+    {
+        return time(name, task);
+    }
+
+    protected <T> T time(String name, Callable<T> task) throws Exception
+    {
+        long phaseStart = System.nanoTime();
+        try
+        {
+            return task.call();
+        }
+        catch (Exception ex)
+        {
+            if (log.isErrorEnabled()) log.error("Startup phase '{}' failed", name, ex);
+            throw ex;
+        }
+        finally
+        {
+            long time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - phaseStart);
+            times.put(name, time);
+            if (log.isDebugEnabled()) log.debug("Startup phase '{}' took {} ms", name, time);
+        }
+    }
+
+    /**
+     * Waits for the background phases to finish and logs the timing report.
+     * Failures of the phases are reported by their futures.
+     *
+     * @return times in milliseconds per phase
+     */
+    public Map<String, Long> await()
+    {
+        try
+        {
+            for (Future<?> future : futures)
+                try
+                {
+                    future.get();
+                }
+                catch (ExecutionException ex)
+                {
+                    // the failure is handled by the owner of the future
+                }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        if (log.isInfoEnabled()) log.info("Started up in {} ms, phases (ms): {}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), getTimes());
+        return getTimes();
+    }
+
+    /**
+     * Returns the times of the finished phases.
+     *
+     * @return times in milliseconds per phase
+     */
+    public Map<String, Long> getTimes()
+    {
+        synchronized (times)
+        {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(times));
+        }
+    }
+
+}
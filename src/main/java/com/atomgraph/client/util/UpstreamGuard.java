@@ -0,0 +1,330 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-host bulkheads and circuit breakers for requests to upstream hosts.
+ * Each host gets a limited number of concurrent requests, so that a slow host cannot occupy all request threads.
+ * After a number of consecutive failures the circuit of the host opens and its requests are rejected
+ * without being sent. Once the open duration has passed, a single probe request is let through (half-open state):
+ * its success closes the circuit, its failure opens it again.
+ * <p>
+ * Requests are never queued: callers that are rejected are expected to degrade, e.g. to an empty document.
+ * <p>
+ * Hosts with a closed circuit that have not been requested for the idle timeout are evicted, so that the number
+ * of tracked hosts stays bounded by the recently used ones.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class UpstreamGuard
+{
+
+    private static final Logger log = LoggerFactory.getLogger(UpstreamGuard.class);
+
+    /** Default number of consecutive failures that open the circuit */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    /** Default time in milliseconds after which an open circuit lets a probe request through */
+    public static final long DEFAULT_OPEN_DURATION = 30000L;
+    /** Default time in milliseconds after which an idle host with a closed circuit is evicted */
+    public static final long DEFAULT_IDLE_TIMEOUT = 600000L;
+
+    /**
+     * Circuit states.
+     */
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int maxConcurrency, failureThreshold;
+    private final long openDuration, idleTimeout;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final LongAdder rejections = new LongAdder();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+    /**
+     * Constructs guard with the default idle timeout.
+     *
+     * @param maxConcurrency maximum number of concurrent requests per host
+     * @param failureThreshold number of consecutive failures that open the circuit of a host
+     * @param openDuration time in milliseconds after which an open circuit is probed
+     */
+    public UpstreamGuard(int maxConcurrency, int failureThreshold, long openDuration)
+    {
+        this(maxConcurrency, failureThreshold, openDuration, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Constructs guard.
+     *
+     * @param maxConcurrency maximum number of concurrent requests per host
+     * @param failureThreshold number of consecutive failures that open the circuit of a host
+     * @param openDuration time in milliseconds after which an open circuit is probed
+     * @param idleTimeout time in milliseconds after which an idle host with a closed circuit is evicted
+     */
+    public UpstreamGuard(int maxConcurrency, int failureThreshold, long openDuration, long idleTimeout)
+    {
+        if (maxConcurrency <= 0) throw new IllegalArgumentException("Max concurrency must be positive");
+        if (failureThreshold <= 0) throw new IllegalArgumentException("Failure threshold must be positive");
+        if (openDuration < 0) throw new IllegalArgumentException("Open duration cannot be negative");
+        if (idleTimeout < 0) throw new IllegalArgumentException("Idle timeout cannot be negative");
+
+        this.maxConcurrency = maxConcurrency;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Acquires a permit for a request to the host. A successful call must be followed by {@link #release(String, boolean)}.
+     *
+     * @param host host name
+     * @return true if the request may be sent, false if the circuit is open or the bulkhead is full
+     */
+    public boolean tryAcquire(String host)
+    {
+        evictIdle();
+        Host state = getHost(host);
+
+        if (!state.allowRequest())
+        {
+            rejections.increment();
+            if (log.isDebugEnabled()) log.debug("Circuit of host {} is open, rejecting request", host);
+            return false;
+        }
+
+        if (!state.getBulkhead().tryAcquire())
+        {
+            state.abortProbe();
+            rejections.increment();
+            if (log.isDebugEnabled()) log.debug("Bulkhead of host {} is full ({} concurrent requests), rejecting request", host, getMaxConcurrency());
+            return false;
+        }
+
+        if (!state.touch()) // evicted meanwhile, acquire from the new instance of the host
+        {
+            state.getBulkhead().release();
+            return tryAcquire(host);
+        }
+
+        return true;
+    }
+
+    /**
+     * Releases the permit of a request and records its outcome.
+     *
+     * @param host host name
+     * @param success true if the host responded successfully
+     */
+    public void release(String host, boolean success)
+    {
+        Host state = getHost(host);
+        state.getBulkhead().release();
+
+        if (success) state.recordSuccess();
+        else state.recordFailure();
+    }
+
+    /**
+     * Releases the permit of a request without recording its outcome, e.g. if the request was cut short by the caller.
+     * A probe request that is released this way lets the next request probe instead.
+     *
+     * @param host host name
+     */
+    public void release(String host)
+    {
+        Host state = getHost(host);
+        state.getBulkhead().release();
+        state.abortProbe();
+    }
+
+    /**
+     * Returns the circuit state of the host.
+     *
+     * @param host host name
+     * @return circuit state
+     */
+    public State getState(String host)
+    {
+        return getHost(host).getState();
+    }
+
+    protected Host getHost(String host)
+    {
+        if (host == null) throw new IllegalArgumentException("Host cannot be null");
+
+        return hosts.computeIfAbsent(host, Host::new);
+    }
+
+    /**
+     * Evicts hosts with a closed circuit and no requests in flight that have been idle for the idle timeout.
+     * Hosts are swept at most once per idle timeout.
+     */
+    protected void evictIdle()
+    {
+        long now = System.nanoTime(), last = lastSweep.get();
+        if (now - last < TimeUnit.MILLISECONDS.toNanos(getIdleTimeout()) || !lastSweep.compareAndSet(last, now)) return;
+
+        hosts.values().removeIf(Host::evict);
+    }
+
+    /**
+     * Returns the number of tracked hosts.
+     *
+     * @return host count
+     */
+    public int getHostCount()
+    {
+        return hosts.size();
+    }
+
+    /**
+     * Returns the number of rejected requests.
+     *
+     * @return rejection count
+     */
+    public long getRejections()
+    {
+        return rejections.sum();
+    }
+
+    public int getMaxConcurrency()
+    {
+        return maxConcurrency;
+    }
+
+    public int getFailureThreshold()
+    {
+        return failureThreshold;
+    }
+
+    public long getOpenDuration()
+    {
+        return openDuration;
+    }
+
+    public long getIdleTimeout()
+    {
+        return idleTimeout;
+    }
+
+    /**
+     * Bulkhead and circuit of a single host.
+     */
+    protected class Host
+    {
+
+        private final String name;
+        private final Semaphore bulkhead = new Semaphore(getMaxConcurrency());
+        private State state = State.CLOSED;
+        private int failures;
+        private long openedAt;
+        private long usedAt = System.nanoTime();
+        private boolean evicted;
+
+        protected Host(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Marks the host as used. Must be called after a permit is acquired, so that eviction either sees the permit
+         * or is seen by this call.
+         *
+         * @return false if the host has been evicted and must not be used
+         */
+        protected synchronized boolean touch()
+        {
+            usedAt = System.nanoTime();
+            return !evicted;
+        }
+
+        /**
+         * Marks the host as evicted if its circuit is closed and it has been idle for the idle timeout.
+         *
+         * @return true if the host was evicted
+         */
+        protected synchronized boolean evict()
+        {
+            evicted = state == State.CLOSED && getBulkhead().availablePermits() == getMaxConcurrency() &&
+                System.nanoTime() - usedAt >= TimeUnit.MILLISECONDS.toNanos(getIdleTimeout());
+            return evicted;
+        }
+
+        protected synchronized boolean allowRequest()
+        {
+            switch (state)
+            {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (System.nanoTime() - openedAt < TimeUnit.MILLISECONDS.toNanos(getOpenDuration())) return false;
+
+                    state = State.HALF_OPEN; // let a single probe through
+                    if (log.isDebugEnabled()) log.debug("Probing host {}", name);
+                    return true;
+                default:
+                    return false; // probe in flight
+            }
+        }
+
+        /**
+         * Returns to the open state if the probe could not be sent, so that the next request probes instead.
+         */
+        protected synchronized void abortProbe()
+        {
+            if (state == State.HALF_OPEN) state = State.OPEN;
+        }
+
+        protected synchronized void recordSuccess()
+        {
+            if (state != State.CLOSED && log.isInfoEnabled()) log.info("Host {} recovered, closing its circuit", name);
+
+            state = State.CLOSED;
+            failures = 0;
+        }
+
+        protected synchronized void recordFailure()
+        {
+            failures++;
+
+            if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= getFailureThreshold()))
+            {
+                if (log.isWarnEnabled()) log.warn("Host {} failed {} consecutive times, opening its circuit for {} ms", name, failures, getOpenDuration());
+                state = State.OPEN;
+                openedAt = System.nanoTime();
+            }
+        }
+
+        protected synchronized State getState()
+        {
+            return state;
+        }
+
+        protected Semaphore getBulkhead()
+        {
+            return bulkhead;
+        }
+
+    }
+
+}
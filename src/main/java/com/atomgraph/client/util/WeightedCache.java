@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache bounded by the total weight (usually the size in bytes) of its values.
+ * When a put exceeds the maximum weight, the least recently used entries are evicted.
+ * Values heavier than the maximum weight are not cached at all.
+ * All methods are synchronized.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class WeightedCache<K, V>
+{
+
+    private final long maxWeight;
+    private final Map<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    /**
+     * Constructs cache.
+     *
+     * @param maxWeight maximum total weight of the values
+     */
+    public WeightedCache(long maxWeight)
+    {
+        if (maxWeight < 0) throw new IllegalArgumentException("Max weight cannot be negative");
+
+        this.maxWeight = maxWeight;
+    }
+
+    public synchronized V get(K key)
+    {
+        Entry<V> entry = entries.get(key);
+        return entry != null ? entry.getValue() : null;
+    }
+
+    /**
+     * Puts value into the cache and evicts the least recently used values that do not fit.
+     *
+     * @param key key
+     * @param value value
+     * @param valueWeight weight of the value
+     * @return previous value, or null
+     */
+    public synchronized V put(K key, V value, long valueWeight)
+    {
+        if (key == null) throw new IllegalArgumentException("Key cannot be null");
+        if (value == null) throw new IllegalArgumentException("Value cannot be null");
+        if (valueWeight < 0) throw new IllegalArgumentException("Weight cannot be negative");
+
+        V previous = remove(key);
+        if (valueWeight > getMaxWeight()) return previous;
+
+        entries.put(key, new Entry<>(value, valueWeight));
+        weight += valueWeight;
+
+        Iterator<Entry<V>> it = entries.values().iterator();
+        while (weight > getMaxWeight() && it.hasNext())
+        {
+            weight -= it.next().getWeight();
+            it.remove();
+        }
+
+        return previous;
+    }
+
+    /**
+     * Puts value into the cache unless the key is already cached.
+     *
+     * @param key key
+     * @param value value
+     * @param valueWeight weight of the value
+     * @return cached value, or null if there was none
+     */
+    public synchronized V putIfAbsent(K key, V value, long valueWeight)
+    {
+        V existing = get(key);
+        if (existing != null) return existing;
+
+        put(key, value, valueWeight);
+        return null;
+    }
+
+    public synchronized V remove(K key)
+    {
+        Entry<V> entry = entries.remove(key);
+        if (entry == null) return null;
+
+        weight -= entry.getWeight();
+        return entry.getValue();
+    }
+
+    public synchronized boolean containsKey(K key)
+    {
+        return entries.containsKey(key);
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Returns the total weight of the cached values.
+     *
+     * @return weight
+     */
+    public synchronized long getWeight()
+    {
+        return weight;
+    }
+
+    public long getMaxWeight()
+    {
+        return maxWeight;
+    }
+
+    private static class Entry<V>
+    {
+
+        private final V value;
+        private final long weight;
+
+        Entry(V value, long weight)
+        {
+            this.value = value;
+            this.weight = weight;
+        }
+
+        V getValue()
+        {
+            return value;
+        }
+
+        long getWeight()
+        {
+            return weight;
+        }
+
+    }
+
+}
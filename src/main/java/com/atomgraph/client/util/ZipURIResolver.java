@@ -16,31 +16,130 @@
  */
 package com.atomgraph.client.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 import javax.xml.transform.Source;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.URIResolver;
 import javax.xml.transform.stream.StreamSource;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Implementation of URIResolver that can resolve URIs to file entries within ZIP archives.
- * 
+ * The archive is indexed once. Inflated entries are kept in a cache bounded by their total size,
+ * and sources get stable <code>jar:</code> system IDs, against which relative URIs are resolved.
+ * The archive can also be read through a memory-mapped file instead of a {@link ZipFile}.
+ *
  * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
  */
 public class ZipURIResolver implements URIResolver
 {
     private static final Logger log = LoggerFactory.getLogger(ZipURIResolver.class);
-    
-    private ZipFile zipFile = null;
-    
+
+    /** Default maximum total size of cached entries in bytes */
+    public static final long DEFAULT_CACHE_SIZE = 32L << 20;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50, CENTRAL_HEADER_SIGNATURE = 0x02014b50, END_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_LENGTH = 30, CENTRAL_HEADER_LENGTH = 46, END_LENGTH = 22;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50, ZIP64_LOCATOR_LENGTH = 20;
+    private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+    /** General purpose flag bit 11: the entry name is encoded in UTF-8 */
+    private static final int UTF8_FLAG = 1 << 11;
+    /** Default encoding of entry names */
+    private static final Charset CP437 = Charset.forName("IBM437");
+    /** Maximum size of an entry that can be inflated into a byte array */
+    private static final long MAX_ENTRY_SIZE = Integer.MAX_VALUE - 8;
+    private static final int INFLATE_CHUNK_SIZE = 8192;
+
+    private final ZipFile zipFile;
+    private final ByteBuffer buffer;
+    private final Map<String, ZipEntry> entries;
+    private final String systemIdPrefix;
+    private final long cacheSize;
+    private final Map<String, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes = 0;
+
     public ZipURIResolver(ZipFile zipFile)
     {
+        this(zipFile, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs resolver that reads entries using the given archive.
+     *
+     * @param zipFile ZIP archive
+     * @param cacheSize maximum total size of cached entries in bytes
+     */
+    public ZipURIResolver(ZipFile zipFile, long cacheSize)
+    {
+        if (zipFile == null) throw new IllegalArgumentException("ZipFile cannot be null");
+        if (cacheSize < 0) throw new IllegalArgumentException("Cache size cannot be negative");
+
         this.zipFile = zipFile;
+        this.buffer = null;
+        this.cacheSize = cacheSize;
+        this.systemIdPrefix = getSystemIdPrefix(Paths.get(zipFile.getName()));
+
+        Map<String, ZipEntry> index = new HashMap<>();
+        zipFile.stream().filter(entry -> !entry.isDirectory()).forEach(entry -> index.put(entry.getName(), entry));
+        this.entries = Collections.unmodifiableMap(index);
+        if (log.isDebugEnabled()) log.debug("Indexed {} entries of ZIP archive: {}", entries.size(), zipFile.getName());
     }
 
+    /**
+     * Constructs resolver that reads entries from a memory-mapped archive.
+     * The entries are located using the central directory of the archive. ZIP64 archives are rejected.
+     *
+     * @param path ZIP archive path
+     * @param cacheSize maximum total size of cached entries in bytes
+     * @throws IOException if the archive cannot be mapped or is invalid
+     */
+    public ZipURIResolver(Path path, long cacheSize) throws IOException
+    {
+        if (path == null) throw new IllegalArgumentException("Path cannot be null");
+        if (cacheSize < 0) throw new IllegalArgumentException("Cache size cannot be negative");
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            if (channel.size() > Integer.MAX_VALUE) throw new ZipException("ZIP archive is too large to be mapped: " + path);
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        this.zipFile = null;
+        this.cacheSize = cacheSize;
+        this.systemIdPrefix = getSystemIdPrefix(path);
+        this.entries = Collections.unmodifiableMap(readCentralDirectory(buffer));
+        if (log.isDebugEnabled()) log.debug("Indexed {} entries of memory-mapped ZIP archive: {}", entries.size(), path);
+    }
+
+    /**
+     * Returns ZIP archive, or null if the archive is memory-mapped.
+     *
+     * @return ZIP file
+     */
     public ZipFile getZipFile()
     {
         return zipFile;
@@ -51,17 +150,260 @@ public class ZipURIResolver implements URIResolver
     {
         if (log.isDebugEnabled()) log.debug("Resolving href: {} base: {}", href, base);
 
-        try // with resources?
+        String name = getEntryName(href, base);
+        ZipEntry entry = getEntries().get(name);
+        if (entry == null) return null;
+
+        try
         {
-            // set system ID?
-            return new StreamSource(getZipFile().getInputStream(getZipFile().getEntry(href)));
+            return new StreamSource(new ByteArrayInputStream(getBytes(entry)), getSystemId(name));
         }
         catch (IOException ex)
         {
             if (log.isDebugEnabled()) log.debug("Error resolving from ZipFile", ex);
         }
-        
+
         return null;
     }
-    
+
+    /**
+     * Returns the name of the entry that the URI refers to.
+     * URIs relative to the system ID of an entry are resolved against it, other URIs are entry names relative to the archive root.
+     *
+     * @param href relative URI
+     * @param base base URI
+     * @return entry name
+     */
+    public String getEntryName(String href, String base)
+    {
+        if (href.startsWith(getSystemIdPrefix())) return href.substring(getSystemIdPrefix().length());
+
+        if (base != null && base.startsWith(getSystemIdPrefix()))
+        {
+            try
+            {
+                URI baseName = URI.create("/" + base.substring(getSystemIdPrefix().length()));
+                if (!URI.create(href).isAbsolute()) return baseName.resolve(href).getPath().substring(1);
+            }
+            catch (IllegalArgumentException ex)
+            {
+                if (log.isDebugEnabled()) log.debug("Could not resolve href: {} against base: {}", href, base);
+            }
+        }
+
+        return href;
+    }
+
+    /**
+     * Returns the inflated content of the entry, using the cache.
+     *
+     * @param entry ZIP entry
+     * @return entry bytes
+     * @throws IOException if the entry cannot be read
+     */
+    protected byte[] getBytes(ZipEntry entry) throws IOException
+    {
+        synchronized (cache)
+        {
+            byte[] bytes = cache.get(entry.getName());
+            if (bytes != null) return bytes;
+        }
+
+        byte[] bytes;
+        if (getZipFile() != null)
+            try (InputStream is = getZipFile().getInputStream(entry))
+            {
+                bytes = IOUtils.toByteArray(is);
+            }
+        else bytes = read((MappedEntry)entry);
+        if (log.isDebugEnabled()) log.debug("Inflated {} bytes of ZIP entry: {}", bytes.length, entry.getName());
+
+        if (bytes.length <= getCacheSize())
+            synchronized (cache)
+            {
+                byte[] previous = cache.put(entry.getName(), bytes);
+                cachedBytes += bytes.length - (previous != null ? previous.length : 0);
+
+                Iterator<byte[]> it = cache.values().iterator(); // least recently used first
+                while (cachedBytes > getCacheSize())
+                {
+                    cachedBytes -= it.next().length;
+                    it.remove();
+                }
+            }
+
+        return bytes;
+    }
+
+    /**
+     * Reads the entries listed in the central directory of a mapped archive.
+     * The header fields are validated against the archive size. Entry names are decoded as UTF-8 if the language
+     * encoding flag is set, and as CP437 otherwise, as specified by the ZIP format.
+     *
+     * @param buffer mapped archive
+     * @return map of entries
+     * @throws ZipException if the archive is invalid or uses ZIP64 extensions
+     */
+    protected static Map<String, ZipEntry> readCentralDirectory(ByteBuffer buffer) throws ZipException
+    {
+        int end = -1;
+        for (int i = buffer.limit() - END_LENGTH; i >= Math.max(0, buffer.limit() - END_LENGTH - 0xFFFF) && end < 0; i--) // the record ends with a comment
+            if (buffer.getInt(i) == END_SIGNATURE) end = i;
+        if (end < 0) throw new ZipException("End of central directory not found");
+
+        int count = Short.toUnsignedInt(buffer.getShort(end + 10));
+        long offset = Integer.toUnsignedLong(buffer.getInt(end + 16));
+        if (count == 0xFFFF || offset == ZIP64_MARKER || (end >= ZIP64_LOCATOR_LENGTH && buffer.getInt(end - ZIP64_LOCATOR_LENGTH) == ZIP64_LOCATOR_SIGNATURE))
+            throw new ZipException("ZIP64 archives are not supported");
+        if (offset > end) throw new ZipException("Invalid central directory offset: " + offset);
+
+        Map<String, ZipEntry> entries = new HashMap<>();
+        int position = (int)offset;
+        for (int i = 0; i < count; i++)
+        {
+            if (position + CENTRAL_HEADER_LENGTH > end || buffer.getInt(position) != CENTRAL_HEADER_SIGNATURE)
+                throw new ZipException("Invalid central directory header at offset: " + position);
+
+            int flags = Short.toUnsignedInt(buffer.getShort(position + 8));
+            int method = Short.toUnsignedInt(buffer.getShort(position + 10));
+            long compressedSize = Integer.toUnsignedLong(buffer.getInt(position + 20));
+            long size = Integer.toUnsignedLong(buffer.getInt(position + 24));
+            int nameLength = Short.toUnsignedInt(buffer.getShort(position + 28));
+            int extraLength = Short.toUnsignedInt(buffer.getShort(position + 30));
+            int commentLength = Short.toUnsignedInt(buffer.getShort(position + 32));
+            long localOffset = Integer.toUnsignedLong(buffer.getInt(position + 42));
+            if (position + CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength > end)
+                throw new ZipException("Central directory header exceeds the central directory at offset: " + position);
+
+            byte[] name = new byte[nameLength];
+            buffer.duplicate().position(position + CENTRAL_HEADER_LENGTH).get(name);
+            MappedEntry entry = new MappedEntry(new String(name, (flags & UTF8_FLAG) != 0 ? StandardCharsets.UTF_8 : CP437), localOffset);
+            if (compressedSize == ZIP64_MARKER || size == ZIP64_MARKER || localOffset == ZIP64_MARKER)
+                throw new ZipException("ZIP64 entries are not supported: " + entry.getName());
+            if (localOffset + LOCAL_HEADER_LENGTH + compressedSize > offset)
+                throw new ZipException("ZIP entry exceeds the archive: " + entry.getName());
+            if (size > MAX_ENTRY_SIZE) throw new ZipException("ZIP entry is too large: " + entry.getName());
+
+            if (method == ZipEntry.STORED || method == ZipEntry.DEFLATED)
+            {
+                if (method == ZipEntry.STORED && size != compressedSize) throw new ZipException("Invalid size of stored ZIP entry: " + entry.getName());
+                entry.setMethod(method);
+                entry.setCompressedSize(compressedSize);
+                entry.setSize(size);
+                if (!entry.isDirectory()) entries.put(entry.getName(), entry);
+            }
+            else if (log.isWarnEnabled()) log.warn("ZIP entry {} uses unsupported compression method {}, skipping it", entry.getName(), method);
+
+            position += CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength;
+        }
+
+        return entries;
+    }
+
+    /**
+     * Reads the content of an entry from the mapped archive.
+     * The entry is inflated into a buffer that grows with the data, up to the size declared by the central directory;
+     * data that does not match the declared size is rejected.
+     *
+     * @param entry mapped entry
+     * @return entry bytes
+     * @throws ZipException if the entry is invalid
+     */
+    protected byte[] read(MappedEntry entry) throws ZipException
+    {
+        int position = (int)entry.getOffset();
+        if (buffer.getInt(position) != LOCAL_HEADER_SIGNATURE) throw new ZipException("Invalid local header of ZIP entry: " + entry.getName());
+
+        long start = position + LOCAL_HEADER_LENGTH + Short.toUnsignedInt(buffer.getShort(position + 26)) + Short.toUnsignedInt(buffer.getShort(position + 28));
+        if (start + entry.getCompressedSize() > buffer.limit()) throw new ZipException("ZIP entry exceeds the archive: " + entry.getName());
+        ByteBuffer data = buffer.duplicate();
+        data.position((int)start).limit((int)(start + entry.getCompressedSize()));
+
+        if (entry.getMethod() == ZipEntry.STORED)
+        {
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            return bytes;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int)Math.min(entry.getSize(), INFLATE_CHUNK_SIZE));
+        Inflater inflater = new Inflater(true);
+        try
+        {
+            inflater.setInput(data);
+            byte[] chunk = new byte[INFLATE_CHUNK_SIZE];
+            while (!inflater.finished())
+            {
+                int inflated = inflater.inflate(chunk);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new ZipException("Truncated ZIP entry: " + entry.getName());
+                if (out.size() + inflated > entry.getSize()) throw new ZipException("ZIP entry is larger than declared: " + entry.getName());
+                out.write(chunk, 0, inflated);
+            }
+            if (out.size() != entry.getSize()) throw new ZipException("ZIP entry is smaller than declared: " + entry.getName());
+
+            return out.toByteArray();
+        }
+        catch (DataFormatException ex)
+        {
+            throw new ZipException("Invalid ZIP entry " + entry.getName() + ": " + ex.getMessage());
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Returns <code>jar:</code> URI prefix of the entries of the archive.
+     *
+     * @param path archive path
+     * @return URI prefix
+     */
+    protected static String getSystemIdPrefix(Path path)
+    {
+        return "jar:" + path.toAbsolutePath().toUri() + "!/";
+    }
+
+    public String getSystemId(String name)
+    {
+        return getSystemIdPrefix() + name;
+    }
+
+    public String getSystemIdPrefix()
+    {
+        return systemIdPrefix;
+    }
+
+    public Map<String, ZipEntry> getEntries()
+    {
+        return entries;
+    }
+
+    public long getCacheSize()
+    {
+        return cacheSize;
+    }
+
+    /**
+     * ZIP entry of a mapped archive, which records the offset of its local header.
+     */
+    protected static class MappedEntry extends ZipEntry
+    {
+
+        private final long offset;
+
+        public MappedEntry(String name, long offset)
+        {
+            super(name);
+            this.offset = offset;
+        }
+
+        public long getOffset()
+        {
+            return offset;
+        }
+
+    }
+
 }
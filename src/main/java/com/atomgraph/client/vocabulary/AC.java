@@ -107,5 +107,45 @@ public final class AC
     public static final DatatypeProperty prefixMapping = m_model.createDatatypeProperty( NS + "prefixMapping" );
     
     public static final DatatypeProperty sitemapRules = m_model.createDatatypeProperty( NS + "sitemapRules" );
+    
+    public static final DatatypeProperty statementLimit = m_model.createDatatypeProperty( NS + "statementLimit" );
+    
+    public static final DatatypeProperty modelCacheDirectory = m_model.createDatatypeProperty( NS + "modelCacheDirectory" );
+    
+    public static final DatatypeProperty modelCacheMaxSize = m_model.createDatatypeProperty( NS + "modelCacheMaxSize" );
+    
+    public static final DatatypeProperty offHeapModelCache = m_model.createDatatypeProperty( NS + "offHeapModelCache" );
+    
+    public static final DatatypeProperty decodedModelCacheSize = m_model.createDatatypeProperty( NS + "decodedModelCacheSize" );
+    
+    public static final DatatypeProperty maxTransformConcurrency = m_model.createDatatypeProperty( NS + "maxTransformConcurrency" );
+    
+    public static final DatatypeProperty maxTransformQueue = m_model.createDatatypeProperty( NS + "maxTransformQueue" );
+    
+    public static final DatatypeProperty transformQueueTimeout = m_model.createDatatypeProperty( NS + "transformQueueTimeout" );
+    
+    public static final DatatypeProperty maxHostConcurrency = m_model.createDatatypeProperty( NS + "maxHostConcurrency" );
+    
+    public static final DatatypeProperty hostFailureThreshold = m_model.createDatatypeProperty( NS + "hostFailureThreshold" );
+    
+    public static final DatatypeProperty hostOpenDuration = m_model.createDatatypeProperty( NS + "hostOpenDuration" );
+    
+    public static final DatatypeProperty resolutionBudget = m_model.createDatatypeProperty( NS + "resolutionBudget" );
+    
+    public static final DatatypeProperty clientErrorTTL = m_model.createDatatypeProperty( NS + "clientErrorTTL" );
+    
+    public static final DatatypeProperty serverErrorTTL = m_model.createDatatypeProperty( NS + "serverErrorTTL" );
+    
+    public static final DatatypeProperty timeoutTTL = m_model.createDatatypeProperty( NS + "timeoutTTL" );
+    
+    public static final DatatypeProperty connectionErrorTTL = m_model.createDatatypeProperty( NS + "connectionErrorTTL" );
+    
+    public static final DatatypeProperty tlsErrorTTL = m_model.createDatatypeProperty( NS + "tlsErrorTTL" );
+    
+    public static final DatatypeProperty readErrorTTL = m_model.createDatatypeProperty( NS + "readErrorTTL" );
+    
+    public static final DatatypeProperty unsupportedMediaTypeTTL = m_model.createDatatypeProperty( NS + "unsupportedMediaTypeTTL" );
+    
+    public static final DatatypeProperty warmUpConcurrency = m_model.createDatatypeProperty( NS + "warmUpConcurrency" );
 
 }
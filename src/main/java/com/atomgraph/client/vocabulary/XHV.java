@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atomgraph.client.vocabulary;
+
+import org.apache.jena.ontology.ObjectProperty;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+
+/**
+ * XHTML Vocabulary
+ * 
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ * @see <a href="http://www.w3.org/1999/xhtml/vocab">XHTML Vocabulary</a>
+ */
+public class XHV
+{
+
+    /** <p>The RDF model that holds the vocabulary terms</p> */
+    private static OntModel m_model = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM, null);
+    
+    /** <p>The namespace of the vocabulary as a string</p> */
+    public static final String NS = "http://www.w3.org/1999/xhtml/vocab#";
+    
+    /** <p>The namespace of the vocabulary as a string</p>
+     *  @see #NS */
+    public static String getURI()
+    {
+        return NS;
+    }
+    
+    /** <p>The namespace of the vocabulary as a resource</p> */
+    public static final Resource NAMESPACE = m_model.createResource( NS );
+
+    public static final ObjectProperty prev = m_model.createObjectProperty( NS + "prev" );
+    
+    public static final ObjectProperty next = m_model.createObjectProperty( NS + "next" );
+    
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.writer;
+
+import com.atomgraph.client.MediaType;
+import com.atomgraph.client.io.DataTableEncoder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import javax.inject.Singleton;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+
+/**
+ * Writes SPARQL results, models and datasets (their default models) as Google DataTable JSON.
+ * Replaces the <code>SPARQLXMLResults2DataTable.xsl</code> and <code>RDFXML2DataTable.xsl</code> conversions.
+ * 
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ * @see com.atomgraph.client.io.DataTableEncoder
+ */
+@Provider
+@Singleton
+@Produces(MediaType.APPLICATION_DATATABLE_JSON + ";charset=UTF-8")
+public class DataTableWriter implements MessageBodyWriter<Object>
+{
+
+    private final DataTableEncoder encoder;
+
+    public DataTableWriter()
+    {
+        this(new DataTableEncoder());
+    }
+    
+    public DataTableWriter(DataTableEncoder encoder)
+    {
+        if (encoder == null) throw new IllegalArgumentException("DataTableEncoder cannot be null");
+        
+        this.encoder = encoder;
+    }
+    
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, javax.ws.rs.core.MediaType mediaType)
+    {
+        return ResultSet.class.isAssignableFrom(type) || Model.class.isAssignableFrom(type) || Dataset.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(Object entity, Class<?> type, Type genericType, Annotation[] annotations, javax.ws.rs.core.MediaType mediaType)
+    {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Object entity, Class<?> type, Type genericType, Annotation[] annotations, javax.ws.rs.core.MediaType mediaType, MultivaluedMap<String, Object> headerMap, OutputStream entityStream) throws IOException, WebApplicationException
+    {
+        Writer writer = new OutputStreamWriter(entityStream, UTF_8);
+        
+        if (entity instanceof ResultSet) getEncoder().write((ResultSet)entity, writer);
+        if (entity instanceof Model) getEncoder().write(((Model)entity).getGraph(), writer);
+        if (entity instanceof Dataset) getEncoder().write(((Dataset)entity).getDefaultModel().getGraph(), writer);
+    }
+
+    public DataTableEncoder getEncoder()
+    {
+        return encoder;
+    }
+    
+}
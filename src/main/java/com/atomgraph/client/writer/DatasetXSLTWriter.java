@@ -25,6 +25,7 @@ import javax.ws.rs.core.*;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
 import javax.inject.Singleton;
+import com.atomgraph.client.util.AdmissionController;
 import net.sf.saxon.s9api.XsltExecutable;
 import org.apache.jena.query.Dataset;
 
@@ -52,6 +53,31 @@ public class DatasetXSLTWriter extends ModelXSLTWriterBase implements MessageBod
     {
         super(xsltExec, ontModelSpec);
     }
+
+    /**
+     * Constructs dataset writer from XSLT executable, ontology model specification and statement limit.
+     * 
+     * @param xsltExec compiled XSLT stylesheet
+     * @param ontModelSpec ontology model specification
+     * @param statementLimit maximum number of statements rendered per page, or null if unlimited
+     */
+    public DatasetXSLTWriter(XsltExecutable xsltExec, OntModelSpec ontModelSpec, Integer statementLimit)
+    {
+        super(xsltExec, ontModelSpec, statementLimit);
+    }
+
+    /**
+     * Constructs dataset writer from XSLT executable, ontology model specification, statement limit and admission controller.
+     * 
+     * @param xsltExec compiled XSLT stylesheet
+     * @param ontModelSpec ontology model specification
+     * @param statementLimit maximum number of statements rendered per page, or null if unlimited
+     * @param admissionController limiter of concurrent transformations, or null if unlimited
+     */
+    public DatasetXSLTWriter(XsltExecutable xsltExec, OntModelSpec ontModelSpec, Integer statementLimit, AdmissionController admissionController)
+    {
+        super(xsltExec, ontModelSpec, statementLimit, admissionController);
+    }
     
     @Override
     public void writeTo(Dataset dataset, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> headerMap, OutputStream entityStream) throws IOException
@@ -22,6 +22,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
+import com.atomgraph.client.util.AdmissionController;
 import net.sf.saxon.s9api.XsltExecutable;
 import org.apache.jena.ontology.OntModelSpec;
 import org.apache.jena.rdf.model.Model;
@@ -50,6 +51,31 @@ public class ModelXSLTWriter extends ModelXSLTWriterBase implements MessageBodyW
     {
         super(xsltExec, ontModelSpec);
     }
+
+    /**
+     * Constructs model writer from XSLT executable, ontology model specification and statement limit.
+     * 
+     * @param xsltExec compiled XSLT stylesheet
+     * @param ontModelSpec ontology model specification
+     * @param statementLimit maximum number of statements rendered per page, or null if unlimited
+     */
+    public ModelXSLTWriter(XsltExecutable xsltExec, OntModelSpec ontModelSpec, Integer statementLimit)
+    {
+        super(xsltExec, ontModelSpec, statementLimit);
+    }
+
+    /**
+     * Constructs model writer from XSLT executable, ontology model specification, statement limit and admission controller.
+     * 
+     * @param xsltExec compiled XSLT stylesheet
+     * @param ontModelSpec ontology model specification
+     * @param statementLimit maximum number of statements rendered per page, or null if unlimited
+     * @param admissionController limiter of concurrent transformations, or null if unlimited
+     */
+    public ModelXSLTWriter(XsltExecutable xsltExec, OntModelSpec ontModelSpec, Integer statementLimit, AdmissionController admissionController)
+    {
+        super(xsltExec, ontModelSpec, statementLimit, admissionController);
+    }
     
     @Override
     public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
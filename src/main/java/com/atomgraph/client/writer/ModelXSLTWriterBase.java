@@ -17,10 +17,15 @@ package com.atomgraph.client.writer;
 
 import com.atomgraph.client.exception.OntClassNotFoundException;
 import com.atomgraph.client.exception.OntologyException;
+import com.atomgraph.client.io.SortedRDFXMLWriter;
+import com.atomgraph.client.util.AdmissionController;
 import com.atomgraph.client.util.DataManager;
+import com.atomgraph.client.util.IndexedDocumentCache;
+import com.atomgraph.client.util.ModelPager;
 import com.atomgraph.client.util.OntologyProvider;
 import com.atomgraph.client.vocabulary.AC;
 import com.atomgraph.client.vocabulary.LDT;
+import com.atomgraph.client.vocabulary.XHV;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -40,6 +45,7 @@ import java.util.Map;
 import java.util.Set;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.BadRequestException;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
@@ -47,9 +53,9 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.URIResolver;
 import javax.xml.transform.stream.StreamSource;
 import net.sf.saxon.lib.UnparsedTextURIResolver;
 import net.sf.saxon.s9api.QName;
@@ -72,7 +78,6 @@ import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
-import org.apache.jena.rdfxml.xmloutput.impl.Basic;
 import org.apache.jena.riot.RDFLanguages;
 import org.apache.jena.riot.checker.CheckerIRI;
 import org.apache.jena.riot.system.ErrorHandlerFactory;
@@ -96,6 +101,8 @@ public abstract class ModelXSLTWriterBase
     
     private final XsltExecutable xsltExec;
     private final OntModelSpec ontModelSpec;
+    private final Integer statementLimit;
+    private final AdmissionController admissionController;
 
     @Context private UriInfo uriInfo;
     @Context private Request request;
@@ -103,23 +110,43 @@ public abstract class ModelXSLTWriterBase
     @Context private HttpServletRequest httpServletRequest;
     
     @Inject DataManager dataManager;
+    @Inject IndexedDocumentCache documentCache;
 
     public ModelXSLTWriterBase(XsltExecutable xsltExec, OntModelSpec ontModelSpec)
+    {
+        this(xsltExec, ontModelSpec, null);
+    }
+
+    public ModelXSLTWriterBase(XsltExecutable xsltExec, OntModelSpec ontModelSpec, Integer statementLimit)
+    {
+        this(xsltExec, ontModelSpec, statementLimit, null);
+    }
+    
+    public ModelXSLTWriterBase(XsltExecutable xsltExec, OntModelSpec ontModelSpec, Integer statementLimit, AdmissionController admissionController)
     {
         if (xsltExec == null) throw new IllegalArgumentException("XsltExecutable cannot be null");
         if (ontModelSpec == null) throw new IllegalArgumentException("OntModelSpec cannot be null");
+        if (statementLimit != null && statementLimit < 1) throw new IllegalArgumentException("Statement limit must be positive");
         this.xsltExec = xsltExec;
         this.ontModelSpec = ontModelSpec;
+        this.statementLimit = statementLimit;
+        this.admissionController = admissionController;
     }
 
     public void writeTo(Model model, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> headerMap, OutputStream entityStream) throws IOException
     {
         if (log.isTraceEnabled()) log.trace("Writing Model with HTTP headers: {} MediaType: {}", headerMap, mediaType);
 
+        // limit concurrent transformations, including the paging sort. Error pages of shed requests are rendered without a permit
+        boolean admitted = getAdmissionController() != null && !isShed();
+        if (admitted) getAdmissionController().acquire();
+        
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream())
         {
+            model = getPage(model); // render only a window of large descriptions
+
             //RDFWriter writer = model.getWriter(RDFLanguages.RDFXML.getName());
-            RDFWriter writer = new Basic(); // workaround for Jena 3.0.1 bug: https://issues.apache.org/jira/browse/JENA-1168
+            RDFWriter writer = new SortedRDFXMLWriter(); // plain writer is a workaround for Jena 3.0.1 bug: https://issues.apache.org/jira/browse/JENA-1168
             writer.setProperty("allowBadURIs", true); // round-tripping RDF/POST with user input may contain invalid URIs
             writer.write(model, baos, null);
 
@@ -143,19 +170,102 @@ public abstract class ModelXSLTWriterBase
                 out.setOutputProperty(Serializer.Property.DOCTYPE_PUBLIC, "-//W3C//DTD XHTML 1.0 Strict//EN");
             }
 
-            xsltTrans.setURIResolver((URIResolver)getDataManager());
+            // mapped documents are shared across transformations, other resolutions carry the budget of this transformation
+            xsltTrans.setURIResolver(getDocumentCache() != null ? getDocumentCache().getURIResolver(getDataManager(), getDataManager().getURIResolver()) : getDataManager().getURIResolver());
             xsltTrans.getUnderlyingController().setUnparsedTextURIResolver((UnparsedTextURIResolver)getDataManager());
             xsltTrans.getUnderlyingController().setCurrentDateTime(DateTimeValue.fromZonedDateTime(ZonedDateTime.now())); // TO-DO: make TZ configurable
             xsltTrans.setStylesheetParameters(getParameters(headerMap));
             xsltTrans.transform(new StreamSource(new ByteArrayInputStream(baos.toByteArray())), out);
+            if (getDocumentCache() != null) getDocumentCache().pinKeyIndexes(xsltTrans.getUnderlyingController());
         }
         catch (TransformerException | SaxonApiException ex)
         {
             if (log.isErrorEnabled()) log.error("XSLT transformation failed", ex);
             throw new WebApplicationException(ex, Response.Status.INTERNAL_SERVER_ERROR); // TO-DO: make Mapper
         }
+        finally
+        {
+            if (admitted) getAdmissionController().release();
+        }
     }
 
+    /**
+     * Returns true if the request was shed by the admission controller, i.e. the response is its error page.
+     * 
+     * @return true if shed
+     * @see AdmissionController#SHED_ATTRIBUTE
+     */
+    public boolean isShed()
+    {
+        return Boolean.TRUE.equals(getHttpServletRequest().getAttribute(AdmissionController.SHED_ATTRIBUTE));
+    }
+    
+    /**
+     * Returns the page of the model that will be rendered.
+     * Paging is applied when the <code>limit</code> query parameter is supplied, or when the model exceeds the configured statement limit.
+     * Links to the previous and next pages are attached to the requested document as <code>xhv:prev</code>/<code>xhv:next</code>.
+     * 
+     * @param model RDF model
+     * @return page model, or the original model if paging does not apply
+     */
+    public Model getPage(Model model)
+    {
+        Long limit = getLongParam(getUriInfo(), AC.limit.getLocalName());
+        if (limit == null && getStatementLimit() != null) limit = getStatementLimit().longValue();
+        if (limit == null) return model;
+
+        Long offset = getLongParam(getUriInfo(), AC.offset.getLocalName());
+        if (offset == null) offset = 0L;
+        if (limit < 1) throw new BadRequestException("Page limit must be positive");
+        if (offset < 0) throw new BadRequestException("Page offset cannot be negative");
+        if (offset == 0 && model.size() <= limit) return model; // no need to sort small models
+
+        ModelPager pager = new ModelPager(model);
+        if (offset == 0 && pager.getCount() <= limit) return model;
+        
+        Model page = pager.getPage(offset, limit);
+        Resource doc = page.createResource(getDocumentURI().toString());
+        if (offset > 0) doc.addProperty(XHV.prev, page.createResource(getPageURI(Math.max(offset - limit, 0), limit).toString()));
+        if (limit < pager.getCount() - offset) doc.addProperty(XHV.next, page.createResource(getPageURI(offset + limit, limit).toString()));
+        
+        return page;
+    }
+    
+    /**
+     * Returns the URI of the document whose description is being rendered.
+     * 
+     * @return document URI
+     */
+    public URI getDocumentURI()
+    {
+        try
+        {
+            URI uri = getURI();
+            if (uri == null) return getAbsolutePath();
+            
+            return new URI(uri.getScheme(), uri.getSchemeSpecificPart(), null); // strip #fragment
+        }
+        catch (URISyntaxException ex)
+        {
+            return getAbsolutePath();
+        }
+    }
+    
+    /**
+     * Builds the request URI of a page.
+     * 
+     * @param offset page offset
+     * @param limit page size
+     * @return page URI
+     */
+    public URI getPageURI(long offset, long limit)
+    {
+        return UriBuilder.fromUri(getRequestURI()).
+            replaceQueryParam(AC.offset.getLocalName(), offset).
+            replaceQueryParam(AC.limit.getLocalName(), limit).
+            build();
+    }
+    
     public <T extends XdmValue> Map<QName, XdmValue> getParameters(MultivaluedMap<String, Object> headerMap) throws TransformerException
     {
         if (headerMap == null) throw new IllegalArgumentException("MultivaluedMap cannot be null");
@@ -262,6 +372,24 @@ public abstract class ModelXSLTWriterBase
         return null;
     }
 
+    public Long getLongParam(UriInfo uriInfo, String name)
+    {
+        if (uriInfo == null) throw new IllegalArgumentException("UriInfo cannot be null");
+        if (name == null) throw new IllegalArgumentException("String cannot be null");
+
+        if (uriInfo.getQueryParameters().containsKey(name))
+            try
+            {
+                return Long.valueOf(uriInfo.getQueryParameters().getFirst(name));
+            }
+            catch (NumberFormatException ex)
+            {
+                throw new BadRequestException(ex);
+            }
+        
+        return null;
+    }
+    
     public URI getURI() throws URISyntaxException
     {
         return getURIParam(getUriInfo(), AC.uri.getLocalName()); // TO-DO: remove possible #fragment from URI
@@ -398,8 +526,23 @@ public abstract class ModelXSLTWriterBase
         return xsltExec;
     }
 
+    public Integer getStatementLimit()
+    {
+        return statementLimit;
+    }
+    
+    public AdmissionController getAdmissionController()
+    {
+        return admissionController;
+    }
+
     public DataManager getDataManager()
     {
         return dataManager;
     }
+    
+    public IndexedDocumentCache getDocumentCache()
+    {
+        return documentCache;
+    }
 }
@@ -17,7 +17,7 @@
 package com.atomgraph.client.writer;
 
 import org.apache.jena.query.ResultSet;
-import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.sparql.engine.ResultSetStream;
 import java.io.*;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
@@ -28,19 +28,30 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.xml.transform.Source;
 import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
 import javax.xml.transform.URIResolver;
-import javax.xml.transform.stream.StreamResult;
-import com.atomgraph.client.util.XSLTBuilder;
+import com.atomgraph.client.util.ResultSetChunks;
+import com.atomgraph.client.util.ResultSetSource;
+import com.atomgraph.client.vocabulary.AC;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import javax.inject.Singleton;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.sax.SAXTransformerFactory;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.QName;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.Serializer;
+import net.sf.saxon.s9api.XdmExternalObject;
+import net.sf.saxon.s9api.XdmValue;
+import net.sf.saxon.s9api.Xslt30Transformer;
+import net.sf.saxon.s9api.XsltExecutable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Transforms SPARQL XML results with XSLT stylesheet and writes result to response.
  * Needs to be registered in the application.
+ * The stylesheet is compiled once, and a new transformer is loaded from the executable per response.
  * 
  * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
  * @see <a href="http://jena.apache.org/documentation/javadoc/arq/com/hp/hpl/jena/query/ResultSet.html">ResultSet</a>
@@ -51,24 +62,91 @@ public class ResultSetXSLTWriter implements MessageBodyWriter<ResultSet>
 {
     private static final Logger log = LoggerFactory.getLogger(ResultSetXSLTWriter.class);
 
-    private Source stylesheet = null;
-    private URIResolver resolver = null;
+    /** Stylesheet parameter that holds the results read in chunks */
+    public static final QName RESULTS_PARAM = new QName("ac", AC.NS, "results");
+
+    private final XsltExecutable xsltExec;
+    private final URIResolver resolver;
+    private final Integer chunkSize;
 
     /**
-     * Constructs from stylesheet source and URI resolver
+     * Constructs from stylesheet source, URI resolver and Saxon processor.
+     * The stylesheet is compiled by the given processor, which should be the one of the application,
+     * so that its extension functions are available.
      * 
      * @param stylesheet the source of the XSLT transformation
      * @param resolver URI resolver to be used in the transformation
+     * @param processor Saxon processor
      * @throws TransformerConfigurationException 
      * @see <a href="http://docs.oracle.com/javase/6/docs/api/javax/xml/transform/Source.html">Source</a>
      * @see <a href="http://docs.oracle.com/javase/6/docs/api/javax/xml/transform/URIResolver.html">URIResolver</a>
      */
-    public ResultSetXSLTWriter(Source stylesheet, URIResolver resolver) throws TransformerConfigurationException
+    public ResultSetXSLTWriter(Source stylesheet, URIResolver resolver, Processor processor) throws TransformerConfigurationException
     {
-        if (stylesheet == null) throw new IllegalArgumentException("XSLT stylesheet Source cannot be null");
+        this(stylesheet, resolver, processor, null);
+    }
+
+    /**
+     * Constructs from stylesheet source, URI resolver, Saxon processor and result chunk size.
+     * 
+     * @param stylesheet the source of the XSLT transformation
+     * @param resolver URI resolver to be used in the transformation
+     * @param processor Saxon processor
+     * @param chunkSize number of rows per chunk, or null to transform all results at once
+     * @throws TransformerConfigurationException 
+     * @see #ResultSetXSLTWriter(XsltExecutable, URIResolver, Integer)
+     */
+    public ResultSetXSLTWriter(Source stylesheet, URIResolver resolver, Processor processor, Integer chunkSize) throws TransformerConfigurationException
+    {
+        this(compile(processor, stylesheet), resolver, chunkSize);
+    }
+
+    /**
+     * Constructs from XSLT executable and URI resolver.
+     * 
+     * @param xsltExec compiled XSLT stylesheet
+     * @param resolver URI resolver to be used in the transformation
+     */
+    public ResultSetXSLTWriter(XsltExecutable xsltExec, URIResolver resolver)
+    {
+        this(xsltExec, resolver, null);
+    }
+
+    /**
+     * Constructs from XSLT executable, URI resolver and result chunk size.
+     * If the chunk size is set, results are consumed lazily within a single transformation.
+     * The source document then contains no <code>srx:result</code> elements, and the stylesheet reads the rows by calling
+     * <code>ac:next-results($ac:results)</code> until it returns an empty sequence. Only one chunk of rows is held in memory at a time,
+     * and the output is flushed before the next chunk is read.
+     * 
+     * @param xsltExec compiled XSLT stylesheet
+     * @param resolver URI resolver to be used in the transformation
+     * @param chunkSize number of rows per chunk, or null to transform all results at once
+     * @see com.atomgraph.client.writer.function.NextResults
+     */
+    public ResultSetXSLTWriter(XsltExecutable xsltExec, URIResolver resolver, Integer chunkSize)
+    {
+        if (xsltExec == null) throw new IllegalArgumentException("XsltExecutable cannot be null");
         if (resolver == null) throw new IllegalArgumentException("URIResolver cannot be null");
-        this.stylesheet = stylesheet;
+        if (chunkSize != null && chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive");
+        this.xsltExec = xsltExec;
         this.resolver = resolver;
+        this.chunkSize = chunkSize;
+    }
+    
+    public static XsltExecutable compile(Processor processor, Source stylesheet) throws TransformerConfigurationException
+    {
+        if (processor == null) throw new IllegalArgumentException("Processor cannot be null");
+        if (stylesheet == null) throw new IllegalArgumentException("XSLT stylesheet Source cannot be null");
+
+        try
+        {
+            return processor.newXsltCompiler().compile(stylesheet);
+        }
+        catch (SaxonApiException ex)
+        {
+            throw new TransformerConfigurationException(ex);
+        }
     }
     
     @Override
@@ -86,24 +164,68 @@ public class ResultSetXSLTWriter implements MessageBodyWriter<ResultSet>
     @Override
     public void writeTo(ResultSet results, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> headerMap, OutputStream entityStream) throws IOException, WebApplicationException
     {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream())
+        if (getChunkSize() != null)
+        {
+            writeChunks(results, entityStream);
+            return;
+        }
+        
+        try
+        {
+            // load new transformer per request output to avoid document() caching. Results are streamed into the transformation as XML events
+            Xslt30Transformer xsltTrans = getXsltTransformer(new HashMap<>());
+            xsltTrans.transform(new ResultSetSource(results, null), getSerializer(xsltTrans, entityStream));
+        }
+        catch (SaxonApiException ex)
+        {
+            log.error("XSLT transformation failed", ex);
+            throw new WebApplicationException(ex, Response.Status.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Transforms results in chunks of rows within a single transformation, so that the output is one document.
+     * The source contains only the result variables, and the stylesheet reads the rows using <code>ac:next-results($ac:results)</code>.
+     * 
+     * @param results SPARQL results
+     * @param entityStream response stream
+     * @throws IOException 
+     */
+    public void writeChunks(ResultSet results, OutputStream entityStream) throws IOException
+    {
+        try
         {
-            ResultSetFormatter.outputAsXML(baos, results);
-            
-            // create XSLTBuilder per request output to avoid document() caching
-            getXSLTBuilder(new ByteArrayInputStream(baos.toByteArray()),
-                    headerMap, entityStream).transform();
+            Writer writer = new OutputStreamWriter(entityStream, UTF_8);
+            Map<QName, XdmValue> params = new HashMap<>();
+            params.put(RESULTS_PARAM, new XdmExternalObject(new ResultSetChunks(results, getChunkSize(), writer)));
+            Xslt30Transformer xsltTrans = getXsltTransformer(params);
+
+            Serializer out = xsltTrans.newSerializer();
+            out.setOutputWriter(writer);
+            out.setOutputProperty(Serializer.Property.ENCODING, UTF_8.name());
+            xsltTrans.transform(new ResultSetSource(new ResultSetStream(results.getResultVars(), results.getResourceModel(), Collections.emptyIterator()), null), out);
+            writer.flush();
         }
-        catch (TransformerException ex)
+        catch (SaxonApiException ex)
         {
             log.error("XSLT transformation failed", ex);
             throw new WebApplicationException(ex, Response.Status.INTERNAL_SERVER_ERROR);
         }
     }
 
-    public SAXTransformerFactory getTransformerFactory()
+    public Xslt30Transformer getXsltTransformer(Map<QName, XdmValue> params) throws SaxonApiException
+    {
+        Xslt30Transformer xsltTrans = getXsltExecutable().load30();
+        xsltTrans.setURIResolver(getURIResolver());
+        xsltTrans.setStylesheetParameters(params);
+        return xsltTrans;
+    }
+    
+    public Serializer getSerializer(Xslt30Transformer xsltTrans, OutputStream os)
     {
-        return ((SAXTransformerFactory)TransformerFactory.newInstance("net.sf.saxon.TransformerFactoryImpl", null));
+        Serializer out = xsltTrans.newSerializer(os);
+        out.setOutputProperty(Serializer.Property.ENCODING, UTF_8.name());
+        return out;
     }
     
     public URIResolver getURIResolver()
@@ -111,17 +233,14 @@ public class ResultSetXSLTWriter implements MessageBodyWriter<ResultSet>
         return resolver;
     }
 
-    public Source getStylesheet()
+    public XsltExecutable getXsltExecutable()
     {
-        return stylesheet;
+        return xsltExec;
     }
 
-    public XSLTBuilder getXSLTBuilder(InputStream is, MultivaluedMap<String, Object> headerMap, OutputStream os) throws TransformerConfigurationException
+    public Integer getChunkSize()
     {
-        return XSLTBuilder.newInstance(getTransformerFactory()).
-            stylesheet(getStylesheet()).
-            resolver(getURIResolver()).
-            document(is).
-            result(new StreamResult(os));
+        return chunkSize;
     }
+
 }
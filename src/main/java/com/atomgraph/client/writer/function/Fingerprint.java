@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.writer.function;
+
+import com.atomgraph.client.filter.StaticAssetFilter;
+import com.atomgraph.client.vocabulary.AC;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import javax.servlet.ServletContext;
+import net.sf.saxon.s9api.ExtensionFunction;
+import net.sf.saxon.s9api.ItemType;
+import net.sf.saxon.s9api.OccurrenceIndicator;
+import net.sf.saxon.s9api.QName;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.SequenceType;
+import net.sf.saxon.s9api.XdmAtomicValue;
+import net.sf.saxon.s9api.XdmValue;
+
+/**
+ * <code>ac:fingerprint()</code> XSLT function that appends the content hash of a static asset to its webapp-relative path,
+ * e.g. <code>static/css/bootstrap.css?v=0123456789abcdef0123</code>.
+ * {@link StaticAssetFilter} caches such fingerprinted URLs as immutable.
+ * The path is returned unchanged if the asset does not exist or is too large, or if there is no servlet context.
+ * Hashes are computed once per path, as the paths are stylesheet literals.
+ * Plugs into Saxon processor.
+ * 
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ * @see <a href="http://www.saxonica.com/documentation/#!extensibility/integratedfunctions">Integrated extension functions</a>
+ */
+public class Fingerprint implements ExtensionFunction
+{
+    
+    private final Supplier<ServletContext> servletContext;
+    private final Map<String, Optional<String>> hashes = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs function that reads assets from the servlet context.
+     * 
+     * @param servletContext supplies the servlet context, or null if there is none (yet)
+     */
+    public Fingerprint(Supplier<ServletContext> servletContext)
+    {
+        if (servletContext == null) throw new IllegalArgumentException("ServletContext supplier cannot be null");
+        this.servletContext = servletContext;
+    }
+    
+    @Override
+    public QName getName()
+    {
+        return new QName(AC.NS, "fingerprint");
+    }
+
+    @Override
+    public SequenceType getResultType()
+    {
+        return SequenceType.makeSequenceType(ItemType.STRING, OccurrenceIndicator.ONE);
+    }
+
+    @Override
+    public SequenceType[] getArgumentTypes()
+    {
+        return new SequenceType[]
+        {
+            SequenceType.makeSequenceType(ItemType.STRING, OccurrenceIndicator.ONE)
+        };
+    }
+
+    @Override
+    public XdmValue call(XdmValue[] arguments) throws SaxonApiException
+    {
+        String path = arguments[0].itemAt(0).getStringValue();
+        
+        try
+        {
+            Optional<String> hash = getHash(path);
+            return new XdmAtomicValue(hash.isPresent() ? path + "?" + StaticAssetFilter.VERSION_PARAM + "=" + hash.get() : path);
+        }
+        catch (IOException ex)
+        {
+            throw new SaxonApiException(ex);
+        }
+    }
+
+    /**
+     * Returns the content hash of the asset at the given webapp-relative path.
+     * 
+     * @param path asset path
+     * @return hash, or empty if it cannot be computed
+     * @throws IOException if the asset cannot be read
+     */
+    public Optional<String> getHash(String path) throws IOException
+    {
+        Optional<String> hash = hashes.get(path);
+        if (hash != null) return hash;
+        
+        ServletContext context = getServletContext().get();
+        if (context == null) return Optional.empty(); // not remembered, the context can be supplied later
+        
+        URL url = context.getResource(path.startsWith("/") ? path : "/" + path);
+        byte[] bytes = url != null ? StaticAssetFilter.read(url) : null;
+        hash = Optional.ofNullable(bytes != null ? StaticAssetFilter.getHash(bytes) : null);
+        hashes.putIfAbsent(path, hash);
+        return hash;
+    }
+    
+    public Supplier<ServletContext> getServletContext()
+    {
+        return servletContext;
+    }
+    
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.writer.function;
+
+import com.atomgraph.client.util.ResultSetChunks;
+import com.atomgraph.client.util.ResultSetSource;
+import com.atomgraph.client.vocabulary.AC;
+import java.io.IOException;
+import net.sf.saxon.expr.XPathContext;
+import net.sf.saxon.lib.ExtensionFunctionCall;
+import net.sf.saxon.lib.ExtensionFunctionDefinition;
+import net.sf.saxon.om.EmptyAtomicSequence;
+import net.sf.saxon.om.Item;
+import net.sf.saxon.om.Sequence;
+import net.sf.saxon.om.StructuredQName;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XdmNode;
+import net.sf.saxon.s9api.streams.Steps;
+import net.sf.saxon.trans.XPathException;
+import net.sf.saxon.value.ObjectValue;
+import net.sf.saxon.value.SequenceType;
+import org.apache.jena.query.ResultSet;
+
+/**
+ * <code>ac:next-results($ac:results)</code> XSLT function that returns the <code>srx:result</code> elements of the next chunk of SPARQL results.
+ * The argument is the <code>$ac:results</code> stylesheet parameter, which holds the {@link ResultSetChunks} being transformed.
+ * Returns an empty sequence when all rows have been read, or when the transformation does not read results in chunks.
+ * Plugs into Saxon processor.
+ * 
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ * @see com.atomgraph.client.writer.ResultSetXSLTWriter
+ * @see <a href="http://www.saxonica.com/documentation/#!extensibility/functions">Integrated extension functions</a>
+ */
+public class NextResults extends ExtensionFunctionDefinition
+{
+
+    private final Processor processor;
+    
+    public NextResults(Processor processor)
+    {
+        this.processor = processor;
+    }
+    
+    @Override
+    public StructuredQName getFunctionQName()
+    {
+        return new StructuredQName("ac", AC.NS, "next-results");
+    }
+
+    @Override
+    public SequenceType[] getArgumentTypes()
+    {
+        return new SequenceType[]{ SequenceType.OPTIONAL_ITEM };
+    }
+
+    @Override
+    public SequenceType getResultType(SequenceType[] suppliedArgumentTypes)
+    {
+        return SequenceType.NODE_SEQUENCE;
+    }
+
+    @Override
+    public boolean hasSideEffects()
+    {
+        return true; // every call reads a new chunk
+    }
+
+    @Override
+    public ExtensionFunctionCall makeCallExpression()
+    {
+        return new ExtensionFunctionCall()
+        {
+
+            @Override
+            public Sequence call(XPathContext context, Sequence[] arguments) throws XPathException
+            {
+                Item item = arguments[0].head();
+                if (!(item instanceof ObjectValue) || !(((ObjectValue<?>)item).getObject() instanceof ResultSetChunks)) return EmptyAtomicSequence.getInstance();
+                
+                try
+                {
+                    ResultSet results = ((ResultSetChunks)((ObjectValue<?>)item).getObject()).next();
+                    if (results == null) return EmptyAtomicSequence.getInstance();
+
+                    XdmNode doc = getProcessor().newDocumentBuilder().build(new ResultSetSource(results, null));
+                    return doc.select(Steps.path(Steps.child(ResultSetSource.NS, "sparql"), Steps.child(ResultSetSource.NS, "results"), Steps.child(ResultSetSource.NS, "result"))).
+                        asXdmValue().getUnderlyingValue();
+                }
+                catch (IOException | SaxonApiException ex)
+                {
+                    throw new XPathException(ex);
+                }
+            }
+            
+        };
+    }
+    
+    public Processor getProcessor()
+    {
+        return processor;
+    }
+    
+}
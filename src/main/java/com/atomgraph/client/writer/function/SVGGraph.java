@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.writer.function;
+
+import com.atomgraph.client.io.SVGGraphEncoder;
+import com.atomgraph.client.util.GraphLayout;
+import java.io.StringWriter;
+import javax.xml.stream.XMLStreamException;
+import net.sf.saxon.s9api.BuildingStreamWriterImpl;
+import net.sf.saxon.s9api.ExtensionFunction;
+import net.sf.saxon.s9api.ItemType;
+import net.sf.saxon.s9api.OccurrenceIndicator;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.QName;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.SequenceType;
+import net.sf.saxon.s9api.Serializer;
+import net.sf.saxon.s9api.XdmNode;
+import net.sf.saxon.s9api.XdmValue;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.sparql.graph.GraphFactory;
+
+/**
+ * <code>ac:svg-graph()</code> XSLT function that draws the SVG graph of an RDF/XML document.
+ * Nodes are laid out in Java by {@link com.atomgraph.client.util.GraphLayout}, which caches the layouts.
+ * Plugs into Saxon processor.
+ * <p>
+ * The document is read by Jena's RDF/XML parser. Blank nodes are relabelled canonically, so that
+ * documents that differ only in blank node IDs have equal graph digests and share their layout.
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ * @see <a href="http://www.saxonica.com/documentation/#!extensibility/integratedfunctions">Integrated extension functions</a>
+ */
+public class SVGGraph implements ExtensionFunction
+{
+
+    private final Processor processor;
+    private final SVGGraphEncoder encoder;
+
+    public SVGGraph(Processor processor, SVGGraphEncoder encoder)
+    {
+        if (processor == null) throw new IllegalArgumentException("Processor cannot be null");
+        if (encoder == null) throw new IllegalArgumentException("SVGGraphEncoder cannot be null");
+
+        this.processor = processor;
+        this.encoder = encoder;
+    }
+
+    @Override
+    public QName getName()
+    {
+        return new QName("https://w3id.org/atomgraph/client#", "svg-graph"); // QName(AC.NS, "svg-graph");
+    }
+
+    @Override
+    public SequenceType getResultType()
+    {
+        return SequenceType.makeSequenceType(ItemType.DOCUMENT_NODE, OccurrenceIndicator.ONE);
+    }
+
+    @Override
+    public SequenceType[] getArgumentTypes()
+    {
+        return new SequenceType[]
+        {
+            SequenceType.makeSequenceType(ItemType.ANY_NODE, OccurrenceIndicator.ONE)
+        };
+    }
+
+    @Override
+    public XdmValue call(XdmValue[] arguments) throws SaxonApiException
+    {
+        try
+        {
+            BuildingStreamWriterImpl writer = getProcessor().newDocumentBuilder().newBuildingStreamWriter();
+            getEncoder().write(getGraph((XdmNode)arguments[0].itemAt(0), getProcessor()), writer);
+            return writer.getDocumentNode();
+        }
+        catch (XMLStreamException ex)
+        {
+            throw new SaxonApiException(ex);
+        }
+    }
+
+    /**
+     * Reads graph from RDF/XML using Jena's RDF/XML parser, and labels its blank nodes canonically.
+     *
+     * @param node <code>rdf:RDF</code> element or its document node
+     * @param processor processor that serializes the node
+     * @return RDF graph with canonical blank node labels
+     * @throws SaxonApiException if the node is not valid RDF/XML
+     * @see GraphLayout#getCanonicalGraph(Graph)
+     */
+    public static Graph getGraph(XdmNode node, Processor processor) throws SaxonApiException
+    {
+        if (node == null) throw new IllegalArgumentException("XdmNode cannot be null");
+        if (processor == null) throw new IllegalArgumentException("Processor cannot be null");
+
+        StringWriter xml = new StringWriter();
+        Serializer serializer = processor.newSerializer(xml);
+        serializer.setOutputProperty(Serializer.Property.OMIT_XML_DECLARATION, "yes");
+        serializer.serializeNode(node);
+
+        Graph graph = GraphFactory.createDefaultGraph();
+        try
+        {
+            RDFParser.create().
+                fromString(xml.toString()).
+                lang(Lang.RDFXML).
+                base(node.getBaseURI() != null ? node.getBaseURI().toString() : null).
+                parse(graph);
+        }
+        catch (RiotException ex)
+        {
+            throw new SaxonApiException("Cannot draw graph of invalid RDF/XML: " + ex.getMessage(), ex);
+        }
+
+        return GraphLayout.getCanonicalGraph(graph);
+    }
+
+    public Processor getProcessor()
+    {
+        return processor;
+    }
+
+    public SVGGraphEncoder getEncoder()
+    {
+        return encoder;
+    }
+
+}
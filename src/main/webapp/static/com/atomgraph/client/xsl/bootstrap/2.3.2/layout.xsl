@@ -49,6 +49,7 @@ xmlns:spin="&spin;"
 xmlns:xhv="&xhv;"
 xmlns:bs2="http://graphity.org/xsl/bootstrap/2.3.2"
 xmlns:xhtml="http://www.w3.org/1999/xhtml"
+xmlns:svg="http://www.w3.org/2000/svg"
 exclude-result-prefixes="#all">
 
     <xsl:include href="sparql.xsl"/>
@@ -99,13 +100,10 @@ exclude-result-prefixes="#all">
 
     <xsl:template match="/">
         <html lang="{$ldt:lang}">
-            <xsl:variable name="grouped-rdf" as="document-node()">
-                <xsl:apply-templates select="." mode="ac:GroupTriples"/>
-            </xsl:variable>
-
-            <xsl:apply-templates select="$grouped-rdf/rdf:RDF" mode="xhtml:Head"/>
+            <!-- triples are already grouped and sorted by the writer, ac:GroupTriples mode is not needed -->
+            <xsl:apply-templates select="rdf:RDF" mode="xhtml:Head"/>
             
-            <xsl:apply-templates select="$grouped-rdf/rdf:RDF" mode="xhtml:Body"/>
+            <xsl:apply-templates select="rdf:RDF" mode="xhtml:Body"/>
         </html>
     </xsl:template>
 
@@ -295,18 +293,18 @@ exclude-result-prefixes="#all">
     <!-- STYLE MODE -->
     
     <xsl:template match="rdf:RDF" mode="xhtml:Style">
-        <link href="{resolve-uri('static/css/bootstrap.css', $ac:contextUri)}" rel="stylesheet" type="text/css"/>
-        <link href="{resolve-uri('static/css/bootstrap-responsive.css', $ac:contextUri)}" rel="stylesheet" type="text/css"/>
-        <link href="{resolve-uri('static/com/atomgraph/client/css/bootstrap.css', $ac:contextUri)}" rel="stylesheet" type="text/css"/>
+        <link href="{resolve-uri(ac:fingerprint('static/css/bootstrap.css'), $ac:contextUri)}" rel="stylesheet" type="text/css"/>
+        <link href="{resolve-uri(ac:fingerprint('static/css/bootstrap-responsive.css'), $ac:contextUri)}" rel="stylesheet" type="text/css"/>
+        <link href="{resolve-uri(ac:fingerprint('static/com/atomgraph/client/css/bootstrap.css'), $ac:contextUri)}" rel="stylesheet" type="text/css"/>
     </xsl:template>
     
     <!-- SCRIPT MODE -->
 
     <xsl:template match="rdf:RDF" mode="xhtml:Script">
-        <script type="text/javascript" src="{resolve-uri('static/js/jquery.min.js', $ac:contextUri)}" defer="defer"></script>
-        <script type="text/javascript" src="{resolve-uri('static/js/bootstrap.js', $ac:contextUri)}" defer="defer"></script>
-        <script type="text/javascript" src="{resolve-uri('static/com/atomgraph/client/js/UUID.js', $ac:contextUri)}" defer="defer"></script>
-        <script type="text/javascript" src="{resolve-uri('static/com/atomgraph/client/js/jquery.js', $ac:contextUri)}" defer="defer"></script>
+        <script type="text/javascript" src="{resolve-uri(ac:fingerprint('static/js/jquery.min.js'), $ac:contextUri)}" defer="defer"></script>
+        <script type="text/javascript" src="{resolve-uri(ac:fingerprint('static/js/bootstrap.js'), $ac:contextUri)}" defer="defer"></script>
+        <script type="text/javascript" src="{resolve-uri(ac:fingerprint('static/com/atomgraph/client/js/UUID.js'), $ac:contextUri)}" defer="defer"></script>
+        <script type="text/javascript" src="{resolve-uri(ac:fingerprint('static/com/atomgraph/client/js/jquery.js'), $ac:contextUri)}" defer="defer"></script>
         <xsl:if test="$ac:mode = '&ac;MapMode'">
             <script type="text/javascript" src="https://maps.googleapis.com/maps/api/js?key={$ac:googleMapsKey}" defer="defer"/>
             <!--<script type="text/javascript" src="{resolve-uri('static/com/atomgraph/client/js/google-maps.js', $ac:contextUri)}" defer="defer"></script>-->
@@ -345,6 +343,8 @@ exclude-result-prefixes="#all">
             </xsl:if>
 
             <xsl:apply-templates select="." mode="ac:ModeChoice"/>
+
+            <xsl:apply-templates select="." mode="bs2:PagerList"/>
         </div>
     </xsl:template>
             
@@ -365,6 +365,34 @@ exclude-result-prefixes="#all">
         </xsl:choose>
     </xsl:template>
     
+    <!-- PAGER -->
+
+    <!-- links to the neighbouring pages of a paged description, attached as xhv:prev/xhv:next by the writer -->
+    <xsl:template match="rdf:RDF" mode="bs2:PagerList">
+        <xsl:variable name="paged" select="*[xhv:prev/@rdf:resource or xhv:next/@rdf:resource][1]" as="element()?"/>
+
+        <xsl:if test="$paged">
+            <ul class="pager">
+                <xsl:for-each select="$paged/xhv:prev/@rdf:resource">
+                    <li class="previous">
+                        <a href="{.}">
+                            <xsl:text>&#8592; </xsl:text>
+                            <xsl:value-of select="ac:label(key('resources', '&xhv;prev', document('')))"/>
+                        </a>
+                    </li>
+                </xsl:for-each>
+                <xsl:for-each select="$paged/xhv:next/@rdf:resource">
+                    <li class="next">
+                        <a href="{.}">
+                            <xsl:value-of select="ac:label(key('resources', '&xhv;next', document('')))"/>
+                            <xsl:text> &#8594;</xsl:text>
+                        </a>
+                    </li>
+                </xsl:for-each>
+            </ul>
+        </xsl:if>
+    </xsl:template>
+
     <!-- NAVBAR ACTIONS -->
     
     <xsl:template match="rdf:RDF" mode="bs2:NavBarActions">
@@ -548,11 +576,15 @@ exclude-result-prefixes="#all">
 
     <!-- GRAPH MODE -->
     
+    <!-- nodes are laid out in Java by ac:svg-graph(), which caches the layouts -->
     <xsl:template match="rdf:RDF" mode="bs2:Graph">
-        <xsl:apply-templates select="." mode="ac:SVG">
-            <xsl:with-param name="width" select="'100%'"/>
-            <xsl:with-param name="spring-length" select="150" tunnel="yes"/>
-        </xsl:apply-templates>
+        <xsl:for-each select="ac:svg-graph(.)/svg:svg">
+            <xsl:copy>
+                <xsl:copy-of select="@*"/>
+                <xsl:attribute name="width" select="'100%'"/>
+                <xsl:copy-of select="node()"/>
+            </xsl:copy>
+        </xsl:for-each>
     </xsl:template>
     
     <!-- BLOCK MODE -->
@@ -90,7 +90,7 @@ LIMIT 100</xsl:param>
     <xsl:template match="rdf:RDF[$ac:mode = '&ac;QueryEditorMode']" mode="xhtml:Style" priority="1">
         <xsl:next-match/>
         
-        <link href="{resolve-uri('static/css/yasqe.css', $ac:contextUri)}" rel="stylesheet" type="text/css"/>
+        <link href="{resolve-uri(ac:fingerprint('static/css/yasqe.css'), $ac:contextUri)}" rel="stylesheet" type="text/css"/>
     </xsl:template>
 
     <xsl:template name="bs2:QueryForm">
@@ -139,7 +139,7 @@ LIMIT 100</xsl:param>
                     </xsl:choose>
                 </textarea>
 
-                <script src="{resolve-uri('static/js/yasqe.js', $ac:contextUri)}" type="text/javascript"></script>
+                <script src="{resolve-uri(ac:fingerprint('static/js/yasqe.js'), $ac:contextUri)}" type="text/javascript"></script>
                 <script type="text/javascript">
                     <![CDATA[
                     var yasqe = YASQE.fromTextArea(document.getElementById("query-string"), { persistent: null });
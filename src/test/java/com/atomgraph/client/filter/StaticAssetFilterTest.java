@@ -0,0 +1,262 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.HttpHeaders;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class StaticAssetFilterTest
+{
+
+    private static final String PATH = "/static/app.js";
+
+    private Path root;
+    private StaticAssetFilter filter;
+    private final Map<String, Integer> lookups = new HashMap<>();
+
+    /**
+     * Returns a proxy that answers the named methods and returns defaults for all others.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> clazz, Map<String, Object> values)
+    {
+        return (T)Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{ clazz }, (proxy, method, args) ->
+        {
+            if (values.containsKey(method.getName())) return values.get(method.getName());
+            if (method.getReturnType() == boolean.class) return false;
+            if (method.getReturnType() == int.class) return 0;
+            if (method.getReturnType() == long.class) return 0L;
+            return null;
+        });
+    }
+
+    @Before
+    public void setUp() throws Exception
+    {
+        root = Files.createTempDirectory("webapp");
+        Files.createDirectories(root.resolve("static"));
+        StringBuilder js = new StringBuilder();
+        for (int i = 0; i < 100; i++) js.append("console.log('asset');\n");
+        Files.write(root.resolve("static/app.js"), js.toString().getBytes(UTF_8));
+
+        ServletContext servletContext = (ServletContext)Proxy.newProxyInstance(ServletContext.class.getClassLoader(), new Class<?>[]{ ServletContext.class }, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getResource":
+                    lookups.merge((String)args[0], 1, Integer::sum);
+                    Path file = root.resolve(((String)args[0]).substring(1));
+                    return Files.isRegularFile(file) ? file.toUri().toURL() : null;
+                case "getMimeType":
+                    return ((String)args[0]).endsWith(".js") ? "application/javascript" : null;
+                default:
+                    return null;
+            }
+        });
+
+        Map<String, Object> config = new HashMap<>();
+        config.put("getServletContext", servletContext);
+        filter = new StaticAssetFilter();
+        filter.init(stub(FilterConfig.class, config));
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    private HttpServletRequest request(String path, String acceptEncoding, String ifNoneMatch)
+    {
+        return (HttpServletRequest)Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[]{ HttpServletRequest.class }, (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "getMethod":
+                    return "GET";
+                case "getServletPath":
+                    return path.contains("?") ? path.substring(0, path.indexOf('?')) : path;
+                case "getParameter":
+                    return args[0].equals(StaticAssetFilter.VERSION_PARAM) && path.contains("?v=") ? path.substring(path.indexOf("?v=") + 3) : null;
+                case "getHeader":
+                    if (args[0].equals(HttpHeaders.ACCEPT_ENCODING)) return acceptEncoding;
+                    if (args[0].equals(HttpHeaders.IF_NONE_MATCH)) return ifNoneMatch;
+                    return null;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * Response that records status, headers and body.
+     */
+    private static class Recorder
+    {
+
+        final Map<String, String> headers = new HashMap<>();
+        final AtomicInteger status = new AtomicInteger(HttpServletResponse.SC_OK);
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        HttpServletResponse getResponse()
+        {
+            ServletOutputStream out = new ServletOutputStream()
+            {
+
+                @Override
+                public void write(int b)
+                {
+                    body.write(b);
+                }
+
+                @Override
+                public boolean isReady()
+                {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener)
+                {
+                }
+
+            };
+
+            return (HttpServletResponse)Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(), new Class<?>[]{ HttpServletResponse.class }, (proxy, method, args) ->
+            {
+                switch (method.getName())
+                {
+                    case "setHeader":
+                        headers.put((String)args[0], (String)args[1]);
+                        return null;
+                    case "setStatus":
+                        status.set((Integer)args[0]);
+                        return null;
+                    case "getOutputStream":
+                        return out;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+    }
+
+    private Recorder get(String path, String acceptEncoding, String ifNoneMatch, AtomicBoolean chained) throws Exception
+    {
+        Recorder recorder = new Recorder();
+        filter.doFilter(request(path, acceptEncoding, ifNoneMatch), recorder.getResponse(), (req, resp) -> chained.set(true));
+        return recorder;
+    }
+
+    @Test
+    public void testETagAndNotModified() throws Exception
+    {
+        AtomicBoolean chained = new AtomicBoolean();
+        byte[] bytes = Files.readAllBytes(root.resolve("static/app.js"));
+
+        Recorder plain = get(PATH, null, null, chained);
+        String eTag = plain.headers.get(HttpHeaders.ETAG);
+        assertEquals("\"" + StaticAssetFilter.getHash(bytes) + "\"", eTag);
+        assertArrayEquals(bytes, plain.body.toByteArray());
+
+        Recorder gzipped = get(PATH, "gzip, deflate", null, chained);
+        assertEquals("gzip", gzipped.headers.get(HttpHeaders.CONTENT_ENCODING));
+        assertNotEquals(eTag, gzipped.headers.get(HttpHeaders.ETAG)); // representations differ by encoding
+        assertTrue(gzipped.body.size() < bytes.length);
+
+        Recorder notModified = get(PATH, null, "\"other\", W/" + eTag, chained);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, notModified.status.get());
+        assertEquals(0, notModified.body.size());
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, get(PATH, null, "*", chained).status.get());
+        assertEquals(HttpServletResponse.SC_OK, get(PATH, "gzip", eTag, chained).status.get()); // tag of the other encoding
+        assertFalse(chained.get());
+    }
+
+    @Test
+    public void testFingerprintImmutable() throws Exception
+    {
+        AtomicBoolean chained = new AtomicBoolean();
+        String hash = StaticAssetFilter.getHash(Files.readAllBytes(root.resolve("static/app.js")));
+
+        assertEquals("public, max-age=" + StaticAssetFilter.IMMUTABLE_MAX_AGE + ", immutable", get(PATH + "?v=" + hash, null, null, chained).headers.get(HttpHeaders.CACHE_CONTROL));
+        assertEquals("public, max-age=" + StaticAssetFilter.DEFAULT_MAX_AGE, get(PATH + "?v=stale", null, null, chained).headers.get(HttpHeaders.CACHE_CONTROL));
+        assertEquals("public, max-age=" + StaticAssetFilter.DEFAULT_MAX_AGE, get(PATH, null, null, chained).headers.get(HttpHeaders.CACHE_CONTROL));
+        assertFalse(chained.get());
+    }
+
+    @Test
+    public void testOversizedAssetRemembered() throws Exception
+    {
+        Files.write(root.resolve("static/large.js"), new byte[StaticAssetFilter.MAX_ASSET_SIZE + 1]);
+
+        AtomicBoolean chained = new AtomicBoolean();
+        get("/static/large.js", null, null, chained);
+        assertTrue(chained.get()); // passed to the next filter
+        chained.set(false);
+        get("/static/large.js", null, null, chained);
+        assertTrue(chained.get());
+        assertEquals(Integer.valueOf(1), lookups.get("/static/large.js")); // not read again
+    }
+
+    @Test
+    public void testNoneMatch()
+    {
+        assertTrue(StaticAssetFilter.isNoneMatchFailed("\"a\"", "\"a\""));
+        assertTrue(StaticAssetFilter.isNoneMatchFailed("W/\"a\"", "\"a\""));
+        assertTrue(StaticAssetFilter.isNoneMatchFailed("\"b\",W/\"a\"", "\"a\""));
+        assertTrue(StaticAssetFilter.isNoneMatchFailed("*", "\"a\""));
+        assertFalse(StaticAssetFilter.isNoneMatchFailed("\"a,b\"", "\"a\""));
+        assertFalse(StaticAssetFilter.isNoneMatchFailed(null, "\"a\""));
+    }
+
+    @Test
+    public void testMissingAssetNotCached() throws Exception
+    {
+        AtomicBoolean chained = new AtomicBoolean();
+        get("/static/missing.js", null, null, chained);
+        assertTrue(chained.get()); // passed to the next filter
+        assertNull(filter.getAsset("/static/missing.js"));
+
+        Files.write(root.resolve("static/missing.js"), "alert();".getBytes(UTF_8));
+        assertNotNull(filter.getAsset("/static/missing.js")); // missing paths are not remembered
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.io;
+
+import com.atomgraph.client.Application;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.zip.GZIPOutputStream;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.HttpHeaders;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+import org.glassfish.jersey.client.ClientConfig;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class CompressionMetricsTest
+{
+
+    private byte[] body, gzipped;
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        StringBuilder turtle = new StringBuilder();
+        for (int i = 0; i < 1000; i++) turtle.append("<http://example/").append(i).append("> <http://example/p> \"value\" .\n");
+        body = turtle.toString().getBytes(UTF_8);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(baos))
+        {
+            gzip.write(body);
+        }
+        gzipped = baos.toByteArray();
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange ->
+        {
+            exchange.getResponseHeaders().add(HttpHeaders.CONTENT_TYPE, "text/turtle");
+            exchange.getResponseHeaders().add(HttpHeaders.CONTENT_ENCODING, "gzip");
+            exchange.sendResponseHeaders(200, gzipped.length);
+            try (OutputStream os = exchange.getResponseBody())
+            {
+                os.write(gzipped);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown()
+    {
+        server.stop(0);
+    }
+
+    @Test
+    public void testGzipByteCounts()
+    {
+        CompressionMetrics metrics = new CompressionMetrics();
+        Client client = Application.getClient(new ClientConfig(), metrics);
+        assertSame(metrics, CompressionMetrics.get(client.getConfiguration()));
+
+        String entity = client.target("http://localhost:" + server.getAddress().getPort() + "/").request().get(String.class);
+
+        assertEquals(new String(body, UTF_8), entity);
+        assertEquals(1, metrics.getResponses());
+        assertEquals(gzipped.length, metrics.getCompressedBytes());
+        assertEquals(body.length, metrics.getDecompressedBytes());
+    }
+
+    @Test
+    public void testUpstreamParsesCounted()
+    {
+        Client client = Application.getClient(new ClientConfig());
+        ModelProvider modelProvider = ModelProvider.get(client.getConfiguration());
+        assertNotNull(modelProvider);
+
+        Model model = client.target("http://localhost:" + server.getAddress().getPort() + "/").request().get(Model.class);
+
+        assertEquals(1000, model.size());
+        assertEquals(Long.valueOf(1), modelProvider.getParseCounts().get(Lang.TURTLE));
+    }
+
+}
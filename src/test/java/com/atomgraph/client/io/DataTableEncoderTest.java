@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.io;
+
+import java.io.StringWriter;
+import org.apache.jena.atlas.json.JSON;
+import org.apache.jena.atlas.json.JsonArray;
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class DataTableEncoderTest
+{
+
+    private Model model;
+    private Property count, date, note;
+
+    @Before
+    public void init()
+    {
+        model = ModelFactory.createDefaultModel();
+        count = model.createProperty("http://example/count");
+        date = model.createProperty("http://example/date");
+        note = model.createProperty("http://example/note");
+        model.createResource("http://example/a").
+            addLiteral(count, model.createTypedLiteral("01", XSDDatatype.XSDinteger)).
+            addLiteral(date, model.createTypedLiteral("2008-02-28T00:31:26.5Z", XSDDatatype.XSDdateTime)).
+            addProperty(note, "line \"one\"\n");
+        model.createResource("http://example/b").
+            addLiteral(count, model.createTypedLiteral("2.5", XSDDatatype.XSDdecimal)).
+            addProperty(note, model.createResource("http://example/note"));
+    }
+
+    @Test
+    public void testResultSet() throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        try (QueryExecution qex = QueryExecutionFactory.create("SELECT ?s ?count ?date { ?s <http://example/count> ?count OPTIONAL { ?s <http://example/date> ?date } } ORDER BY ?s", model))
+        {
+            new DataTableEncoder().write(qex.execSelect(), writer);
+        }
+
+        JsonObject table = JSON.parse(writer.toString());
+        JsonArray cols = table.get("cols").getAsArray();
+        assertEquals("string", cols.get(0).getAsObject().get("type").getAsString().value());
+        assertEquals("number", cols.get(1).getAsObject().get("type").getAsString().value());
+        assertEquals("date", cols.get(2).getAsObject().get("type").getAsString().value());
+
+        JsonArray rows = table.get("rows").getAsArray();
+        assertEquals(2, rows.size());
+        JsonArray first = rows.get(0).getAsObject().get("c").getAsArray();
+        assertEquals("http://example/a", first.get(0).getAsObject().get("v").getAsString().value());
+        assertEquals(1, first.get(1).getAsObject().get("v").getAsNumber().value().intValue());
+        assertEquals("Date(2008, 1, 28, 0, 31, 26.5)", first.get(2).getAsObject().get("v").getAsString().value());
+        assertTrue(rows.get(1).getAsObject().get("c").getAsArray().get(2).getAsObject().get("v").isNull()); // unbound
+    }
+
+    @Test
+    public void testModel() throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        new DataTableEncoder().write(model.getGraph(), writer);
+
+        JsonObject table = JSON.parse(writer.toString());
+        JsonArray cols = table.get("cols").getAsArray();
+        assertEquals(3, cols.size());
+        assertEquals(count.getURI(), cols.get(0).getAsObject().get("label").getAsString().value());
+        assertEquals("number", cols.get(0).getAsObject().get("type").getAsString().value());
+        assertEquals("string", cols.get(2).getAsObject().get("type").getAsString().value()); // literals and URIs
+        assertEquals(2, table.get("rows").getAsArray().size());
+    }
+
+}
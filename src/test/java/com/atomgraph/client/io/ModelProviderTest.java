@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.io;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.ErrorHandlerFactory;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class ModelProviderTest
+{
+
+    private static Model read(ModelProvider provider, String body, Lang lang)
+    {
+        return provider.read(ModelFactory.createDefaultModel(), new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), lang, "http://example/", ErrorHandlerFactory.errorHandlerStrict);
+    }
+
+    @Test
+    public void testFailedParseCountedSeparately()
+    {
+        ModelProvider provider = new ModelProvider(null, null);
+
+        assertEquals(1, read(provider, "<s> <p> <o> .", Lang.TURTLE).size());
+        assertEquals(1, read(provider, "<http://example/s> <http://example/p> <http://example/o> .", Lang.NTRIPLES).size());
+        try
+        {
+            read(provider, "<s> <p> .", Lang.TURTLE);
+            fail("Invalid Turtle was parsed");
+        }
+        catch (RiotException ex)
+        {
+            // expected
+        }
+
+        assertEquals(Long.valueOf(1), provider.getParseCounts().get(Lang.TURTLE));
+        assertEquals(Long.valueOf(1), provider.getParseCounts().get(Lang.NTRIPLES));
+        assertEquals(Long.valueOf(1), provider.getParseErrors().get(Lang.TURTLE));
+        assertNull(provider.getParseErrors().get(Lang.NTRIPLES));
+        assertTrue(provider.getParseTimes().containsKey(Lang.TURTLE));
+        assertEquals(provider.getParseCounts().keySet(), provider.getParseTimes().keySet());
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.util.IsoMatcher;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class ParallelLineParserTest
+{
+
+    private ForkJoinPool pool;
+    private ParallelLineParser parser;
+    private byte[] triples, quads;
+
+    @Before
+    public void setUp()
+    {
+        pool = new ForkJoinPool(4);
+        parser = new ParallelLineParser(pool, 100);
+
+        StringBuilder nt = new StringBuilder(), nq = new StringBuilder();
+        for (int i = 0; i < 50; i++)
+        {
+            String line = "<http://example/s" + i + "> <http://example/p> _:b" + (i % 5) + " ";
+            nt.append(line).append(".\n");
+            nq.append(line).append("<http://example/g").append(i % 3).append("> .\n");
+            nt.append("_:b").append(i % 5).append(" <http://example/label> \"label ").append(i).append("\" .\n");
+        }
+        triples = nt.toString().getBytes(StandardCharsets.UTF_8);
+        quads = nq.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @After
+    public void tearDown()
+    {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testTriplesIsomorphicToSequentialParse() throws IOException
+    {
+        Model expected = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(expected, new ByteArrayInputStream(triples), Lang.NTRIPLES);
+        Model actual = ModelFactory.createDefaultModel();
+        parser.parse(new ByteArrayInputStream(triples), Lang.NTRIPLES, null, null, StreamRDFLib.graph(actual.getGraph()));
+
+        assertEquals(5, actual.listObjectsOfProperty(actual.createProperty("http://example/p")).toList().size()); // blank nodes shared across chunks
+        assertTrue(expected.isIsomorphicWith(actual));
+    }
+
+    @Test
+    public void testQuadsIsomorphicToSequentialParse() throws IOException
+    {
+        Dataset expected = DatasetFactory.create();
+        RDFDataMgr.read(expected, new ByteArrayInputStream(quads), Lang.NQUADS);
+        Dataset actual = DatasetFactory.create();
+        parser.parse(new ByteArrayInputStream(quads), Lang.NQUADS, null, null, StreamRDFLib.dataset(actual.asDatasetGraph()));
+
+        assertTrue(IsoMatcher.isomorphic(expected.asDatasetGraph(), actual.asDatasetGraph()));
+    }
+
+    @Test
+    public void testChunkEndsOnLineBoundary() throws IOException
+    {
+        InputStream is = new ByteArrayInputStream(triples);
+        int length = 0;
+        byte[] chunk;
+        while ((chunk = parser.readChunk(is)) != null)
+        {
+            assertTrue(chunk.length >= parser.getChunkSize() || length + chunk.length == triples.length);
+            assertEquals('\n', chunk[chunk.length - 1]);
+            length += chunk.length;
+        }
+
+        assertEquals(triples.length, length);
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.List;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.QName;
+import net.sf.saxon.s9api.XdmDestination;
+import net.sf.saxon.s9api.XdmNode;
+import net.sf.saxon.s9api.XPathCompiler;
+import net.sf.saxon.s9api.Xslt30Transformer;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdfxml.xmloutput.impl.Basic;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class SortedRDFXMLWriterTest
+{
+
+    private static final String GROUP_SORT_TRIPLES = "src/main/webapp/static/com/atomgraph/client/xsl/group-sort-triples.xsl";
+    private static final String TRIPLES = "string-join(/rdf:RDF/*/*/concat(../@rdf:about, ' ', namespace-uri(), local-name(), ' ', @rdf:resource, ' ', @rdf:datatype, ' ', @xml:lang, ' ', .), '\n')";
+
+    private Processor processor;
+    private Model model;
+
+    @Before
+    public void init()
+    {
+        processor = new Processor(false);
+        model = ModelFactory.createDefaultModel();
+        for (int i = 9; i >= 0; i--)
+        {
+            Resource subject = model.createResource("http://example/s" + (i % 4));
+            subject.addProperty(RDFS.label, "label " + i, i % 2 == 0 ? "en" : "da").
+                addProperty(RDFS.seeAlso, model.createResource("http://example/o" + (9 - i))).
+                addLiteral(RDFS.comment, model.createTypedLiteral(String.valueOf(i), XSDDatatype.XSDinteger)).
+                addProperty(RDF.type, model.createResource("http://example/Class" + (i % 3)));
+        }
+    }
+
+    @Test
+    public void testSameOrderAsGroupSortTriples() throws Exception
+    {
+        ByteArrayOutputStream sorted = new ByteArrayOutputStream(), plain = new ByteArrayOutputStream();
+        new SortedRDFXMLWriter().write(model, sorted, null);
+        new Basic().write(model, plain, null);
+
+        Xslt30Transformer xsltTrans = processor.newXsltCompiler().compile(new StreamSource(new File(GROUP_SORT_TRIPLES))).load30();
+        xsltTrans.setGlobalContextItem(null);
+        xsltTrans.setInitialMode(new QName("ac", "https://w3id.org/atomgraph/client#", "GroupTriples"));
+        XdmDestination grouped = new XdmDestination();
+        xsltTrans.applyTemplates(new StreamSource(new ByteArrayInputStream(plain.toByteArray())), grouped);
+
+        XdmNode doc = processor.newDocumentBuilder().build(new StreamSource(new ByteArrayInputStream(sorted.toByteArray())));
+        assertEquals(getTriples(grouped.getXdmNode()), getTriples(doc));
+    }
+
+    @Test
+    public void testBlankNodesAfterURIs()
+    {
+        Resource bnode = model.createResource().addProperty(RDFS.label, "blank");
+        model.createResource("http://example/z").addProperty(RDFS.seeAlso, bnode).addProperty(RDFS.seeAlso, "literal");
+
+        List<Statement> stmts = SortedRDFXMLWriter.sort(model);
+        assertEquals(model.size(), stmts.size());
+        assertEquals(bnode, stmts.get(stmts.size() - 1).getSubject());
+
+        Statement literal = stmts.get(stmts.size() - 3), blank = stmts.get(stmts.size() - 2);
+        assertTrue(literal.getObject().isLiteral()); // literals, then blank nodes, then URIs
+        assertTrue(blank.getObject().isAnon());
+    }
+
+    private String getTriples(XdmNode doc) throws Exception
+    {
+        XPathCompiler xpathComp = processor.newXPathCompiler();
+        xpathComp.declareNamespace("rdf", RDF.getURI());
+        return xpathComp.evaluateSingle(TRIPLES, doc).getStringValue();
+    }
+
+}
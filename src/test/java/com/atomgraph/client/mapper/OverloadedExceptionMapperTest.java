@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.mapper;
+
+import com.atomgraph.client.MediaTypes;
+import com.atomgraph.client.exception.OverloadedException;
+import com.atomgraph.client.util.AdmissionController;
+import java.lang.reflect.Proxy;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Variant;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class OverloadedExceptionMapperTest
+{
+
+    /**
+     * Request that accepts the first variant and has no preconditions.
+     */
+    private static final Request REQUEST = new Request()
+    {
+
+        @Override
+        public String getMethod()
+        {
+            return "GET";
+        }
+
+        @Override
+        public Variant selectVariant(List<Variant> variants)
+        {
+            return variants.isEmpty() ? null : variants.get(0);
+        }
+
+        @Override
+        public Response.ResponseBuilder evaluatePreconditions(EntityTag eTag)
+        {
+            return null;
+        }
+
+        @Override
+        public Response.ResponseBuilder evaluatePreconditions(Date lastModified)
+        {
+            return null;
+        }
+
+        @Override
+        public Response.ResponseBuilder evaluatePreconditions(Date lastModified, EntityTag eTag)
+        {
+            return null;
+        }
+
+        @Override
+        public Response.ResponseBuilder evaluatePreconditions()
+        {
+            return null;
+        }
+
+    };
+
+    @Test
+    public void testServiceUnavailable()
+    {
+        Map<String, Object> attributes = new HashMap<>();
+        HttpServletRequest httpServletRequest = (HttpServletRequest)Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[]{ HttpServletRequest.class }, (proxy, method, args) ->
+        {
+            if (method.getName().equals("setAttribute")) attributes.put((String)args[0], args[1]);
+            return null;
+        });
+        OverloadedExceptionMapper mapper = new OverloadedExceptionMapper()
+        {
+
+            @Override
+            public Request getRequest()
+            {
+                return REQUEST;
+            }
+
+            @Override
+            public MediaTypes getMediaTypes()
+            {
+                return new MediaTypes();
+            }
+
+            @Override
+            public HttpServletRequest getHttpServletRequest()
+            {
+                return httpServletRequest;
+            }
+
+        };
+
+        Response response = mapper.toResponse(new OverloadedException("Server is overloaded", 5));
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+        assertEquals("5", response.getHeaderString(HttpHeaders.RETRY_AFTER));
+        assertNotNull(response.getEntity());
+        assertEquals(true, attributes.get(AdmissionController.SHED_ATTRIBUTE)); // error page is rendered without a permit
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.riot.lang;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFWriterRegistry;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class StreamingJSONLDWriterTest
+{
+
+    private Model model;
+
+    @Before
+    public void init()
+    {
+        RDFWriterRegistry.register(StreamingJSONLDWriter.FORMAT, StreamingJSONLDWriter.FACTORY);
+        RDFWriterRegistry.register(Lang.JSONLD, StreamingJSONLDWriter.FORMAT);
+
+        model = ModelFactory.createDefaultModel();
+        model.setNsPrefix("rdfs", RDFS.getURI());
+        model.setNsPrefix("ex", "http://example/");
+        model.setNsPrefix("", "http://example/default#");
+        Resource bnode = model.createResource().addProperty(RDFS.label, "blank \"quoted\"\n");
+        model.createResource("http://example/s").
+            addProperty(RDF.type, model.createResource("http://example/Class")).
+            addProperty(RDF.type, RDFS.Resource).
+            addProperty(RDFS.label, "label", "en").
+            addProperty(RDFS.label, "label").
+            addLiteral(RDFS.comment, model.createTypedLiteral("42", XSDDatatype.XSDinteger)).
+            addProperty(RDFS.seeAlso, bnode).
+            addProperty(model.createProperty("http://example/default#p"), model.createResource("http://other/o"));
+    }
+
+    @Test
+    public void testRoundTrip()
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        model.write(baos, Lang.JSONLD.getName());
+        String json = new String(baos.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"rdfs:label\""));
+        assertTrue(json.contains("\"@type\" : [ "));
+
+        Model parsed = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(parsed, new ByteArrayInputStream(baos.toByteArray()), Lang.JSONLD);
+        assertTrue(parsed.isIsomorphicWith(model));
+    }
+
+    @Test
+    public void testContextCached()
+    {
+        StreamingJSONLDWriter.JSONLDContext context = StreamingJSONLDWriter.getContext(model.getNsPrefixMap());
+
+        assertSame(context, StreamingJSONLDWriter.getContext(model.getNsPrefixMap()));
+        assertEquals("ex:s", context.compact("http://example/s"));
+        assertEquals("http://other/o", context.compact("http://other/o"));
+        assertFalse(context.getJSON().contains("default#")); // empty prefix is not a term
+        assertNull(StreamingJSONLDWriter.getContext(Collections.emptyMap()).getJSON());
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import com.atomgraph.client.exception.OverloadedException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class AdmissionControllerTest
+{
+
+    @Test
+    public void testAcquireTimeout()
+    {
+        AdmissionController controller = new AdmissionController(1, 1, 50);
+        controller.acquire();
+        assertEquals(1, controller.getActive());
+
+        long start = System.nanoTime();
+        try
+        {
+            controller.acquire();
+            fail("Permit acquired while all permits are held");
+        }
+        catch (OverloadedException ex)
+        {
+            assertTrue(System.nanoTime() - start >= 50_000_000L); // waited in the queue until the deadline
+            assertEquals(controller.getRetryAfter(), ex.getRetryAfter());
+        }
+        assertEquals(0, controller.getQueueLength());
+        assertEquals(1, controller.getRejections());
+
+        controller.release();
+        controller.acquire();
+        assertEquals(2, controller.getAdmissions());
+    }
+
+    @Test(expected = OverloadedException.class)
+    public void testQueueFull()
+    {
+        AdmissionController controller = new AdmissionController(1, 0, AdmissionController.DEFAULT_TIMEOUT);
+        controller.acquire();
+        controller.acquire(); // no queue, rejected straight away
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import com.atomgraph.core.MediaTypes;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.ws.rs.client.ClientBuilder;
+import org.apache.jena.util.LocationMapper;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class CacheWarmerTest
+{
+
+    private Path first, second;
+    private DataManagerImpl dataManager;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        first = Files.createTempFile("first", ".ttl");
+        Files.write(first, "<http://example/first#> a <http://www.w3.org/2002/07/owl#Ontology> .".getBytes(StandardCharsets.UTF_8));
+        second = Files.createTempFile("second", ".ttl");
+        Files.write(second, "<http://example/second#> a <http://www.w3.org/2002/07/owl#Ontology> .".getBytes(StandardCharsets.UTF_8));
+
+        LocationMapper mapper = new LocationMapper();
+        mapper.addAltEntry("http://example/first#", first.toString());
+        mapper.addAltEntry("http://example/second#", second.toString());
+        mapper.addAltEntry("http://example/missing#", first.resolveSibling("missing.ttl").toString());
+        dataManager = new DataManagerImpl(mapper, new ConcurrentHashMap<>(), ClientBuilder.newClient(), new MediaTypes(), true, false, false);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(first);
+        Files.deleteIfExists(second);
+    }
+
+    @Test
+    public void testWarmsUpMappedDocuments()
+    {
+        Map<String, Long> report = new CacheWarmer(dataManager, 2).warm();
+
+        assertEquals(2, report.size()); // the missing document is skipped
+        assertTrue(dataManager.hasCachedModel("http://example/first#"));
+        assertTrue(dataManager.hasCachedModel("http://example/second#"));
+        assertFalse(dataManager.hasCachedModel("http://example/missing#"));
+        assertTrue(dataManager.getSerializedModels().containsKey(dataManager.loadModel("http://example/first#")));
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.shared.AddDeniedException;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class CompactGraphTest
+{
+
+    private Model model, compact;
+    private Resource first, second, nested;
+
+    @Before
+    public void setUp()
+    {
+        model = ModelFactory.createDefaultModel();
+        model.setNsPrefix("rdfs", RDFS.getURI());
+        nested = model.createResource().addLiteral(RDFS.label, "nested");
+        first = model.createResource("http://example/first").
+                addProperty(RDF.type, RDFS.Class).
+                addLiteral(RDFS.label, "first").
+                addProperty(RDFS.label, "first", "en").
+                addProperty(RDFS.seeAlso, nested);
+        second = model.createResource("http://example/second").
+                addProperty(RDF.type, RDFS.Class).
+                addLiteral(RDFS.label, 2).
+                addProperty(RDFS.seeAlso, first);
+
+        compact = ModelFactory.createModelForGraph(new CompactGraph(model.getGraph()));
+    }
+
+    @Test
+    public void testIsomorphic()
+    {
+        assertEquals(model.size(), compact.size());
+        assertTrue(model.isIsomorphicWith(compact));
+        assertEquals(RDFS.getURI(), compact.getNsPrefixURI("rdfs"));
+    }
+
+    @Test
+    public void testFindBySubject()
+    {
+        assertEquals(4, compact.listStatements(first, null, (RDFNode)null).toList().size());
+        assertEquals(2, compact.listStatements(first, RDFS.label, (RDFNode)null).toList().size());
+        assertTrue(compact.contains(first, RDFS.label, "first", "en"));
+        assertFalse(compact.contains(first, RDFS.label, "second"));
+    }
+
+    @Test
+    public void testFindByObject()
+    {
+        assertEquals(2, compact.listStatements(null, RDF.type, RDFS.Class).toList().size());
+        assertEquals(1, compact.listStatements(null, null, first).toList().size());
+        assertTrue(compact.contains(null, null, nested));
+        assertFalse(compact.contains(null, RDF.type, nested));
+    }
+
+    @Test
+    public void testFindBySubjectAndObject()
+    {
+        Model shared = ModelFactory.createDefaultModel();
+        Resource a = shared.createResource("http://example/a"), z = shared.createResource("http://example/z");
+        Resource s = shared.createResource("http://example/s").
+                addProperty(RDFS.label, z).
+                addProperty(RDFS.seeAlso, a).
+                addProperty(RDF.type, z);
+        Model sharedCompact = ModelFactory.createModelForGraph(new CompactGraph(shared.getGraph()));
+
+        assertEquals(1, sharedCompact.listStatements(s, null, a).toList().size());
+        assertEquals(RDFS.seeAlso, sharedCompact.listStatements(s, null, a).next().getPredicate());
+        assertEquals(2, sharedCompact.listStatements(s, null, z).toList().size());
+        assertTrue(sharedCompact.contains(s, RDF.type, z));
+        assertFalse(sharedCompact.contains(s, RDF.type, a));
+    }
+
+    @Test
+    public void testFindByPredicate()
+    {
+        assertEquals(2, compact.listStatements(null, RDFS.seeAlso, (RDFNode)null).toList().size());
+        assertFalse(compact.contains(null, RDFS.comment));
+    }
+
+    @Test(expected = AddDeniedException.class)
+    public void testReadOnly()
+    {
+        compact.add(first, RDFS.comment, "comment");
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import com.atomgraph.core.MediaTypes;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.ws.rs.client.ClientBuilder;
+import javax.xml.transform.TransformerException;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.util.LocationMapper;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class DataManagerImplTest
+{
+
+    private static final String MAPPED_URI = "http://example/mapped#";
+
+    private Path mapped;
+    private LocationMapper mapper;
+    private DataManagerImpl dataManager;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        mapped = Files.createTempFile("mapped", ".ttl");
+        Files.write(mapped, "<http://example/mapped#> a <http://www.w3.org/2002/07/owl#Ontology> .".getBytes(StandardCharsets.UTF_8));
+
+        mapper = new LocationMapper();
+        mapper.addAltEntry(MAPPED_URI, mapped.toString());
+        dataManager = new DataManagerImpl(mapper, new ConcurrentHashMap<>(), ClientBuilder.newClient(), new MediaTypes(), false, false, false);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(mapped);
+    }
+
+    @Test
+    public void testMappedSerializationMemoized() throws IOException
+    {
+        dataManager.getMappedSource(MAPPED_URI);
+        byte[] bytes = dataManager.getSerializedMapped().get(MAPPED_URI);
+
+        assertNotNull(bytes);
+        dataManager.getMappedSource(MAPPED_URI);
+        assertSame(bytes, dataManager.getSerializedMapped().get(MAPPED_URI));
+        assertEquals(bytes.length, dataManager.getSerializedMapped().getWeight());
+    }
+
+    @Test
+    public void testCachedModelCompacted()
+    {
+        DataManagerImpl caching = new DataManagerImpl(mapper, new ConcurrentHashMap<>(), ClientBuilder.newClient(), new MediaTypes(), true, false, false);
+        Model loaded = caching.loadModel(MAPPED_URI);
+        Model cached = caching.getFromCache(MAPPED_URI);
+
+        assertTrue(cached.getGraph() instanceof CompactGraph);
+        assertTrue(loaded.isIsomorphicWith(cached));
+        assertEquals(1, ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM, cached).listOntologies().toList().size());
+    }
+
+    @Test
+    public void testMappedModelInterned()
+    {
+        Model loaded = dataManager.loadModel(MAPPED_URI);
+
+        assertEquals(1, loaded.size());
+        assertSame(dataManager.getNodeInterner().intern(NodeFactory.createURI(MAPPED_URI)), loaded.listStatements().next().getSubject().asNode());
+    }
+
+    @Test
+    public void testChangedMappedFileReread() throws Exception
+    {
+        assertTrue(dataManager.getLastModified(MAPPED_URI) > 0);
+        assertEquals(0L, dataManager.getLastModified("http://example/unmapped"));
+
+        dataManager.resolve("", MAPPED_URI);
+        byte[] bytes = dataManager.getSerializedMapped().get(MAPPED_URI);
+        dataManager.resolve("", MAPPED_URI);
+        assertSame(bytes, dataManager.getSerializedMapped().get(MAPPED_URI)); // unchanged file is not reread
+
+        Files.write(mapped, "<http://example/mapped#> <http://www.w3.org/2000/01/rdf-schema#label> \"changed\" .".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(mapped, FileTime.fromMillis(dataManager.getLastModified(MAPPED_URI) + 10000));
+        dataManager.resolve("", MAPPED_URI);
+        assertTrue(new String(dataManager.getSerializedMapped().get(MAPPED_URI), StandardCharsets.UTF_8).contains("changed"));
+    }
+
+    @Test
+    public void testSkippedFetchCounted() throws TransformerException
+    {
+        DataManagerImpl budgeted = new DataManagerImpl(mapper, new ConcurrentHashMap<>(), ClientBuilder.newClient(), new MediaTypes(), false, false, true,
+            null, null, 0L, null);
+
+        assertNotNull(budgeted.getURIResolver().resolve("", "http://unreachable.example/")); // budget is spent straight away
+        assertEquals(1, budgeted.getSkippedFetches());
+    }
+
+    @Test
+    public void testCachedSerializationInvalidated() throws IOException
+    {
+        Model model = ModelFactory.createDefaultModel();
+        model.createResource("http://example/resource").addLiteral(RDFS.label, "label");
+
+        dataManager.getCachedSource(model, "http://example/resource");
+        assertTrue(dataManager.getSerializedModels().containsKey(model));
+
+        model.createResource("http://example/resource").addLiteral(RDFS.comment, "changed");
+        assertFalse(dataManager.getSerializedModels().containsKey(model));
+        assertFalse(model.getGraph().getEventManager().listening()); // the listener unregisters itself
+    }
+
+    @Test
+    public void testLostRaceUnregistersListener() throws IOException
+    {
+        Model model = ModelFactory.createDefaultModel();
+        model.createResource("http://example/resource").addLiteral(RDFS.label, "label");
+        byte[] winner = new byte[0];
+        DataManagerImpl racing = new DataManagerImpl(mapper, new ConcurrentHashMap<>(), ClientBuilder.newClient(), new MediaTypes(), false, false, false)
+        {
+            @Override
+            protected byte[] serialize(Model serialized) throws IOException
+            {
+                getSerializedModels().put(serialized, winner); // a concurrent miss serializes first
+                return super.serialize(serialized);
+            }
+        };
+
+        racing.getCachedSource(model, "http://example/resource");
+
+        assertSame(winner, racing.getSerializedModels().get(model));
+        assertFalse(model.getGraph().getEventManager().listening());
+    }
+
+}
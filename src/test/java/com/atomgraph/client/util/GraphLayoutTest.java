@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.graph.GraphFactory;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class GraphLayoutTest
+{
+
+    private static final Node P = NodeFactory.createURI("http://example/p");
+
+    private static Node node(int i)
+    {
+        return NodeFactory.createURI("http://example/" + i);
+    }
+
+    /**
+     * Builds a chain of resources, each with a literal.
+     */
+    private static Graph chain(int length)
+    {
+        Graph graph = GraphFactory.createDefaultGraph();
+        for (int i = 0; i < length; i++)
+        {
+            graph.add(Triple.create(node(i), P, node(i + 1)));
+            graph.add(Triple.create(node(i), P, NodeFactory.createLiteral("literal " + i)));
+        }
+        return graph;
+    }
+
+    private static double distance(double[] p1, double[] p2)
+    {
+        return Math.sqrt((p1[0] - p2[0]) * (p1[0] - p2[0]) + (p1[1] - p2[1]) * (p1[1] - p2[1]));
+    }
+
+    @Test
+    public void testLayoutCachedByDigest()
+    {
+        GraphLayout layout = new GraphLayout();
+
+        GraphLayout.Layout first = layout.getLayout(chain(5));
+        assertSame(first, layout.getLayout(chain(5))); // equal graph, different instance
+        assertEquals(1, layout.getHits());
+
+        assertNotSame(first, layout.getLayout(chain(6)));
+        assertEquals(2, layout.size());
+    }
+
+    @Test
+    public void testLayout()
+    {
+        Graph graph = chain(300);
+        GraphLayout.Layout layout = new GraphLayout(GraphLayout.DEFAULT_SPRING_LENGTH, GraphLayout.DEFAULT_ITERATIONS, true, 1).getLayout(graph);
+
+        assertEquals(301, layout.getResources().size());
+        assertEquals(300, layout.getLiterals().size());
+        assertEquals(600, layout.getEdges().size());
+        assertNotNull(layout.getPosition(Triple.create(node(0), P, NodeFactory.createLiteral("literal 0"))));
+        assertNull(layout.getPosition(NodeFactory.createURI("http://example/missing")));
+
+        // linked nodes are kept close, but not on top of each other
+        double total = 0;
+        for (int i = 0; i < 300; i++)
+        {
+            double distance = distance(layout.getPosition(node(i)), layout.getPosition(node(i + 1)));
+            assertTrue(distance > GraphLayout.DEFAULT_SPRING_LENGTH / 4);
+            total += distance;
+        }
+        assertTrue(total / 300 < GraphLayout.DEFAULT_SPRING_LENGTH * 2.5);
+
+        // the layout is deterministic
+        GraphLayout.Layout other = new GraphLayout(GraphLayout.DEFAULT_SPRING_LENGTH, GraphLayout.DEFAULT_ITERATIONS, true, 1).getLayout(graph);
+        assertArrayEquals(layout.getPosition(node(42)), other.getPosition(node(42)), 0d);
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.om.NodeInfo;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.Xslt30Transformer;
+import net.sf.saxon.s9api.XsltExecutable;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class IndexedDocumentCacheTest
+{
+
+    private static final String DOC_URI = "http://example/vocabulary";
+    private static final String DOC = "<doc><res id='1' label='one'/><res id='2' label='two'/></doc>";
+    private static final String XSL = "<xsl:stylesheet version='3.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>" +
+        "<xsl:key name='resources' match='res' use='@id'/>" +
+        "<xsl:template name='xsl:initial-template'><xsl:value-of select=\"key('resources', '2', document('" + DOC_URI + "#'))/@label\"/></xsl:template>" +
+        "</xsl:stylesheet>";
+
+    private Processor processor;
+    private XsltExecutable xsltExec;
+    private IndexedDocumentCache cache;
+
+    @Before
+    public void init() throws Exception
+    {
+        processor = new Processor(false);
+        xsltExec = processor.newXsltCompiler().compile(new StreamSource(new StringReader(XSL)));
+        cache = new IndexedDocumentCache(processor);
+    }
+
+    @Test
+    public void testDocumentParsedOnce() throws Exception
+    {
+        NodeInfo doc = cache.getDocument(DOC_URI + "#", new StreamSource(new StringReader(DOC), DOC_URI), 0L);
+
+        assertSame(doc, cache.getDocument(DOC_URI, new StreamSource(new StringReader(DOC), DOC_URI), 0L));
+        assertSame(doc, cache.get(DOC_URI));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testKeyIndexesReused() throws Exception
+    {
+        NodeInfo doc = cache.getDocument(DOC_URI, new StreamSource(new StringReader(DOC), DOC_URI), 0L);
+        assertTrue(cache.isPinningKeyIndexes()); // verified with this Saxon version
+
+        Xslt30Transformer first = transform("two");
+        assertNotNull(first.getUnderlyingController().getUserData(doc.getTreeInfo(), IndexedDocumentCache.KEY_INDEX_LIST));
+        cache.pinKeyIndexes(first.getUnderlyingController());
+        assertNotNull(doc.getTreeInfo().getUserData(IndexedDocumentCache.KEY_INDEX_LIST));
+
+        // the index built by the first transformation is reused instead of being rebuilt
+        Xslt30Transformer second = transform("two");
+        assertNull(second.getUnderlyingController().getUserData(doc.getTreeInfo(), IndexedDocumentCache.KEY_INDEX_LIST));
+    }
+
+    @Test
+    public void testChangedDocumentReparsed() throws Exception
+    {
+        NodeInfo doc = cache.getDocument(DOC_URI, new StreamSource(new StringReader(DOC), DOC_URI), 1L);
+
+        NodeInfo changed = cache.getDocument(DOC_URI, new StreamSource(new StringReader(DOC), DOC_URI), 2L);
+        assertNotSame(doc, changed);
+        assertSame(changed, cache.get(DOC_URI));
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getHits());
+    }
+
+    private Xslt30Transformer transform(String expected) throws Exception
+    {
+        Xslt30Transformer xsltTrans = xsltExec.load30();
+        xsltTrans.setURIResolver((href, base) -> cache.get(href));
+        StringWriter writer = new StringWriter();
+        xsltTrans.callTemplate(null, processor.newSerializer(writer));
+        assertTrue(writer.toString().endsWith(expected));
+        return xsltTrans;
+    }
+
+}
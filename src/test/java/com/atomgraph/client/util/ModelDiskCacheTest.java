@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.stream.Stream;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.GraphBase;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class ModelDiskCacheTest
+{
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("models");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        try (Stream<Path> paths = Files.walk(directory))
+        {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static Model model(String uri, int size)
+    {
+        Model model = ModelFactory.createDefaultModel();
+        for (int i = 0; i < size; i++) model.createResource(uri).addLiteral(RDFS.label, "label " + i);
+        return model;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        ModelDiskCache cache = new ModelDiskCache(directory);
+        Model model = model("http://example/a", 3);
+        cache.put("http://example/a", model, "\"v1\"", "Mon, 19 Oct 2020 10:00:00 GMT");
+
+        Properties validators = cache.getValidators("http://example/a");
+        assertEquals("\"v1\"", validators.getProperty(ModelDiskCache.ETAG_KEY));
+        assertEquals("Mon, 19 Oct 2020 10:00:00 GMT", validators.getProperty(ModelDiskCache.LAST_MODIFIED_KEY));
+        assertTrue(model.isIsomorphicWith(cache.get("http://example/a")));
+        assertTrue(cache.getSize() > 0);
+
+        cache.put("http://example/a", model("http://example/a", 1), null, null);
+        assertNull(cache.getValidators("http://example/a").getProperty(ModelDiskCache.ETAG_KEY));
+        assertEquals(1, cache.get("http://example/a").size());
+
+        cache.remove("http://example/a");
+        assertNull(cache.getValidators("http://example/a"));
+        assertNull(cache.get("http://example/a"));
+        assertEquals(0, cache.getSize());
+        assertNull(cache.get("http://example/missing"));
+    }
+
+    @Test
+    public void testPrunesLeastRecentlyUsed() throws IOException
+    {
+        ModelDiskCache unbounded = new ModelDiskCache(directory);
+        unbounded.put("http://example/a", model("http://example/a", 50), null, null);
+        long entrySize = unbounded.getSize();
+        unbounded.put("http://example/b", model("http://example/b", 50), null, null);
+        Files.setLastModifiedTime(unbounded.getPath("http://example/a", ModelDiskCache.DATA_EXTENSION), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(unbounded.getPath("http://example/b", ModelDiskCache.DATA_EXTENSION), FileTime.fromMillis(2000));
+
+        ModelDiskCache cache = new ModelDiskCache(directory, entrySize * 2 + entrySize / 2);
+        assertEquals(2 * entrySize, cache.getSize(), entrySize / 10);
+        assertNotNull(cache.get("http://example/a")); // touches a, b becomes the least recently used
+
+        cache.put("http://example/c", model("http://example/c", 50), null, null);
+
+        assertNotNull(cache.get("http://example/a"));
+        assertNull(cache.getValidators("http://example/b"));
+        assertFalse(Files.exists(cache.getPath("http://example/b", ModelDiskCache.DATA_EXTENSION)));
+        assertNotNull(cache.get("http://example/c"));
+        assertTrue(cache.getSize() <= cache.getMaxSize());
+    }
+
+    @Test
+    public void testPrunedOnStartup() throws IOException
+    {
+        ModelDiskCache unbounded = new ModelDiskCache(directory);
+        unbounded.put("http://example/a", model("http://example/a", 50), null, null);
+        unbounded.put("http://example/b", model("http://example/b", 50), null, null);
+
+        ModelDiskCache cache = new ModelDiskCache(directory, 0);
+        assertEquals(0, cache.getSize());
+        assertNull(cache.get("http://example/a"));
+        assertNull(cache.get("http://example/b"));
+    }
+
+    @Test
+    public void testFailedWriteLeavesNoTempFiles() throws IOException
+    {
+        ModelDiskCache cache = new ModelDiskCache(directory);
+        Model failing = ModelFactory.createModelForGraph(new GraphBase()
+        {
+
+            @Override
+            protected ExtendedIterator<Triple> graphBaseFind(Triple triplePattern)
+            {
+                throw new IllegalStateException("Cannot list triples");
+            }
+
+        });
+        cache.put("http://example/a", failing, null, null);
+
+        assertNull(cache.getValidators("http://example/a"));
+        try (Stream<Path> paths = Files.list(directory))
+        {
+            assertFalse(paths.anyMatch(path -> path.toString().endsWith(ModelDiskCache.TEMP_EXTENSION)));
+        }
+    }
+
+}
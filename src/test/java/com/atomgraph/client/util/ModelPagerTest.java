@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class ModelPagerTest
+{
+
+    private Model model;
+    private Resource first, second, nested;
+
+    @Before
+    public void setUp()
+    {
+        model = ModelFactory.createDefaultModel();
+        nested = model.createResource().addLiteral(RDFS.label, "nested");
+        first = model.createResource("http://example/first").
+                addLiteral(RDFS.label, "first").
+                addProperty(RDFS.seeAlso, nested);
+        second = model.createResource("http://example/second").
+                addLiteral(RDFS.label, "second");
+    }
+
+    @Test
+    public void testCountExcludesNestedBlankNodes()
+    {
+        assertEquals(3, new ModelPager(model).getCount());
+    }
+
+    @Test
+    public void testFirstPageIncludesNestedBlankNode()
+    {
+        Model page = new ModelPager(model).getPage(0, 2);
+
+        assertTrue(page.contains(first, RDFS.label));
+        assertTrue(page.contains(first, RDFS.seeAlso, nested));
+        assertTrue(page.contains(nested, RDFS.label));
+        assertFalse(page.contains(second, RDFS.label));
+    }
+
+    @Test
+    public void testLastPage()
+    {
+        Model page = new ModelPager(model).getPage(2, 2);
+
+        assertEquals(1, page.size());
+        assertTrue(page.contains(second, RDFS.label));
+    }
+
+    @Test
+    public void testOffsetBeyondCount()
+    {
+        assertTrue(new ModelPager(model).getPage(10, 2).isEmpty());
+    }
+
+    @Test
+    public void testLargeLimit()
+    {
+        assertEquals(1, new ModelPager(model).getPage(2, Long.MAX_VALUE).size());
+        assertTrue(new ModelPager(model).getPage(Long.MAX_VALUE, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeOffset()
+    {
+        new ModelPager(model).getPage(-1, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeLimit()
+    {
+        new ModelPager(model).getPage(0, -2);
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import com.atomgraph.client.util.NegativeCache.FailureClass;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.EnumMap;
+import java.util.Map;
+import javax.net.ssl.SSLHandshakeException;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.Response;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class NegativeCacheTest
+{
+
+    private NegativeCache cache;
+
+    @Before
+    public void setUp()
+    {
+        Map<FailureClass, Long> ttls = new EnumMap<>(FailureClass.class);
+        ttls.put(FailureClass.CLIENT_ERROR, 60000L);
+        ttls.put(FailureClass.SERVER_ERROR, 0L);
+        cache = new NegativeCache(ttls, 2);
+    }
+
+    @Test
+    public void testCachesFailuresWithTTL()
+    {
+        cache.put("http://example/gone", FailureClass.CLIENT_ERROR, "Status code: 404");
+        cache.put("http://example/down", FailureClass.SERVER_ERROR, "Status code: 503");
+        cache.put("http://example/slow", FailureClass.TIMEOUT, "Read timed out");
+
+        assertEquals(FailureClass.CLIENT_ERROR, cache.get("http://example/gone").getFailureClass());
+        assertEquals("Status code: 404", cache.get("http://example/gone").getMessage());
+        assertNull(cache.get("http://example/down"));
+        assertNull(cache.get("http://example/slow"));
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void testBoundedSize()
+    {
+        cache.put("http://example/1", FailureClass.CLIENT_ERROR, "1");
+        cache.put("http://example/2", FailureClass.CLIENT_ERROR, "2");
+        cache.put("http://example/3", FailureClass.CLIENT_ERROR, "3");
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("http://example/3"));
+    }
+
+    @Test
+    public void testFailureClassOfStatus()
+    {
+        assertEquals(FailureClass.CLIENT_ERROR, NegativeCache.getFailureClass(Response.Status.NOT_FOUND));
+        assertEquals(FailureClass.SERVER_ERROR, NegativeCache.getFailureClass(Response.Status.BAD_GATEWAY));
+        assertNull(NegativeCache.getFailureClass(Response.Status.SEE_OTHER));
+    }
+
+    @Test
+    public void testFailureClassOfException()
+    {
+        assertEquals(FailureClass.TIMEOUT, NegativeCache.getFailureClass(new ProcessingException(new SocketTimeoutException("Read timed out"))));
+        assertEquals(FailureClass.CONNECTION_ERROR, NegativeCache.getFailureClass(new ProcessingException(new UnknownHostException("nowhere.example"))));
+        assertEquals(FailureClass.CONNECTION_ERROR, NegativeCache.getFailureClass(new ProcessingException(new ConnectException("Connection refused"))));
+        assertEquals(FailureClass.TLS_ERROR, NegativeCache.getFailureClass(new ProcessingException(new SSLHandshakeException("PKIX path building failed"))));
+        assertEquals(FailureClass.READ_ERROR, NegativeCache.getFailureClass(new IOException("Premature EOF")));
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import com.atomgraph.client.io.InterningStreamRDF;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.graph.GraphFactory;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class NodeInternerTest
+{
+
+    private NodeInterner interner;
+
+    @Before
+    public void setUp()
+    {
+        interner = new NodeInterner(8);
+    }
+
+    @Test
+    public void testInternsEqualURIs()
+    {
+        Node first = NodeFactory.createURI("http://example/" + "uri");
+        Node second = NodeFactory.createURI("http://example/" + "uri");
+        assertNotSame(first, second);
+
+        assertSame(first, interner.intern(first));
+        assertSame(first, interner.intern(second));
+        assertEquals(2, interner.getLookups());
+        assertEquals(1, interner.getHits());
+        assertTrue(interner.getBytesSaved() > 0);
+    }
+
+    @Test
+    public void testSkipsBlankNodesAndLongLiterals()
+    {
+        Node bnode = NodeFactory.createBlankNode();
+        Node literal = NodeFactory.createLiteral("longer than eight");
+        Node other = NodeFactory.createLiteral("longer than eight");
+
+        assertSame(bnode, interner.intern(bnode));
+        assertSame(literal, interner.intern(literal));
+        assertSame(other, interner.intern(other));
+        assertEquals(0, interner.getLookups());
+    }
+
+    @Test
+    public void testInternsParsedTriples()
+    {
+        Node p = interner.intern(NodeFactory.createURI("http://example/p"));
+        Graph graph = GraphFactory.createDefaultGraph();
+        RDFParser.fromString("<http://example/s> <http://example/p> \"o\" .").
+            lang(Lang.NTRIPLES).
+            build().
+            parse(new InterningStreamRDF(StreamRDFLib.graph(graph), interner));
+
+        assertEquals(1, graph.size());
+        assertSame(p, graph.find().next().getPredicate());
+        assertEquals(4, interner.getLookups());
+        assertEquals(1, interner.getHits());
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDFS;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class OffHeapModelCacheTest
+{
+
+    private static Model model(String uri, int size)
+    {
+        Model model = ModelFactory.createDefaultModel();
+        for (int i = 0; i < size; i++) model.createResource(uri).addLiteral(RDFS.label, "label " + i);
+        return model;
+    }
+
+    @Test
+    public void testReturnsPreviousModel()
+    {
+        OffHeapModelCache cache = new OffHeapModelCache(0); // nothing stays decoded
+        Model first = model("http://example/a", 2);
+
+        assertNull(cache.put("http://example/a", first));
+        assertTrue(first.isIsomorphicWith(cache.put("http://example/a", model("http://example/a", 3))));
+        assertEquals(3, cache.remove("http://example/a").size());
+        assertNull(cache.remove("http://example/a"));
+        assertEquals(0, cache.getOffHeapBytes());
+    }
+
+    @Test
+    public void testDecodedBoundedByBytes()
+    {
+        Model a = model("http://example/a", 50), b = model("http://example/b", 50);
+        OffHeapModelCache probe = new OffHeapModelCache();
+        probe.put("http://example/a", a);
+        long size = probe.getOffHeapBytes();
+
+        OffHeapModelCache cache = new OffHeapModelCache(size + size / 2); // only one model fits decoded
+        cache.put("http://example/a", a);
+        assertSame(a, cache.get("http://example/a"));
+        assertEquals(0, cache.getDecodes());
+
+        cache.put("http://example/b", b); // evicts a from the decoded models
+        assertSame(b, cache.get("http://example/b"));
+        Model decoded = cache.get("http://example/a");
+        assertNotSame(a, decoded);
+        assertTrue(a.isIsomorphicWith(decoded));
+        assertEquals(1, cache.getDecodes());
+        assertSame(decoded, cache.get("http://example/a"));
+        assertTrue(cache.getDecodedBytes() <= size + size / 2);
+        assertEquals(2, cache.size());
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.s9api.DocumentBuilder;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.QName;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.WhitespaceStrippingPolicy;
+import net.sf.saxon.s9api.XPathCompiler;
+import net.sf.saxon.s9api.XPathSelector;
+import net.sf.saxon.s9api.XdmNode;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDFS;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class ResultSetSourceTest
+{
+
+    public static final String QUERY = "SELECT ?s ?label ?seeAlso { ?s <" + RDFS.label.getURI() + "> ?label OPTIONAL { ?s <" + RDFS.seeAlso.getURI() + "> ?seeAlso } } ORDER BY ?s";
+
+    private final Processor processor = new Processor(false);
+    private Model model;
+
+    @Before
+    public void setUp()
+    {
+        model = ModelFactory.createDefaultModel();
+        model.createResource("http://example/plain").addLiteral(RDFS.label, "plain");
+        model.createResource("http://example/lang").addProperty(RDFS.label, "lang", "en").
+            addProperty(RDFS.seeAlso, model.createResource("http://example/plain"));
+        model.createResource("http://example/typed").addLiteral(RDFS.label, 42);
+    }
+
+    private ResultSet select()
+    {
+        return QueryExecutionFactory.create(QUERY, model).execSelect();
+    }
+
+    @Test
+    public void testEqualsSerializedResults() throws SaxonApiException
+    {
+        DocumentBuilder builder = processor.newDocumentBuilder();
+        builder.setWhitespaceStrippingPolicy(WhitespaceStrippingPolicy.ALL); // ignore indentation
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ResultSetFormatter.outputAsXML(baos, select());
+        XdmNode expected = builder.build(new StreamSource(new ByteArrayInputStream(baos.toByteArray())));
+        XdmNode actual = builder.build(new ResultSetSource(select(), "http://example/results"));
+
+        XPathCompiler xpathComp = processor.newXPathCompiler();
+        xpathComp.declareVariable(new QName("expected"));
+        xpathComp.declareVariable(new QName("actual"));
+        XPathSelector deepEqual = xpathComp.compile("deep-equal($expected, $actual)").load();
+        deepEqual.setVariable(new QName("expected"), expected);
+        deepEqual.setVariable(new QName("actual"), actual);
+        assertTrue(deepEqual.effectiveBooleanValue());
+        assertEquals("http://example/results", actual.getBaseURI().toString());
+    }
+
+}
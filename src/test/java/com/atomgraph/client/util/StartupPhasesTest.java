@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class StartupPhasesTest
+{
+
+    @Test
+    public void testPhasesRunConcurrently() throws Exception
+    {
+        StartupPhases startup = new StartupPhases();
+        CountDownLatch latch = new CountDownLatch(2);
+
+        // each phase only finishes once the other one has started
+        Future<Boolean> first = startup.submit("first", () -> { latch.countDown(); return latch.await(5, TimeUnit.SECONDS); });
+        Boolean second = startup.run("second", () -> { latch.countDown(); return latch.await(5, TimeUnit.SECONDS); });
+        Map<String, Long> times = startup.await();
+
+        assertTrue(first.get());
+        assertTrue(second);
+        assertEquals(2, times.size());
+        assertTrue(times.containsKey("first"));
+        assertTrue(times.containsKey("second"));
+    }
+
+    @Test
+    public void testFailedPhaseIsTimed()
+    {
+        StartupPhases startup = new StartupPhases();
+        Future<Object> failed = startup.submit("failed", () -> { throw new IllegalStateException(); });
+        Map<String, Long> times = startup.await();
+
+        assertTrue(times.containsKey("failed"));
+        try
+        {
+            failed.get();
+            fail("Failure should be reported by the future");
+        }
+        catch (InterruptedException | ExecutionException ex)
+        {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+}
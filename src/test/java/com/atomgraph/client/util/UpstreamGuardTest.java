@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import com.atomgraph.client.util.UpstreamGuard.State;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class UpstreamGuardTest
+{
+
+    @Test
+    public void testBulkheadRejectsExcessRequests()
+    {
+        UpstreamGuard guard = new UpstreamGuard(1, 3, 60000L);
+
+        assertTrue(guard.tryAcquire("slow.example"));
+        assertFalse(guard.tryAcquire("slow.example"));
+        assertTrue(guard.tryAcquire("other.example")); // hosts are isolated
+        
+        guard.release("slow.example", true);
+        assertTrue(guard.tryAcquire("slow.example"));
+        assertEquals(1, guard.getRejections());
+    }
+
+    @Test
+    public void testCircuitOpensAfterConsecutiveFailures()
+    {
+        UpstreamGuard guard = new UpstreamGuard(10, 2, 60000L);
+
+        assertTrue(guard.tryAcquire("bad.example"));
+        guard.release("bad.example", false);
+        assertEquals(State.CLOSED, guard.getState("bad.example"));
+        
+        assertTrue(guard.tryAcquire("bad.example"));
+        guard.release("bad.example", false);
+        assertEquals(State.OPEN, guard.getState("bad.example"));
+        assertFalse(guard.tryAcquire("bad.example"));
+    }
+
+    @Test
+    public void testHalfOpenProbe()
+    {
+        UpstreamGuard guard = new UpstreamGuard(10, 1, 0L);
+
+        assertTrue(guard.tryAcquire("flaky.example"));
+        guard.release("flaky.example", false);
+        assertEquals(State.OPEN, guard.getState("flaky.example"));
+
+        assertTrue(guard.tryAcquire("flaky.example")); // probe
+        assertEquals(State.HALF_OPEN, guard.getState("flaky.example"));
+        assertFalse(guard.tryAcquire("flaky.example")); // only one probe at a time
+        guard.release("flaky.example", false);
+        assertEquals(State.OPEN, guard.getState("flaky.example"));
+
+        assertTrue(guard.tryAcquire("flaky.example"));
+        guard.release("flaky.example", true);
+        assertEquals(State.CLOSED, guard.getState("flaky.example"));
+    }
+
+    @Test
+    public void testIdleClosedHostsEvicted()
+    {
+        UpstreamGuard guard = new UpstreamGuard(10, 1, 60000L, 0L);
+
+        assertTrue(guard.tryAcquire("busy.example"));
+        assertTrue(guard.tryAcquire("bad.example"));
+        guard.release("bad.example", false);
+        assertTrue(guard.tryAcquire("idle.example"));
+        guard.release("idle.example", true);
+        assertEquals(3, guard.getHostCount());
+
+        guard.evictIdle();
+        assertEquals(2, guard.getHostCount()); // requests in flight and open circuits are kept
+        assertEquals(State.OPEN, guard.getState("bad.example"));
+        
+        guard.release("busy.example", true);
+        guard.evictIdle();
+        assertEquals(1, guard.getHostCount());
+    }
+
+    @Test
+    public void testNeutralReleaseReopensProbe()
+    {
+        UpstreamGuard guard = new UpstreamGuard(1, 1, 0L);
+
+        assertTrue(guard.tryAcquire("flaky.example"));
+        guard.release("flaky.example", false);
+        assertTrue(guard.tryAcquire("flaky.example")); // probe
+        guard.release("flaky.example"); // cut short by the caller
+        assertEquals(State.OPEN, guard.getState("flaky.example"));
+
+        assertTrue(guard.tryAcquire("flaky.example")); // the permit was released, next probe is let through
+        assertEquals(State.HALF_OPEN, guard.getState("flaky.example"));
+    }
+
+}
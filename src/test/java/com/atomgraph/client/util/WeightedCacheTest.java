@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class WeightedCacheTest
+{
+
+    @Test
+    public void testEvictsLeastRecentlyUsed()
+    {
+        WeightedCache<String, String> cache = new WeightedCache<>(10);
+        cache.put("a", "a", 4);
+        cache.put("b", "b", 4);
+        cache.get("a"); // b is now the least recently used
+        cache.put("c", "c", 4);
+
+        assertTrue(cache.containsKey("a"));
+        assertFalse(cache.containsKey("b"));
+        assertTrue(cache.containsKey("c"));
+        assertEquals(8, cache.getWeight());
+    }
+
+    @Test
+    public void testReturnsPreviousValue()
+    {
+        WeightedCache<String, String> cache = new WeightedCache<>(10);
+
+        assertNull(cache.put("a", "first", 4));
+        assertEquals("first", cache.put("a", "second", 6));
+        assertEquals(6, cache.getWeight());
+        assertEquals("second", cache.putIfAbsent("a", "third", 1));
+        assertEquals("second", cache.remove("a"));
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void testTooHeavyValueNotCached()
+    {
+        WeightedCache<String, String> cache = new WeightedCache<>(10);
+        cache.put("a", "a", 4);
+        cache.put("b", "b", 11);
+
+        assertTrue(cache.containsKey("a"));
+        assertFalse(cache.containsKey("b"));
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamSource;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class ZipURIResolverTest
+{
+
+    private static final String STYLESHEET = "<xsl:stylesheet xmlns:xsl='http://www.w3.org/1999/XSL/Transform' version='3.0'><xsl:import href='imports/default.xsl'/></xsl:stylesheet>";
+    private static final String IMPORT = "<xsl:stylesheet xmlns:xsl='http://www.w3.org/1999/XSL/Transform' version='3.0'/>";
+
+    private Path path;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        path = Files.createTempFile("stylesheets", ".zip");
+        try (OutputStream os = Files.newOutputStream(path); ZipOutputStream zos = new ZipOutputStream(os))
+        {
+            zos.putNextEntry(new ZipEntry("xsl/"));
+            zos.closeEntry();
+            zos.putNextEntry(new ZipEntry("xsl/layout.xsl"));
+            zos.write(STYLESHEET.getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+            ZipEntry stored = new ZipEntry("xsl/imports/default.xsl");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(IMPORT.length());
+            CRC32 crc = new CRC32();
+            crc.update(IMPORT.getBytes(StandardCharsets.UTF_8));
+            stored.setCrc(crc.getValue());
+            zos.putNextEntry(stored);
+            zos.write(IMPORT.getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void testZipFileEntries() throws IOException, TransformerException
+    {
+        try (ZipFile zipFile = new ZipFile(path.toFile()))
+        {
+            assertEntries(new ZipURIResolver(zipFile));
+        }
+    }
+
+    @Test
+    public void testMappedEntries() throws IOException, TransformerException
+    {
+        assertEntries(new ZipURIResolver(path, ZipURIResolver.DEFAULT_CACHE_SIZE));
+    }
+
+    @Test
+    public void testCacheIsBounded() throws IOException, TransformerException
+    {
+        ZipURIResolver resolver = new ZipURIResolver(path, STYLESHEET.length());
+        StreamSource first = (StreamSource)resolver.resolve("xsl/layout.xsl", null);
+        StreamSource second = (StreamSource)resolver.resolve("xsl/layout.xsl", null);
+        assertEquals(STYLESHEET, IOUtils.toString(second.getInputStream(), StandardCharsets.UTF_8));
+        assertEquals(first.getSystemId(), second.getSystemId());
+    }
+
+    @Test
+    public void testCP437Names() throws IOException, TransformerException
+    {
+        Path cp437 = Files.createTempFile("cp437", ".zip");
+        try
+        {
+            try (OutputStream os = Files.newOutputStream(cp437); ZipOutputStream zos = new ZipOutputStream(os, Charset.forName("IBM437"))) // language encoding flag is not set
+            {
+                zos.putNextEntry(new ZipEntry("xsl/\u00e9t\u00e9.xsl"));
+                zos.write(IMPORT.getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+
+            assertNotNull(new ZipURIResolver(cp437, ZipURIResolver.DEFAULT_CACHE_SIZE).resolve("xsl/\u00e9t\u00e9.xsl", null));
+        }
+        finally
+        {
+            Files.deleteIfExists(cp437);
+        }
+    }
+
+    @Test
+    public void testDeclaredSizeVerified() throws IOException, TransformerException
+    {
+        setCentralDirectoryField("xsl/layout.xsl", 24, STYLESHEET.length() + 1); // uncompressed size
+        assertNull(new ZipURIResolver(path, ZipURIResolver.DEFAULT_CACHE_SIZE).resolve("xsl/layout.xsl", null));
+    }
+
+    @Test(expected = ZipException.class)
+    public void testZip64Rejected() throws IOException
+    {
+        setCentralDirectoryField("xsl/layout.xsl", 24, 0xFFFFFFFF); // size is in the ZIP64 extra field
+        new ZipURIResolver(path, ZipURIResolver.DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Overwrites a 4-byte field of the central directory header of the entry.
+     */
+    private void setCentralDirectoryField(String name, int fieldOffset, int value) throws IOException
+    {
+        byte[] bytes = Files.readAllBytes(path);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length - 46 - nameBytes.length; i++)
+            if (buffer.getInt(i) == 0x02014b50 && new String(bytes, i + 46, nameBytes.length, StandardCharsets.UTF_8).equals(name))
+            {
+                buffer.putInt(i + fieldOffset, value);
+                Files.write(path, bytes);
+                return;
+            }
+
+        fail("Central directory header of entry " + name + " not found");
+    }
+
+    protected void assertEntries(ZipURIResolver resolver) throws IOException, TransformerException
+    {
+        assertEquals(2, resolver.getEntries().size());
+        
+        StreamSource stylesheet = (StreamSource)resolver.resolve("xsl/layout.xsl", null);
+        assertEquals(STYLESHEET, IOUtils.toString(stylesheet.getInputStream(), StandardCharsets.UTF_8));
+        assertEquals(resolver.getSystemId("xsl/layout.xsl"), stylesheet.getSystemId());
+
+        StreamSource imported = (StreamSource)resolver.resolve("imports/default.xsl", stylesheet.getSystemId()); // relative to the importing stylesheet
+        assertEquals(IMPORT, IOUtils.toString(imported.getInputStream(), StandardCharsets.UTF_8));
+
+        assertNull(resolver.resolve("missing.xsl", stylesheet.getSystemId()));
+    }
+
+}
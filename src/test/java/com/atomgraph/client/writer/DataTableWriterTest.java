@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.writer;
+
+import com.atomgraph.client.MediaType;
+import com.atomgraph.client.MediaTypes;
+import java.io.ByteArrayOutputStream;
+import javax.ws.rs.core.MultivaluedHashMap;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import org.apache.jena.atlas.json.JSON;
+import org.apache.jena.atlas.json.JsonObject;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDFS;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class DataTableWriterTest
+{
+
+    private final DataTableWriter writer = new DataTableWriter();
+    private Model model;
+
+    @Before
+    public void setUp()
+    {
+        model = ModelFactory.createDefaultModel();
+        for (int i = 0; i < 3; i++) model.createResource("http://example/" + i).addLiteral(RDFS.label, "label " + i);
+    }
+
+    private String write(Object entity, Class<?> type) throws Exception
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writer.writeTo(entity, type, type, null, MediaType.APPLICATION_DATATABLE_JSON_TYPE, new MultivaluedHashMap<>(), baos);
+        return baos.toString(UTF_8.name());
+    }
+
+    @Test
+    public void testWriteableTypesAdvertised()
+    {
+        MediaTypes mediaTypes = new MediaTypes();
+        for (Class<?> type : new Class<?>[]{ Model.class, Dataset.class, ResultSet.class })
+        {
+            assertTrue(writer.isWriteable(type, type, null, MediaType.APPLICATION_DATATABLE_JSON_TYPE));
+            assertTrue(type.getSimpleName(), mediaTypes.getWritable(type).stream().anyMatch(mediaType -> mediaType.isCompatible(MediaType.APPLICATION_DATATABLE_JSON_TYPE)));
+        }
+        assertFalse(writer.isWriteable(String.class, String.class, null, MediaType.APPLICATION_DATATABLE_JSON_TYPE));
+    }
+
+    @Test
+    public void testDatasetWrittenAsDefaultModel() throws Exception
+    {
+        String json = write(DatasetFactory.create(model), Dataset.class);
+
+        assertEquals(write(model, Model.class), json);
+        JsonObject table = JSON.parse(json);
+        assertEquals(3, table.get("rows").getAsArray().size());
+    }
+
+    @Test
+    public void testResultSet() throws Exception
+    {
+        ResultSet results = QueryExecutionFactory.create("SELECT ?label { ?s <" + RDFS.label.getURI() + "> ?label }", model).execSelect();
+        JsonObject table = JSON.parse(write(results, ResultSet.class));
+
+        assertEquals(1, table.get("cols").getAsArray().size());
+        assertEquals(3, table.get("rows").getAsArray().size());
+    }
+
+}
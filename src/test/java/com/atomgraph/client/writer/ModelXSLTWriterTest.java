@@ -0,0 +1,224 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.writer;
+
+import com.atomgraph.client.exception.OverloadedException;
+import com.atomgraph.client.util.AdmissionController;
+import com.atomgraph.client.util.DataManager;
+import com.atomgraph.client.util.DataManagerImpl;
+import com.atomgraph.client.vocabulary.AC;
+import com.atomgraph.core.MediaTypes;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.UriInfo;
+import javax.xml.transform.stream.StreamSource;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.QName;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XdmValue;
+import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.util.LocationMapper;
+import org.apache.jena.vocabulary.RDFS;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class ModelXSLTWriterTest
+{
+
+    private static final String XSL = "<xsl:stylesheet version='3.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>" +
+        "<xsl:template match='/'><p><xsl:value-of select='count(//*)'/></p></xsl:template>" +
+        "</xsl:stylesheet>";
+    private static final String FAILING_XSL = "<xsl:stylesheet version='3.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>" +
+        "<xsl:template match='/'><xsl:message terminate='yes'>Failed</xsl:message></xsl:template>" +
+        "</xsl:stylesheet>";
+
+    private final Processor processor = new Processor(false);
+    private final DataManager dataManager = new DataManagerImpl(new LocationMapper(), new ConcurrentHashMap<>(), ClientBuilder.newClient(), new MediaTypes(), false, false, false);
+    private final Map<String, Object> attributes = new HashMap<>();
+    private final HttpServletRequest httpServletRequest = (HttpServletRequest)Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[]{ HttpServletRequest.class }, (proxy, method, args) ->
+    {
+        if (method.getName().equals("getAttribute")) return attributes.get((String)args[0]);
+        if (method.getName().equals("setAttribute")) attributes.put((String)args[0], args[1]);
+        return null;
+    });
+    private Model model;
+
+    @Before
+    public void setUp()
+    {
+        model = ModelFactory.createDefaultModel();
+        model.createResource("http://example/").addLiteral(RDFS.label, "label");
+    }
+
+    /**
+     * Returns writer that does not depend on the request context.
+     */
+    private ModelXSLTWriter getWriter(String xsl, AdmissionController admissionController) throws SaxonApiException
+    {
+        ModelXSLTWriter writer = new ModelXSLTWriter(processor.newXsltCompiler().compile(new StreamSource(new StringReader(xsl))), OntModelSpec.OWL_MEM, null, admissionController)
+        {
+
+            @Override
+            public Model getPage(Model model)
+            {
+                return model;
+            }
+
+            @Override
+            public <T extends XdmValue> Map<QName, XdmValue> getParameters(MultivaluedMap<String, Object> headerMap)
+            {
+                return new HashMap<>();
+            }
+
+            @Override
+            public HttpServletRequest getHttpServletRequest()
+            {
+                return httpServletRequest;
+            }
+
+        };
+        writer.dataManager = dataManager; // injected by Jersey otherwise
+        return writer;
+    }
+
+    private String write(ModelXSLTWriter writer, MultivaluedMap<String, Object> headerMap) throws Exception
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writer.writeTo(model, Model.class, Model.class, null, MediaType.TEXT_HTML_TYPE, headerMap, baos);
+        return baos.toString(UTF_8.name());
+    }
+
+    @Test
+    public void testPermitReleased() throws Exception
+    {
+        AdmissionController controller = new AdmissionController(1, 0, 0);
+
+        assertTrue(write(getWriter(XSL, controller), new MultivaluedHashMap<>()).contains("<p>"));
+        assertEquals(0, controller.getActive());
+        assertEquals(1, controller.getAdmissions());
+    }
+
+    @Test
+    public void testPermitReleasedAfterFailedTransform() throws Exception
+    {
+        AdmissionController controller = new AdmissionController(1, 0, 0);
+
+        try
+        {
+            write(getWriter(FAILING_XSL, controller), new MultivaluedHashMap<>());
+            fail("Terminated transformation did not fail");
+        }
+        catch (WebApplicationException ex)
+        {
+            assertEquals(500, ex.getResponse().getStatus());
+        }
+        assertEquals(0, controller.getActive());
+    }
+
+    @Test
+    public void testShedRequestSkipsAdmission() throws Exception
+    {
+        AdmissionController controller = new AdmissionController(1, 0, 0);
+        controller.acquire(); // the server is saturated
+        ModelXSLTWriter writer = getWriter(XSL, controller);
+
+        try
+        {
+            write(writer, new MultivaluedHashMap<>());
+            fail("Transformation admitted while the server is saturated");
+        }
+        catch (OverloadedException ex)
+        {
+            assertEquals(1, controller.getRejections());
+        }
+
+        MultivaluedMap<String, Object> headerMap = new MultivaluedHashMap<>();
+        headerMap.putSingle(HttpHeaders.RETRY_AFTER, controller.getRetryAfter());
+        try
+        {
+            write(writer, headerMap);
+            fail("Transformation admitted because of a Retry-After header");
+        }
+        catch (OverloadedException ex)
+        {
+            assertEquals(2, controller.getRejections());
+        }
+
+        attributes.put(AdmissionController.SHED_ATTRIBUTE, true); // set by OverloadedExceptionMapper
+        assertTrue(write(writer, headerMap).contains("<p>")); // error page of the shed request is rendered without a permit
+        assertEquals(1, controller.getActive());
+    }
+
+    @Test
+    public void testZeroLimitRejected() throws Exception
+    {
+        AdmissionController controller = new AdmissionController(1, 0, 0);
+        MultivaluedMap<String, String> queryParams = new MultivaluedHashMap<>();
+        queryParams.putSingle(AC.limit.getLocalName(), "0");
+        UriInfo uriInfo = (UriInfo)Proxy.newProxyInstance(UriInfo.class.getClassLoader(), new Class<?>[]{ UriInfo.class }, (proxy, method, args) ->
+            method.getName().equals("getQueryParameters") ? queryParams : null);
+
+        ModelXSLTWriter writer = new ModelXSLTWriter(processor.newXsltCompiler().compile(new StreamSource(new StringReader(XSL))), OntModelSpec.OWL_MEM, null, controller)
+        {
+
+            @Override
+            public UriInfo getUriInfo()
+            {
+                return uriInfo;
+            }
+
+            @Override
+            public HttpServletRequest getHttpServletRequest()
+            {
+                return httpServletRequest;
+            }
+
+        };
+        writer.dataManager = dataManager;
+
+        try
+        {
+            write(writer, new MultivaluedHashMap<>());
+            fail("Zero page limit accepted");
+        }
+        catch (BadRequestException ex)
+        {
+            assertEquals(1, controller.getAdmissions()); // paging runs under the permit
+            assertEquals(0, controller.getActive());
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.xml.transform.stream.StreamSource;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import com.atomgraph.client.writer.function.NextResults;
+import com.atomgraph.client.writer.function.UUID;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sf.saxon.s9api.Processor;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.sparql.engine.ResultSetStream;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.vocabulary.RDFS;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class ResultSetXSLTWriterTest
+{
+
+    private static final String XSL = "<xsl:stylesheet version='3.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform' xmlns:srx='http://www.w3.org/2005/sparql-results#' exclude-result-prefixes='srx'>" +
+        "<xsl:template match='/'><table><xsl:for-each select='srx:sparql/srx:results/srx:result'><tr><xsl:value-of select='srx:binding'/></tr></xsl:for-each></table></xsl:template>" +
+        "</xsl:stylesheet>";
+
+    private final Processor processor = new Processor(false);
+    private Model model;
+
+    @Before
+    public void setUp()
+    {
+        model = ModelFactory.createDefaultModel();
+        for (int i = 0; i < 3; i++) model.createResource("http://example/" + i).addLiteral(RDFS.label, "label " + i);
+    }
+
+    private ResultSet select()
+    {
+        return QueryExecutionFactory.create("SELECT ?label { ?s <" + RDFS.label.getURI() + "> ?label } ORDER BY ?label", model).execSelect();
+    }
+
+    @Test
+    public void testSingleDocument() throws Exception
+    {
+        ResultSetXSLTWriter writer = new ResultSetXSLTWriter(processor.newXsltCompiler().compile(new StreamSource(new StringReader(XSL))), (href, base) -> null);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writer.writeTo(select(), ResultSet.class, ResultSet.class, null, MediaType.APPLICATION_XML_TYPE, new MultivaluedHashMap<>(), baos);
+
+        String output = baos.toString(UTF_8.name());
+        assertEquals("<table><tr>label 0</tr><tr>label 1</tr><tr>label 2</tr></table>", output.substring(output.indexOf("?>") + 2).trim()); // one document
+    }
+
+    @Test
+    public void testChunksBounded() throws Exception
+    {
+        for (int i = 3; i < 10; i++) model.createResource("http://example/" + i).addLiteral(RDFS.label, "label " + i);
+        processor.registerExtensionFunction(new NextResults(processor));
+        String xsl = "<xsl:stylesheet version='3.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform' xmlns:srx='http://www.w3.org/2005/sparql-results#' xmlns:ac='https://w3id.org/atomgraph/client#' exclude-result-prefixes='srx ac'>" +
+            "<xsl:param name='ac:results' as='item()?'/>" +
+            "<xsl:template match='/'><table><xsl:apply-templates select='srx:sparql/srx:results/srx:result'/><xsl:call-template name='rows'/></table></xsl:template>" +
+            "<xsl:template name='rows'><xsl:variable name='results' select='ac:next-results($ac:results)'/><xsl:if test='$results'><xsl:apply-templates select='$results'/><xsl:call-template name='rows'/></xsl:if></xsl:template>" +
+            "<xsl:template match='srx:result'><tr><xsl:value-of select='srx:binding'/></tr></xsl:template>" +
+            "</xsl:stylesheet>";
+        ResultSetXSLTWriter writer = new ResultSetXSLTWriter(new StreamSource(new StringReader(xsl)), (href, base) -> null, processor, 3);
+
+        ResultSet select = select();
+        AtomicInteger read = new AtomicInteger();
+        Iterator<Binding> bindings = new Iterator<Binding>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return select.hasNext();
+            }
+
+            @Override
+            public Binding next()
+            {
+                read.incrementAndGet();
+                return select.nextBinding();
+            }
+        };
+        List<Integer> pending = new ArrayList<>(); // rows read but not yet written at each flush
+        ByteArrayOutputStream baos = new ByteArrayOutputStream()
+        {
+            @Override
+            public void flush()
+            {
+                pending.add(read.get() - (toString().split("<tr>", -1).length - 1));
+            }
+        };
+        writer.writeTo(new ResultSetStream(select.getResultVars(), model, bindings), ResultSet.class, ResultSet.class, null, MediaType.APPLICATION_XML_TYPE, new MultivaluedHashMap<>(), baos);
+
+        String output = baos.toString(UTF_8.name());
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < 10; i++) rows.append("<tr>label ").append(i).append("</tr>");
+        assertEquals("<table>" + rows + "</table>", output.substring(output.indexOf("?>") + 2).trim()); // one document
+        assertEquals(10, read.get());
+        assertTrue(pending.size() > 4); // output was flushed after each chunk
+        for (int count : pending) assertTrue(count <= 3);
+    }
+
+    @Test
+    public void testCompiledWithApplicationProcessor() throws Exception
+    {
+        processor.registerExtensionFunction(new UUID());
+        String xsl = "<xsl:stylesheet version='3.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform' xmlns:ac='https://w3id.org/atomgraph/client#'>" +
+            "<xsl:template match='/'><uuid><xsl:value-of select='string-length(ac:uuid())'/></uuid></xsl:template>" +
+            "</xsl:stylesheet>";
+        ResultSetXSLTWriter writer = new ResultSetXSLTWriter(new StreamSource(new StringReader(xsl)), (href, base) -> null, processor);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writer.writeTo(select(), ResultSet.class, ResultSet.class, null, MediaType.APPLICATION_XML_TYPE, new MultivaluedHashMap<>(), baos);
+
+        assertTrue(baos.toString(UTF_8.name()).endsWith(">36</uuid>"));
+    }
+
+}
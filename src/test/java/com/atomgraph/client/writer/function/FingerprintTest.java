@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.writer.function;
+
+import com.atomgraph.client.filter.StaticAssetFilter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.servlet.ServletContext;
+import javax.xml.transform.stream.StreamSource;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XdmValue;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class FingerprintTest
+{
+
+    private static final String XSL = "<xsl:stylesheet version='3.0' xmlns:xsl='http://www.w3.org/1999/XSL/Transform' xmlns:ac='https://w3id.org/atomgraph/client#'>" +
+        "<xsl:template name='xsl:initial-template'><link href='{resolve-uri(ac:fingerprint(\"static/app.css\"), \"http://localhost/\")}'/><link href='{ac:fingerprint(\"static/missing.css\")}'/></xsl:template>" +
+        "</xsl:stylesheet>";
+
+    private Path root;
+    private ServletContext servletContext;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        root = Files.createTempDirectory("webapp");
+        Files.createDirectories(root.resolve("static"));
+        Files.write(root.resolve("static/app.css"), "body { margin: 0; }".getBytes(UTF_8));
+
+        servletContext = (ServletContext)Proxy.newProxyInstance(ServletContext.class.getClassLoader(), new Class<?>[]{ ServletContext.class }, (proxy, method, args) ->
+        {
+            if (!method.getName().equals("getResource")) return null;
+            Path file = root.resolve(((String)args[0]).substring(1));
+            return Files.isRegularFile(file) ? file.toUri().toURL() : null;
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    private String transform(Fingerprint fingerprint) throws SaxonApiException
+    {
+        Processor processor = new Processor(false);
+        processor.registerExtensionFunction(fingerprint);
+        XdmValue result = processor.newXsltCompiler().compile(new StreamSource(new StringReader(XSL))).load30().callTemplate(null);
+        return result.toString();
+    }
+
+    @Test
+    public void testFingerprintedURL() throws Exception
+    {
+        String hash = StaticAssetFilter.getHash(Files.readAllBytes(root.resolve("static/app.css")));
+
+        String output = transform(new Fingerprint(() -> servletContext));
+        assertTrue(output.contains("href=\"http://localhost/static/app.css?v=" + hash + "\""));
+        assertTrue(output.contains("href=\"static/missing.css\"")); // missing assets are not fingerprinted
+    }
+
+    @Test
+    public void testNoServletContext() throws Exception
+    {
+        String output = transform(new Fingerprint(() -> null));
+        assertTrue(output.contains("href=\"http://localhost/static/app.css\""));
+    }
+
+}
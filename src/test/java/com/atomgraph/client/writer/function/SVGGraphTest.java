@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 Martynas Jusevičius <martynas@atomgraph.com>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atomgraph.client.writer.function;
+
+import com.atomgraph.client.util.GraphLayout;
+import java.io.StringReader;
+import javax.xml.transform.stream.StreamSource;
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XdmNode;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDF;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Martynas Jusevičius {@literal <martynas@atomgraph.com>}
+ */
+public class SVGGraphTest
+{
+
+    private static final String RDFXML = "<rdf:RDF xmlns:rdf='http://www.w3.org/1999/02/22-rdf-syntax-ns#' xmlns:ex='http://example/' xml:base='http://example/'>" +
+        "<rdf:Description rdf:about='a'>" +
+        "<ex:nested><ex:Thing rdf:nodeID='%s'><ex:label>nested</ex:label></ex:Thing></ex:nested>" +
+        "<ex:xml rdf:parseType='Literal'><b>bold</b></ex:xml>" +
+        "<ex:list><rdf:Bag><rdf:li rdf:resource='b'/></rdf:Bag></ex:list>" +
+        "</rdf:Description>" +
+        "</rdf:RDF>";
+
+    private final Processor processor = new Processor(false);
+
+    private Graph getGraph(String xml) throws SaxonApiException
+    {
+        XdmNode doc = processor.newDocumentBuilder().build(new StreamSource(new StringReader(xml), "http://example/doc"));
+        return SVGGraph.getGraph(doc, processor);
+    }
+
+    @Test
+    public void testNestedRDFXML() throws SaxonApiException
+    {
+        Graph graph = getGraph(String.format(RDFXML, "thing"));
+        Node a = NodeFactory.createURI("http://example/a");
+
+        assertEquals(7, graph.size());
+        assertTrue(graph.contains(Node.ANY, RDF.type.asNode(), NodeFactory.createURI("http://example/Thing")));
+        assertTrue(graph.contains(Node.ANY, NodeFactory.createURI("http://example/label"), NodeFactory.createLiteral("nested")));
+        assertTrue(graph.contains(a, NodeFactory.createURI("http://example/xml"), Node.ANY));
+        assertFalse(graph.find(a, NodeFactory.createURI("http://example/xml"), Node.ANY).next().getObject().getLiteralLexicalForm().isEmpty());
+        assertTrue(graph.contains(Node.ANY, RDF.li(1).asNode(), NodeFactory.createURI("http://example/b")));
+    }
+
+    @Test
+    public void testBlankNodesCanonical() throws SaxonApiException
+    {
+        Graph first = getGraph(String.format(RDFXML, "first"));
+        Graph second = getGraph(String.format(RDFXML, "second"));
+
+        assertTrue(ModelFactory.createModelForGraph(first).isIsomorphicWith(ModelFactory.createModelForGraph(second)));
+        assertEquals(first.find().toSet(), second.find().toSet()); // equal blank node labels
+
+        GraphLayout layout = new GraphLayout();
+        assertSame(layout.getLayout(first), layout.getLayout(second));
+    }
+
+    @Test(expected = SaxonApiException.class)
+    public void testInvalidRDFXMLRejected() throws SaxonApiException
+    {
+        getGraph("<rdf:RDF xmlns:rdf='http://www.w3.org/1999/02/22-rdf-syntax-ns#'><rdf:Description rdf:about='http://example/a' rdf:resource='http://example/b'><rdf:Description/></rdf:Description></rdf:RDF>");
+    }
+
+}